@@ -26,4 +26,25 @@ public abstract class AIDecider {
     // very likely to refactor this later, because I don't know what information 
     // I'll need to facilitate learning 
     public abstract Direction evaluateVotes(int[] heuristicVotes);
+
+    /**
+     * Everything about the decider that can change the move it picks, for
+     * configuration hashes. Deciders with settings of their own add them.
+     *
+     * @return the class and settings of the decider, on one line
+     */
+    public String getConfigurationDescription() {
+        return getClass().getName() + " learning=" + learning;
+    }
+
+    /**
+     * Called after every move of the game, including moves that were not
+     * decided by this decider. Deciders that learn from outcomes override
+     * this; the default does nothing.
+     *
+     * @param scoreGained the score the move added
+     * @param gameOver true if the move ended the game
+     */
+    public void recordOutcome(int scoreGained, boolean gameOver) {
+    }
 }
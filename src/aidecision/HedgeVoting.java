@@ -0,0 +1,177 @@
+package aidecision;
+
+import gamemodel.Direction;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Weighted voting whose weights are learned from what happens after a move
+ * rather than from agreement with the majority.
+ *
+ * Every decision is scored once the next horizon moves have been played:
+ * the reward is 0 if the game ended in that time and otherwise the score
+ * gained, as gain / (gain + the game's mean gain), so it lies in [0, 1)
+ * whatever the stage of the game. A heuristic that voted for the move
+ * played takes the loss 1 - reward. The others did not have their move
+ * tried, so they take the mean loss of the game and neither gain nor lose
+ * ground. The losses are merged into a shared {@link HedgeWeights}.
+ *
+ * A decider plays a single game on a single thread, so its losses need no
+ * lock; they are merged every {@link #MERGE_INTERVAL} rounds and when the
+ * game ends. The heuristics' own weights are never changed. While learning,
+ * a game depends on the games played before it, so it cannot be replayed
+ * from its seed alone.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class HedgeVoting extends AIDecider {
+
+    public static final int DEFAULT_HORIZON = 5;
+    public static final int MERGE_INTERVAL = 64;
+
+    private final HedgeWeights sharedWeights;
+    private final int horizon;
+    private Random random = new Random();
+
+    // decisions waiting for their outcome, as a ring
+    private final int[][] pendingVotes;
+    private final int[] pendingChoices;
+    private final long[] pendingScores;
+    private final long[] pendingMoves;
+    private int pendingStart = 0;
+    private int pendingCount = 0;
+
+    private long moveCount = 0;
+    private long score = 0;
+    private double meanGain = 0;
+    private long gainCount = 0;
+    private double meanReward = .5;
+    private long rewardCount = 0;
+
+    private final double[] losses;
+    private long lossRounds = 0;
+
+    public HedgeVoting(HedgeWeights sharedWeights, int heuristicCount, int horizon) {
+        if (horizon < 1) {
+            throw new IllegalArgumentException("Horizon must be at least 1 move, was " + horizon);
+        }
+        this.sharedWeights = sharedWeights;
+        this.horizon = horizon;
+        this.pendingVotes = new int[horizon][heuristicCount];
+        this.pendingChoices = new int[horizon];
+        this.pendingScores = new long[horizon];
+        this.pendingMoves = new long[horizon];
+        this.losses = new double[heuristicCount];
+    }
+
+    @Override
+    public Direction evaluateVotes(int[] heuristicVotes) {
+        double[] weights = sharedWeights.getSharedWeights();
+        Direction[] directions = Direction.values();
+        double[] votes = new double[directions.length];
+        for (int i = 0; i < heuristicVotes.length; i++) {
+            votes[heuristicVotes[i]] += weights[i];
+        }
+
+        // always choose highest vote
+        // randomly choose between equal choices
+        double highest = -1;
+        int choice = 0;
+        int tied = 0;
+        for (int i = 0; i < votes.length; i++) {
+            if (votes[i] > highest) {
+                highest = votes[i];
+                choice = i;
+                tied = 1;
+            } else if (votes[i] == highest && random.nextInt(++tied) == 0) {
+                choice = i;
+            }
+        }
+
+        if (isLearning()) {
+            if (pendingCount == horizon) {
+                // no outcomes are being recorded; forget the oldest
+                pendingStart = (pendingStart + 1) % horizon;
+                pendingCount--;
+            }
+            int slot = (pendingStart + pendingCount) % horizon;
+            System.arraycopy(heuristicVotes, 0, pendingVotes[slot], 0, heuristicVotes.length);
+            pendingChoices[slot] = choice;
+            pendingScores[slot] = score;
+            pendingMoves[slot] = moveCount;
+            pendingCount++;
+        }
+        return directions[choice];
+    }
+
+    @Override
+    public void recordOutcome(int scoreGained, boolean gameOver) {
+        score += scoreGained;
+        moveCount++;
+        if (!isLearning()) {
+            return;
+        }
+        while (pendingCount > 0 && (gameOver || moveCount - pendingMoves[pendingStart] >= horizon)) {
+            resolve(pendingStart, !gameOver);
+            pendingStart = (pendingStart + 1) % horizon;
+            pendingCount--;
+        }
+        if (lossRounds >= MERGE_INTERVAL || (gameOver && lossRounds > 0)) {
+            sharedWeights.merge(losses, lossRounds);
+            Arrays.fill(losses, 0);
+            lossRounds = 0;
+        }
+    }
+
+    private void resolve(int slot, boolean survived) {
+        double reward = 0;
+        if (survived) {
+            long gain = score - pendingScores[slot];
+            gainCount++;
+            meanGain += (gain - meanGain) / gainCount;
+            reward = gain + meanGain > 0 ? gain / (gain + meanGain) : .5;
+        }
+        double meanLoss = 1 - meanReward;
+        int[] votes = pendingVotes[slot];
+        for (int i = 0; i < losses.length; i++) {
+            losses[i] += votes[i] == pendingChoices[slot] ? 1 - reward : meanLoss;
+        }
+        lossRounds++;
+        rewardCount++;
+        meanReward += (reward - meanReward) / rewardCount;
+    }
+
+    /**
+     * @return the random
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * @param random the random to set
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public String getConfigurationDescription() {
+        return super.getConfigurationDescription() + " horizon=" + horizon
+                + " learningRate=" + sharedWeights.getLearningRate();
+    }
+
+    /**
+     * @return the number of moves the outcome of a decision is taken over
+     */
+    public int getHorizon() {
+        return horizon;
+    }
+
+    /**
+     * @return the sharedWeights
+     */
+    public HedgeWeights getSharedWeights() {
+        return sharedWeights;
+    }
+}
@@ -0,0 +1,90 @@
+package aidecision;
+
+import aiheuristics.Heuristic;
+import java.util.Arrays;
+
+/**
+ * Weights of the heuristics learned by {@link HedgeVoting}, shared by the
+ * deciders of every game. Each heuristic's weight is exp(-learningRate *
+ * cumulative loss), normalized to sum to 1 (the Hedge algorithm).
+ *
+ * Deciders add up their losses on their own thread and merge them in
+ * batches, so the lock is only taken once per batch. The weights are
+ * published as a new array on every merge, so reading them needs no lock.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class HedgeWeights {
+
+    private final double learningRate;
+    // guarded by this
+    private final double[] cumulativeLosses;
+    private long rounds = 0;
+    private volatile double[] weights;
+
+    public HedgeWeights(int heuristicCount, double learningRate) {
+        this.learningRate = learningRate;
+        this.cumulativeLosses = new double[heuristicCount];
+        this.weights = new double[heuristicCount];
+        Arrays.fill(weights, 1.0 / heuristicCount);
+    }
+
+    /**
+     * @param losses the losses of each heuristic summed over the rounds
+     * @param roundCount the number of rounds summed
+     */
+    public synchronized void merge(double[] losses, long roundCount) {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < cumulativeLosses.length; i++) {
+            cumulativeLosses[i] += losses[i];
+            lowest = Math.min(lowest, cumulativeLosses[i]);
+        }
+        rounds += roundCount;
+        // shifted by the lowest loss so the best heuristic never underflows
+        double[] updated = new double[cumulativeLosses.length];
+        double total = 0;
+        for (int i = 0; i < updated.length; i++) {
+            updated[i] = Math.exp(-learningRate * (cumulativeLosses[i] - lowest));
+            total += updated[i];
+        }
+        for (int i = 0; i < updated.length; i++) {
+            updated[i] /= total;
+        }
+        weights = updated;
+    }
+
+    // the published array, never written after it is published
+    double[] getSharedWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the weight of each heuristic, summing to 1
+     */
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * @return the number of rounds merged so far
+     */
+    public synchronized long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return the learningRate
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public String getWeightsReport(Heuristic[] heuristics) {
+        double[] current = weights;
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < heuristics.length; i++) {
+            output.append(heuristics[i].toString()).append(" now has weight: ").append(current[i]).append("\n");
+        }
+        return output.toString();
+    }
+}
@@ -116,6 +116,12 @@ public class MajorityTieVoting extends AIDecider {
         this.random = random;
     }
 
+    @Override
+    public String getConfigurationDescription() {
+        return super.getConfigurationDescription() + " adjustWeights=" + adjustWeights
+                + " primaries=" + primaryAIndex + "," + primaryBIndex;
+    }
+
     /**
      * @return the adjustWeights
      */
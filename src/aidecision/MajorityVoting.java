@@ -119,6 +119,11 @@ public class MajorityVoting extends AIDecider {
         this.random = random;
     }
 
+    @Override
+    public String getConfigurationDescription() {
+        return super.getConfigurationDescription() + " adjustWeights=" + adjustWeights;
+    }
+
     /**
      * @return the adjustWeights
      */
@@ -0,0 +1,18 @@
+package aiheuristics;
+
+/**
+ * Evaluates many packed 4x4 boards in one call, for policies that score the
+ * afterstates of a whole {@link gamemodel.BoardBatch} at once. Higher values
+ * are better, as with {@link Heuristic}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public interface BatchEvaluator {
+
+    /**
+     * @param boards packed boards
+     * @param count number of boards to evaluate, from the start of boards
+     * @param values receives the value of each board
+     */
+    void evaluate(long[] boards, int count, long[] values);
+}
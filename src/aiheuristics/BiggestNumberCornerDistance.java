@@ -2,6 +2,8 @@ package aiheuristics;
 
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -12,16 +14,22 @@ public class BiggestNumberCornerDistance extends Heuristic {
     public BiggestNumberCornerDistance(double weight) {
         super(weight);
     }
+
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.GRID);
+    }
     
     @Override
     public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
         int[][] grid = state.getGameGrid();
         int[] highestPos = getHighestValuePosition(grid);
+        int last = grid.length - 1;
         int[] distances = new int[]{
             chebyshevDistance(highestPos[1], highestPos[0], 0, 0), // top left
-            chebyshevDistance(highestPos[1], highestPos[0], 3, 0), // top right
-            chebyshevDistance(highestPos[1], highestPos[0], 0, 3), // bottom left
-            chebyshevDistance(highestPos[1], highestPos[0], 3, 3), // bottom right
+            chebyshevDistance(highestPos[1], highestPos[0], last, 0), // top right
+            chebyshevDistance(highestPos[1], highestPos[0], 0, last), // bottom left
+            chebyshevDistance(highestPos[1], highestPos[0], last, last), // bottom right
         };
         int min = distances[0];
         for (int i = 1; i < distances.length; i++) {
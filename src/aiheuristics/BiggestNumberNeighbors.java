@@ -4,6 +4,8 @@ import gamemodel.GameBoard;
 import gamemodel.GameController;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -15,6 +17,11 @@ public class BiggestNumberNeighbors extends Heuristic {
         super(weight);
     }
 
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.GRID);
+    }
+
     @Override
     public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
         // find biggest 4 numbers
@@ -2,6 +2,8 @@ package aiheuristics;
 
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -13,9 +15,15 @@ public class Corners extends Heuristic {
         super(weight);
     }
 
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.GRID);
+    }
+
     @Override
     public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
         int[][] grid = state.getGameGrid();
+        int last = grid.length - 1;
         
         long topLeft = 0;
         long topRight = 0;
@@ -23,9 +31,9 @@ public class Corners extends Heuristic {
         long bottomRight = 0;
         
         topLeft += grid[0][0] * 2 + grid[0][1] + grid[1][0];
-        topRight += grid[0][3] * 2 + grid[0][2] + grid[1][3];
-        bottomLeft += grid[3][0] * 2 + grid[3][1] + grid[2][0];
-        bottomRight += grid[3][3] * 2 + grid[3][2] + grid[2][3];
+        topRight += grid[0][last] * 2 + grid[0][last - 1] + grid[1][last];
+        bottomLeft += grid[last][0] * 2 + grid[last][1] + grid[last - 1][0];
+        bottomRight += grid[last][last] * 2 + grid[last][last - 1] + grid[last - 1][last];
         
         long topHighest = topLeft > topRight ? topLeft : topRight;
         long bottomHighest = bottomLeft > bottomRight ? bottomLeft : bottomRight;
@@ -3,6 +3,10 @@ package aiheuristics;
 
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.Set;
 
 
 /** Heuristics should be designed to be evaluations of states
@@ -13,10 +17,95 @@ import gamemodel.GameController;
 public abstract class Heuristic {
     public abstract long getValueOfState(GameController controller, GameBoard state, int currentDirection);
     private double weight;
+    // bit input.ordinal() set for every input, 0 until first needed
+    private volatile int inputMask = 0;
     public Heuristic(double weight){
         this.weight = weight;
     }
 
+    /**
+     * Heuristics that read less than the whole state should say so; the
+     * search shares their values between directions and boards.
+     *
+     * @return the parts of the state the value depends on, all of them
+     * unless overridden
+     */
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.allOf(HeuristicInput.class);
+    }
+
+    /**
+     * @param input
+     * @return true if the value depends on input
+     */
+    public boolean dependsOn(HeuristicInput input) {
+        return (getInputMask() & (1 << input.ordinal())) != 0;
+    }
+
+    /**
+     * Heuristics built for one board size should refuse the others before
+     * a game starts rather than fail in the middle of a search.
+     *
+     * @param size width and height of the boards to be valued
+     * @return true if states of that size can be valued, always unless
+     * overridden
+     */
+    public boolean supportsBoardSize(int size) {
+        return true;
+    }
+
+    /**
+     * Heuristics whose values depend on more than their class, such as
+     * learned tables, describe what else they depend on, so configurations
+     * that value boards differently are told apart.
+     *
+     * @return the parameters the values depend on, empty unless overridden
+     */
+    public String getParameterDescription() {
+        return "";
+    }
+
+    /**
+     * @param content
+     * @return the SHA-256 hash of content, in hex
+     */
+    protected static String hashContent(byte[] content) {
+        try {
+            StringBuilder output = new StringBuilder();
+            for (byte value : MessageDigest.getInstance("SHA-256").digest(content)) {
+                output.append(String.format("%02x", value));
+            }
+            return output.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform has SHA-256
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Grid-only heuristics look at nothing but the tiles of the state, so
+     * their values can be cached by board and shared between searches.
+     *
+     * @return true if the value depends only on the game grid
+     */
+    public boolean isGridOnly() {
+        return (getInputMask() & ~(1 << HeuristicInput.GRID.ordinal())) == 0;
+    }
+
+    private int getInputMask() {
+        int mask = inputMask;
+        if (mask == 0) {
+            for (HeuristicInput input : getInputs()) {
+                mask |= 1 << input.ordinal();
+            }
+            // a heuristic that reads nothing is as cheap to share as one
+            // that reads the grid
+            mask |= 1 << HeuristicInput.GRID.ordinal();
+            inputMask = mask;
+        }
+        return mask;
+    }
+
     /**
      * @return the weight
      */
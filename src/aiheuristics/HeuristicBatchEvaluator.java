@@ -0,0 +1,45 @@
+package aiheuristics;
+
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+
+/**
+ * Evaluates packed boards with grid-only heuristics: the weighted sum of
+ * their values. Every board is unpacked into the same grid, so a batch
+ * allocates nothing.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class HeuristicBatchEvaluator implements BatchEvaluator {
+
+    private final Heuristic[] heuristics;
+    private final GameController controller = new GameController();
+    private final GameBoard board = new GameBoard(PackedBoard.SIZE);
+
+    /**
+     * @param heuristics grid-only heuristics
+     */
+    public HeuristicBatchEvaluator(Heuristic[] heuristics) {
+        for (Heuristic heuristic : heuristics) {
+            if (!heuristic.isGridOnly()) {
+                throw new IllegalArgumentException(heuristic.getClass().getSimpleName()
+                        + " reads more than the grid of a board");
+            }
+        }
+        this.heuristics = heuristics;
+    }
+
+    @Override
+    public void evaluate(long[] boards, int count, long[] values) {
+        int[][] grid = board.getGameGrid();
+        for (int i = 0; i < count; i++) {
+            PackedBoard.unpack(boards[i], grid);
+            double value = 0;
+            for (Heuristic heuristic : heuristics) {
+                value += heuristic.getWeight() * heuristic.getValueOfState(controller, board, 0);
+            }
+            values[i] = (long) value;
+        }
+    }
+}
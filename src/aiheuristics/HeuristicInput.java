@@ -0,0 +1,32 @@
+package aiheuristics;
+
+/**
+ * The parts of a search state a {@link Heuristic} can read. The search uses
+ * them to share work: values that do not depend on the direction being
+ * scored are computed once per state, and values that depend on nothing but
+ * the grid can be cached by board.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public enum HeuristicInput {
+    /**
+     * The tiles of the state.
+     */
+    GRID,
+    /**
+     * The score of the game so far.
+     */
+    SCORE,
+    /**
+     * The number of merges made by the move into the state.
+     */
+    MERGES,
+    /**
+     * The move that led to the state.
+     */
+    PREVIOUS_MOVE,
+    /**
+     * The currentDirection argument, the direction being scored.
+     */
+    DIRECTION
+}
@@ -2,6 +2,8 @@ package aiheuristics;
 
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -13,6 +15,11 @@ public class HighestMerges extends Heuristic {
         super(weight);
     }
 
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.SCORE);
+    }
+
     
     @Override
     public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
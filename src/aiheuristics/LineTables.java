@@ -0,0 +1,182 @@
+package aiheuristics;
+
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Values a 4x4 board by looking up each row and column in a table of learned
+ * values, one table for the edge lines and one for the two inner lines. Every
+ * line is looked up read both ways, so a board and its mirror images get the
+ * same value. The tables are fitted by cliai.PolicyDistiller to copy the
+ * moves of a deep search.
+ *
+ * The file is
+ *
+ * <pre>
+ * int magic, int version, int table count, int table size,
+ * float[table count * table size] values
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class LineTables extends Heuristic implements BatchEvaluator {
+
+    public static final int TABLE_COUNT = 2;
+    // one entry per four tile exponents
+    public static final int TABLE_SIZE = 1 << 16;
+    // lookups per board: 4 rows and 4 columns, each read both ways
+    public static final int FEATURE_COUNT = 16;
+
+    private static final int MAGIC = 0x4C54424C; // "LTBL"
+    private static final int VERSION = 1;
+    // values are fractions; the search sums longs
+    private static final double VALUE_SCALE = 1000;
+
+    private final float[] values;
+
+    public LineTables(double weight) {
+        this(weight, new float[TABLE_COUNT * TABLE_SIZE]);
+    }
+
+    /**
+     * @param weight
+     * @param values the tables one after another, used as is so a trainer
+     * can keep changing them
+     */
+    public LineTables(double weight, float[] values) {
+        super(weight);
+        if (values.length != TABLE_COUNT * TABLE_SIZE) {
+            throw new IllegalArgumentException("Expected " + TABLE_COUNT * TABLE_SIZE + " values");
+        }
+        this.values = values;
+    }
+
+    public static LineTables load(File file, double weight) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a line table file: " + file);
+            }
+            if (input.readInt() != TABLE_COUNT || input.readInt() != TABLE_SIZE) {
+                throw new IOException("Unexpected table layout in " + file);
+            }
+            float[] values = new float[TABLE_COUNT * TABLE_SIZE];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = input.readFloat();
+            }
+            return new LineTables(weight, values);
+        }
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            write(output);
+        }
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(TABLE_COUNT);
+        output.writeInt(TABLE_SIZE);
+        for (float value : values) {
+            output.writeFloat(value);
+        }
+    }
+
+    /**
+     * @return the hash of the tables as they would be saved; the tables can
+     * change, so it is taken again on every call
+     */
+    @Override
+    public String getParameterDescription() {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            write(new DataOutputStream(content));
+        } catch (IOException ex) {
+            // a byte array never fails
+            throw new RuntimeException(ex);
+        }
+        return "tables " + hashContent(content.toByteArray());
+    }
+
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.GRID);
+    }
+
+    @Override
+    public boolean supportsBoardSize(int size) {
+        return size == PackedBoard.SIZE;
+    }
+
+    @Override
+    public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
+        return Math.round(evaluate(PackedBoard.packClamped(state.getGameGrid())) * VALUE_SCALE);
+    }
+
+    /**
+     * @param board a packed board
+     * @return the sum of the table values of its lines
+     */
+    public float evaluate(long board) {
+        long transposed = PackedBoard.transpose(board);
+        return evaluateRows(board) + evaluateRows(PackedBoard.mirrorRows(board))
+                + evaluateRows(transposed) + evaluateRows(PackedBoard.mirrorRows(transposed));
+    }
+
+    @Override
+    public void evaluate(long[] boards, int count, long[] values) {
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.round(evaluate(boards[i]) * VALUE_SCALE);
+        }
+    }
+
+    private float evaluateRows(long board) {
+        return values[(int) (board & 0xFFFF)]
+                + values[TABLE_SIZE + (int) ((board >>> 16) & 0xFFFF)]
+                + values[TABLE_SIZE + (int) ((board >>> 32) & 0xFFFF)]
+                + values[(int) (board >>> 48)];
+    }
+
+    /**
+     * The entries {@link #evaluate(long)} adds up, for trainers that adjust
+     * them.
+     *
+     * @param board a packed board
+     * @param features receives {@link #FEATURE_COUNT} indices into the
+     * values
+     */
+    public static void getFeatures(long board, int[] features) {
+        long transposed = PackedBoard.transpose(board);
+        getRowFeatures(board, features, 0);
+        getRowFeatures(PackedBoard.mirrorRows(board), features, 4);
+        getRowFeatures(transposed, features, 8);
+        getRowFeatures(PackedBoard.mirrorRows(transposed), features, 12);
+    }
+
+    private static void getRowFeatures(long board, int[] features, int offset) {
+        features[offset] = (int) (board & 0xFFFF);
+        features[offset + 1] = TABLE_SIZE + (int) ((board >>> 16) & 0xFFFF);
+        features[offset + 2] = TABLE_SIZE + (int) ((board >>> 32) & 0xFFFF);
+        features[offset + 3] = (int) (board >>> 48);
+    }
+
+    /**
+     * @return the tables one after another; changes show in later values
+     */
+    public float[] getValues() {
+        return values;
+    }
+}
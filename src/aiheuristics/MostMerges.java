@@ -2,6 +2,8 @@ package aiheuristics;
 
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -12,6 +14,11 @@ public class MostMerges extends Heuristic {
     public MostMerges(double weight) {
         super(weight);
     }
+
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.MERGES);
+    }
     
     @Override
     public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
@@ -0,0 +1,244 @@
+package aiheuristics;
+
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Values a 4x4 board with a small neural network: the tile exponent of each
+ * of the 16 cells, one-hot, into one layer of hidden units with ReLU, into a
+ * single output. Weights are 8-bit integers with one scale per layer, so a
+ * board is valued with integer adds only. A one-hot input layer is 16 rows
+ * of the weight matrix added together, and each row is a contiguous run of
+ * bytes the JIT can vectorize.
+ *
+ * Nothing is allocated per board: each thread sums into its own hidden
+ * layer. {@link #evaluate(long[], int, long[])} values the boards of a batch
+ * one after another through that layer, looking it up once per batch. It
+ * serves the {@link BatchEvaluator} callers, the afterstates of a
+ * {@link gamemodel.BoardBatch} in cliai.LockstepRunner and the policy checks
+ * of cliai.PolicyDistiller; a search values its boards one at a time through
+ * {@link #getValueOfState}. Fitted by cliai.PolicyDistiller.
+ *
+ * The file is
+ *
+ * <pre>
+ * int magic, int version, int hidden count,
+ * float input scale, float output scale,
+ * byte[256 * hidden count] input weights, by input then hidden unit,
+ * int[hidden count] hidden biases, byte[hidden count] output weights,
+ * int output bias
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class QuantizedNetwork extends Heuristic implements BatchEvaluator {
+
+    public static final int CELL_COUNT = PackedBoard.SIZE * PackedBoard.SIZE;
+    public static final int INPUT_COUNT = CELL_COUNT * (PackedBoard.MAX_EXPONENT + 1);
+
+    private static final int MAGIC = 0x514E4554; // "QNET"
+    private static final int VERSION = 1;
+    private static final int QUANTIZED_MAX = 127;
+
+    private final int hiddenCount;
+    private final byte[] inputWeights;
+    // in units of inputScale
+    private final int[] hiddenBiases;
+    private final byte[] outputWeights;
+    // in units of inputScale * outputScale
+    private final int outputBias;
+    private final float inputScale;
+    private final float outputScale;
+    private final ThreadLocal<int[]> hiddenLayers;
+
+    public QuantizedNetwork(double weight, byte[] inputWeights, int[] hiddenBiases, byte[] outputWeights,
+            int outputBias, float inputScale, float outputScale) {
+        super(weight);
+        this.hiddenCount = hiddenBiases.length;
+        if (inputWeights.length != INPUT_COUNT * hiddenCount || outputWeights.length != hiddenCount) {
+            throw new IllegalArgumentException("Weights do not match " + hiddenCount + " hidden units");
+        }
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        this.inputScale = inputScale;
+        this.outputScale = outputScale;
+        this.hiddenLayers = ThreadLocal.withInitial(() -> new int[hiddenCount]);
+    }
+
+    /**
+     * Rounds trained weights to 8 bits, scaling each layer so its largest
+     * weight becomes 127.
+     *
+     * @param weight
+     * @param inputWeights by input then hidden unit
+     * @param hiddenBiases
+     * @param outputWeights
+     * @param outputBias
+     * @return the quantized network
+     */
+    public static QuantizedNetwork quantize(double weight, float[] inputWeights, float[] hiddenBiases,
+            float[] outputWeights, float outputBias) {
+        float inputScale = getScale(inputWeights);
+        float outputScale = getScale(outputWeights);
+        byte[] quantizedInputs = new byte[inputWeights.length];
+        for (int i = 0; i < inputWeights.length; i++) {
+            quantizedInputs[i] = (byte) Math.round(inputWeights[i] / inputScale);
+        }
+        int[] quantizedBiases = new int[hiddenBiases.length];
+        byte[] quantizedOutputs = new byte[outputWeights.length];
+        for (int i = 0; i < hiddenBiases.length; i++) {
+            quantizedBiases[i] = Math.round(hiddenBiases[i] / inputScale);
+            quantizedOutputs[i] = (byte) Math.round(outputWeights[i] / outputScale);
+        }
+        return new QuantizedNetwork(weight, quantizedInputs, quantizedBiases, quantizedOutputs,
+                Math.round(outputBias / (inputScale * outputScale)), inputScale, outputScale);
+    }
+
+    private static float getScale(float[] weights) {
+        float largest = 0;
+        for (float value : weights) {
+            largest = Math.max(largest, Math.abs(value));
+        }
+        return largest == 0 ? 1 : largest / QUANTIZED_MAX;
+    }
+
+    public static QuantizedNetwork load(File file, double weight) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a network file: " + file);
+            }
+            int hiddenCount = input.readInt();
+            float inputScale = input.readFloat();
+            float outputScale = input.readFloat();
+            byte[] inputWeights = new byte[INPUT_COUNT * hiddenCount];
+            input.readFully(inputWeights);
+            int[] hiddenBiases = new int[hiddenCount];
+            for (int i = 0; i < hiddenCount; i++) {
+                hiddenBiases[i] = input.readInt();
+            }
+            byte[] outputWeights = new byte[hiddenCount];
+            input.readFully(outputWeights);
+            int outputBias = input.readInt();
+            return new QuantizedNetwork(weight, inputWeights, hiddenBiases, outputWeights, outputBias,
+                    inputScale, outputScale);
+        }
+    }
+
+    public void save(File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            write(output);
+        }
+    }
+
+    private void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(hiddenCount);
+        output.writeFloat(inputScale);
+        output.writeFloat(outputScale);
+        output.write(inputWeights);
+        for (int bias : hiddenBiases) {
+            output.writeInt(bias);
+        }
+        output.write(outputWeights);
+        output.writeInt(outputBias);
+    }
+
+    /**
+     * @return the hash of the network as it would be saved
+     */
+    @Override
+    public String getParameterDescription() {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            write(new DataOutputStream(content));
+        } catch (IOException ex) {
+            // a byte array never fails
+            throw new RuntimeException(ex);
+        }
+        return "network " + hashContent(content.toByteArray());
+    }
+
+    /**
+     * @param board a packed board
+     * @param cell cell index, 4 * y + x
+     * @return the one-hot input that is set for the cell
+     */
+    public static int getInput(long board, int cell) {
+        return (cell << 4) | (int) ((board >>> (cell << 2)) & 0xF);
+    }
+
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.GRID);
+    }
+
+    @Override
+    public boolean supportsBoardSize(int size) {
+        return size == PackedBoard.SIZE;
+    }
+
+    @Override
+    public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
+        return evaluate(PackedBoard.packClamped(state.getGameGrid()), hiddenLayers.get());
+    }
+
+    /**
+     * @param board a packed board
+     * @return the output of the network in units of {@link #getValueScale()}
+     */
+    public long evaluate(long board) {
+        return evaluate(board, hiddenLayers.get());
+    }
+
+    @Override
+    public void evaluate(long[] boards, int count, long[] values) {
+        int[] hidden = hiddenLayers.get();
+        for (int i = 0; i < count; i++) {
+            values[i] = evaluate(boards[i], hidden);
+        }
+    }
+
+    private long evaluate(long board, int[] hidden) {
+        System.arraycopy(hiddenBiases, 0, hidden, 0, hiddenCount);
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            int row = getInput(board, cell) * hiddenCount;
+            for (int i = 0; i < hiddenCount; i++) {
+                hidden[i] += inputWeights[row + i];
+            }
+        }
+        int output = outputBias;
+        for (int i = 0; i < hiddenCount; i++) {
+            output += outputWeights[i] * Math.max(hidden[i], 0);
+        }
+        return output;
+    }
+
+    /**
+     * @return the real value of one unit of an output
+     */
+    public double getValueScale() {
+        return (double) inputScale * outputScale;
+    }
+
+    /**
+     * @return the number of hidden units
+     */
+    public int getHiddenCount() {
+        return hiddenCount;
+    }
+}
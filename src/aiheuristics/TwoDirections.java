@@ -3,6 +3,8 @@ package aiheuristics;
 import gamemodel.Direction;
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  *
@@ -13,6 +15,11 @@ public class TwoDirections extends Heuristic {
     public TwoDirections(double weight) {
         super(weight);
     }
+
+    @Override
+    public Set<HeuristicInput> getInputs() {
+        return EnumSet.of(HeuristicInput.SCORE, HeuristicInput.PREVIOUS_MOVE, HeuristicInput.DIRECTION);
+    }
     
     
     @Override
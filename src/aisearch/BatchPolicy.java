@@ -0,0 +1,21 @@
+package aisearch;
+
+import gamemodel.BoardBatch;
+
+/**
+ * Picks the moves of every running game of a {@link BoardBatch} in one call.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public interface BatchPolicy {
+
+    /**
+     * Called after {@link BoardBatch#computeMoves()}, so the afterstates and
+     * legal moves of the running games are known.
+     *
+     * @param batch
+     * @param decisions receives a direction ordinal for each running game,
+     * by game index
+     */
+    void chooseMoves(BoardBatch batch, byte[] decisions);
+}
@@ -0,0 +1,13 @@
+package aisearch;
+
+/**
+ * How the search picks tile spawn positions when a board has more empty cells
+ * than the chance sample size.
+ *
+ * @author lucas.burdell
+ */
+public enum ChanceSampling {
+    NONE, // expand every empty cell
+    STRATIFIED, // one cell from each of sample size equal groups of empty cells
+    IMPORTANCE // favour cells next to tiles, where a spawn changes the board most
+}
@@ -0,0 +1,234 @@
+package aisearch;
+
+import aiheuristics.Heuristic;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of heuristic values shared by every search in the
+ * process, keyed by a packed 4x4 board and the id of the heuristic set that
+ * produced them. The table lives in direct buffers so a table of several
+ * gigabytes costs the garbage collector nothing.
+ *
+ * Entries are guarded by a sequence lock instead of a mutex: a writer makes
+ * the sequence odd while it fills the entry, and a reader that sees an odd or
+ * changed sequence treats the lookup as a miss. Writers that find an entry
+ * busy skip the write. Each bucket holds {@link #WAYS} entries and is
+ * replaced with the clock (second chance) policy.
+ *
+ * Only values that depend on nothing but the grid may be stored, see
+ * {@link Heuristic#isGridOnly()}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class EvaluationCache {
+
+    public static final int WAYS = 4;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(
+            long[].class, ByteOrder.nativeOrder());
+    private static final int SEGMENT_BYTES = 1 << 30;
+    // slot layout, in longs: sequence, board, heuristic set id + 1, referenced, values
+    private static final int SEQUENCE = 0;
+    private static final int BOARD = 8;
+    private static final int TAG = 16;
+    private static final int REFERENCED = 24;
+    private static final int VALUES = 32;
+
+    private static final ConcurrentHashMap<String, Integer> heuristicSetIds = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextHeuristicSetId = new AtomicInteger();
+
+    private final ByteBuffer[] segments;
+    private final int valuesPerEntry;
+    private final int slotBytes;
+    private final int slotsPerSegment;
+    private final long bucketMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param megabytes approximate size of the table
+     * @param valuesPerEntry the most heuristics of one set the table can hold
+     */
+    public EvaluationCache(long megabytes, int valuesPerEntry) {
+        this.valuesPerEntry = valuesPerEntry;
+        this.slotBytes = VALUES + 8 * valuesPerEntry;
+        long bucketBytes = (long) slotBytes * WAYS;
+        long buckets = Long.highestOneBit(Math.max(1, (megabytes << 20) / bucketBytes));
+        this.bucketMask = buckets - 1;
+        long slots = buckets * WAYS;
+        this.slotsPerSegment = (int) Math.min(slots, SEGMENT_BYTES / bucketBytes * WAYS);
+        int segmentCount = (int) ((slots + slotsPerSegment - 1) / slotsPerSegment);
+        this.segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            // aligned so the atomic operations of the view handle are allowed
+            segments[i] = ByteBuffer.allocateDirect(slotsPerSegment * slotBytes + 7)
+                    .alignedSlice(8).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Heuristic values do not depend on weights, so sets with the same
+     * heuristic classes and parameters in the same order share an id. Learned
+     * heuristics give a hash of their tables as parameters, so two that were
+     * trained differently never read each other's values.
+     *
+     * @param heuristics
+     * @return the id of the heuristic set
+     */
+    public static int getHeuristicSetId(Heuristic[] heuristics) {
+        StringBuilder name = new StringBuilder();
+        for (Heuristic heuristic : heuristics) {
+            name.append(heuristic.getClass().getName())
+                    .append("[").append(heuristic.getParameterDescription()).append("],");
+        }
+        return heuristicSetIds.computeIfAbsent(name.toString(), key -> nextHeuristicSetId.getAndIncrement());
+    }
+
+    private static long hash(long board, int setId) {
+        long z = board + (setId + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Looks up the values of a board.
+     *
+     * @param board a board packed by {@link gamemodel.PackedBoard}
+     * @param setId
+     * @param values receives the values on a hit
+     * @param count number of values to read
+     * @return true on a hit
+     */
+    public boolean get(long board, int setId, long[] values, int count) {
+        if (count > valuesPerEntry) {
+            return false;
+        }
+        long hash = hash(board, setId);
+        long firstSlot = (hash & bucketMask) * WAYS;
+        ByteBuffer segment = segments[(int) (firstSlot / slotsPerSegment)];
+        int firstOffset = (int) (firstSlot % slotsPerSegment) * slotBytes;
+        for (int way = 0; way < WAYS; way++) {
+            int offset = firstOffset + way * slotBytes;
+            long sequence = (long) LONGS.getAcquire(segment, offset + SEQUENCE);
+            if ((sequence & 1) != 0
+                    || (long) LONGS.getOpaque(segment, offset + BOARD) != board
+                    || (long) LONGS.getOpaque(segment, offset + TAG) != setId + 1) {
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                values[i] = (long) LONGS.getOpaque(segment, offset + VALUES + 8 * i);
+            }
+            VarHandle.acquireFence();
+            if ((long) LONGS.getOpaque(segment, offset + SEQUENCE) != sequence) {
+                break; // overwritten while reading
+            }
+            if ((long) LONGS.getOpaque(segment, offset + REFERENCED) == 0) {
+                LONGS.setOpaque(segment, offset + REFERENCED, 1L);
+            }
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Stores the values of a board, replacing an entry of its bucket that
+     * has not been used since the clock last passed it.
+     *
+     * @param board a board packed by {@link gamemodel.PackedBoard}
+     * @param setId
+     * @param values
+     * @param count number of values to store
+     */
+    public void put(long board, int setId, long[] values, int count) {
+        if (count > valuesPerEntry) {
+            return;
+        }
+        long hash = hash(board, setId);
+        long firstSlot = (hash & bucketMask) * WAYS;
+        ByteBuffer segment = segments[(int) (firstSlot / slotsPerSegment)];
+        int firstOffset = (int) (firstSlot % slotsPerSegment) * slotBytes;
+
+        int victim = -1;
+        int hand = (int) (hash >>> 62) & (WAYS - 1);
+        for (int i = 0; i < WAYS && victim < 0; i++) {
+            int offset = firstOffset + ((hand + i) & (WAYS - 1)) * slotBytes;
+            long tag = (long) LONGS.getOpaque(segment, offset + TAG);
+            if (tag == 0 || (tag == setId + 1 && (long) LONGS.getOpaque(segment, offset + BOARD) == board)) {
+                victim = offset;
+            }
+        }
+        for (int i = 0; i < WAYS && victim < 0; i++) {
+            int offset = firstOffset + ((hand + i) & (WAYS - 1)) * slotBytes;
+            if ((long) LONGS.getOpaque(segment, offset + REFERENCED) == 0) {
+                victim = offset;
+            } else {
+                LONGS.setOpaque(segment, offset + REFERENCED, 0L); // second chance
+            }
+        }
+        if (victim < 0) {
+            victim = firstOffset + hand * slotBytes;
+        }
+
+        long sequence = (long) LONGS.getVolatile(segment, victim + SEQUENCE);
+        if ((sequence & 1) != 0
+                || !LONGS.compareAndSet(segment, victim + SEQUENCE, sequence, sequence + 1)) {
+            return; // another thread is writing this entry
+        }
+        if ((long) LONGS.getOpaque(segment, victim + TAG) != 0) {
+            evictions.increment();
+        }
+        LONGS.setOpaque(segment, victim + BOARD, board);
+        LONGS.setOpaque(segment, victim + TAG, (long) setId + 1);
+        LONGS.setOpaque(segment, victim + REFERENCED, 0L);
+        for (int i = 0; i < count; i++) {
+            LONGS.setOpaque(segment, victim + VALUES + 8 * i, values[i]);
+        }
+        LONGS.setRelease(segment, victim + SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * @return the number of entries the table holds
+     */
+    public long getCapacity() {
+        return (bucketMask + 1) * WAYS;
+    }
+
+    /**
+     * @return the valuesPerEntry
+     */
+    public int getValuesPerEntry() {
+        return valuesPerEntry;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits / lookups, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+}
@@ -0,0 +1,66 @@
+package aisearch;
+
+import aiheuristics.BatchEvaluator;
+import gamemodel.BoardBatch;
+import gamemodel.Direction;
+
+/**
+ * Plays the move whose afterstate evaluates best: a depth 1 afterstate
+ * search for a whole batch. The legal afterstates of all running games are
+ * gathered into one array and handed to the evaluator in a single call.
+ * Ties go to the first direction.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GreedyBatchPolicy implements BatchPolicy {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final BatchEvaluator evaluator;
+    private long[] afterStates = new long[0];
+    private long[] values = new long[0];
+
+    public GreedyBatchPolicy(BatchEvaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    @Override
+    public void chooseMoves(BoardBatch batch, byte[] decisions) {
+        int runningCount = batch.getRunningCount();
+        int maxCount = runningCount * DIRECTIONS.length;
+        if (afterStates.length < maxCount) {
+            afterStates = new long[maxCount];
+            values = new long[maxCount];
+        }
+        int count = 0;
+        for (int i = 0; i < runningCount; i++) {
+            int game = batch.getRunningGame(i);
+            int legal = batch.getLegalMoves(game);
+            for (Direction direction : DIRECTIONS) {
+                if ((legal & (1 << direction.ordinal())) != 0) {
+                    afterStates[count++] = batch.getAfterState(game, direction);
+                }
+            }
+        }
+        evaluator.evaluate(afterStates, count, values);
+
+        // walk the values in the order they were gathered
+        int index = 0;
+        for (int i = 0; i < runningCount; i++) {
+            int game = batch.getRunningGame(i);
+            int legal = batch.getLegalMoves(game);
+            long bestValue = Long.MIN_VALUE;
+            int best = 0;
+            for (Direction direction : DIRECTIONS) {
+                if ((legal & (1 << direction.ordinal())) != 0) {
+                    long value = values[index++];
+                    if (value > bestValue) {
+                        bestValue = value;
+                        best = direction.ordinal();
+                    }
+                }
+            }
+            decisions[game] = (byte) best;
+        }
+    }
+}
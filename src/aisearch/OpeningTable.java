@@ -0,0 +1,169 @@
+package aisearch;
+
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.PackedBoard;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Precomputed decisions for the opening positions of a game, written by
+ * {@code cliai.OpeningTableGenerator} and memory-mapped by the runners.
+ *
+ * Positions are keyed on the packed board exactly as it lies, sorted so a
+ * lookup is a binary search. They are not folded under the symmetries of
+ * the board, because a decision only carries over to a rotated or mirrored
+ * board when every heuristic, the search and the decider's tie breaking are
+ * unchanged by the symmetry, and most heuristics are not (MonotonicityInRows
+ * and Stacks read one axis only). The file holds a header, the sorted keys
+ * and then one direction ordinal per key:
+ *
+ * <pre>
+ * int magic, int version, long configuration fingerprint,
+ * int move count, int entry count, long padding,
+ * long[entry count] keys, byte[entry count] directions
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class OpeningTable {
+
+    private static final int MAGIC = 0x4F50454E; // "OPEN"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final long fingerprint;
+    private final int moveCount;
+    private final int entryCount;
+    private final LongBuffer keys;
+    private final ByteBuffer directions;
+
+    private OpeningTable(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an opening table");
+        }
+        this.fingerprint = buffer.getLong(8);
+        this.moveCount = buffer.getInt(16);
+        this.entryCount = buffer.getInt(20);
+        if (buffer.capacity() != HEADER_BYTES + 9L * entryCount) {
+            throw new IOException("Truncated opening table");
+        }
+        this.keys = buffer.position(HEADER_BYTES).slice().asLongBuffer();
+        this.directions = buffer.position(HEADER_BYTES + 8 * entryCount).slice();
+    }
+
+    /**
+     * Maps a table into memory. The mapping stays valid after the file
+     * channel is closed.
+     *
+     * @param file
+     * @return the table, or null if the file does not exist or is not a
+     * table
+     */
+    public static OpeningTable map(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new OpeningTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a table through a temporary file.
+     *
+     * @param file
+     * @param fingerprint identifies the configuration the decisions were
+     * made with
+     * @param moveCount number of opening moves covered
+     * @param sortedKeys packed boards in ascending order
+     * @param directions the decision for each key
+     * @throws IOException
+     */
+    public static void write(File file, long fingerprint, int moveCount,
+            long[] sortedKeys, Direction[] directions) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fingerprint);
+            output.writeInt(moveCount);
+            output.writeInt(sortedKeys.length);
+            output.writeLong(0);
+            for (long key : sortedKeys) {
+                output.writeLong(key);
+            }
+            for (Direction direction : directions) {
+                output.writeByte(direction.ordinal());
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param board
+     * @return the stored decision for board, or null if board is not in the
+     * table
+     */
+    public Direction lookup(GameBoard board) {
+        int[][] grid = board.getGameGrid();
+        if (!PackedBoard.canPack(grid)) {
+            return null;
+        }
+        int index = find(PackedBoard.pack(grid));
+        return index < 0 ? null : DIRECTIONS[directions.get(index)];
+    }
+
+    private int find(long key) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = keys.get(middle);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the fingerprint of the configuration the table was made with
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the number of opening moves covered by the table
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the number of positions in the table
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+}
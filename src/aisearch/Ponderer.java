@@ -0,0 +1,243 @@
+package aisearch;
+
+import aiheuristics.Heuristic;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.MoveSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Searches positions on background threads before they are asked for, so a
+ * move can be answered as soon as the position arrives.
+ *
+ * {@link #ponder(GameBoard)} is called with the position the player is
+ * thinking about. It searches that position first, for a hint, and then
+ * every position the game can reach from it: each legal move followed by a
+ * 2 spawning in each empty cell, and a 4 when fours are considered. Results
+ * for positions that can no longer be reached are dropped. When the game
+ * gets to one of the pondered positions, {@link #getVotes(GameBoard)}
+ * returns its votes at once, or waits for the search already under way
+ * instead of starting over.
+ *
+ * Positions are matched the way {@link GameController#doGameMove} makes
+ * them: the grid and score of the board, with no previous move.
+ *
+ * Each background thread gets its own searcher from the factory, since a
+ * {@link SingleThreadSearch} and its controller hold per-search state. The
+ * heuristics are shared between the threads.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class Ponderer {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Heuristic[] heuristics;
+    private final ThreadLocal<SingleThreadSearch> searchers;
+    private final ExecutorService executor;
+    // used by the thread that calls ponder and getVotes
+    private final GameController controller = new GameController();
+    private final Map<Position, Future<int[]>> results = new ConcurrentHashMap<>();
+    private boolean considerFours = false;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param searcherFactory makes a configured searcher with its own
+     * controller; called once per thread
+     * @param heuristics
+     * @param threadCount number of background threads
+     */
+    public Ponderer(Supplier<SingleThreadSearch> searcherFactory, Heuristic[] heuristics, int threadCount) {
+        this.heuristics = heuristics;
+        this.searchers = ThreadLocal.withInitial(searcherFactory);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "ponderer-" + threadNumber.incrementAndGet());
+            // pondering never keeps the game from exiting
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts searching board and the positions reachable from it in one
+     * move, and drops the results for every other position.
+     *
+     * @param board the position the player is to move in
+     */
+    public void ponder(GameBoard board) {
+        Map<Position, GameBoard> wanted = new LinkedHashMap<>();
+        wanted.put(new Position(board), board);
+        addReachablePositions(board, wanted);
+
+        results.entrySet().removeIf(entry -> {
+            if (wanted.containsKey(entry.getKey())) {
+                return false;
+            }
+            // a search already under way runs to its end, but its result is
+            // no longer kept
+            entry.getValue().cancel(false);
+            return true;
+        });
+        for (Map.Entry<Position, GameBoard> entry : wanted.entrySet()) {
+            GameBoard position = entry.getValue();
+            results.computeIfAbsent(entry.getKey(),
+                    key -> executor.submit(() -> searchers.get().getVotesOnDirections(position, heuristics)));
+        }
+    }
+
+    // each legal move followed by each spawn, the more likely 2s first
+    private void addReachablePositions(GameBoard board, Map<Position, GameBoard> positions) {
+        int size = board.getGameGrid().length;
+        MoveSet moves = new MoveSet(size);
+        controller.computeAllMoves(board, moves);
+        List<GameBoard> afterStates = new ArrayList<>();
+        for (Direction direction : DIRECTIONS) {
+            if (moves.isLegal(direction)) {
+                afterStates.add(moves.createAfterstate(board, direction));
+            }
+        }
+        int largestSpawn = considerFours ? 2 : 1;
+        for (int value = 1; value <= largestSpawn; value++) {
+            for (GameBoard afterState : afterStates) {
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        if (afterState.getGameGrid()[x][y] != 0) {
+                            continue;
+                        }
+                        // copied the way placeRandomTile copies it
+                        GameBoard position = new GameBoard(afterState);
+                        position.getGameGrid()[x][y] = value;
+                        positions.put(new Position(position), position);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param board
+     * @return true if the votes for board are ready
+     */
+    public boolean isReady(GameBoard board) {
+        Future<int[]> result = results.get(new Position(board));
+        return result != null && result.isDone() && !result.isCancelled();
+    }
+
+    /**
+     * Gets the votes for board: the pondered result if board was pondered,
+     * waiting for its search to finish if needed, and a search on the
+     * calling thread otherwise.
+     *
+     * @param board
+     * @return the votes on each direction
+     * @throws InterruptedException
+     */
+    public int[] getVotes(GameBoard board) throws InterruptedException {
+        Future<int[]> result = results.get(new Position(board));
+        if (result != null && !result.isCancelled()) {
+            hits++;
+            try {
+                return result.get();
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        misses++;
+        return searchers.get().getVotesOnDirections(board, heuristics);
+    }
+
+    /**
+     * Stops the background threads. Searches under way run to their end.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        results.clear();
+    }
+
+    /**
+     * @return true if spawned 4s are pondered as well as 2s
+     */
+    public boolean isConsiderFours() {
+        return considerFours;
+    }
+
+    /**
+     * @param considerFours true to ponder spawned 4s as well as 2s; a 4
+     * spawns one time in ten, so this doubles the work for few hits
+     */
+    public void setConsiderFours(boolean considerFours) {
+        this.considerFours = considerFours;
+    }
+
+    /**
+     * @return the number of positions kept, searched or not
+     */
+    public int getPositionCount() {
+        return results.size();
+    }
+
+    /**
+     * @return the number of getVotes calls answered from pondering
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of getVotes calls that had to search
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    // a position as the searcher sees it
+    private static final class Position {
+
+        private final int[][] grid;
+        private final int score;
+        private final Direction previousMove;
+        private final int hash;
+
+        Position(GameBoard board) {
+            int[][] source = board.getGameGrid();
+            this.grid = new int[source.length][];
+            for (int x = 0; x < source.length; x++) {
+                grid[x] = source[x].clone();
+            }
+            this.score = board.getScore();
+            this.previousMove = board.getPreviousMove();
+            this.hash = (Arrays.deepHashCode(grid) * 31 + score) * 31
+                    + (previousMove == null ? 0 : previousMove.ordinal() + 1);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Position)) {
+                return false;
+            }
+            Position position = (Position) other;
+            return score == position.score
+                    && previousMove == position.previousMove
+                    && Arrays.deepEquals(grid, position.grid);
+        }
+    }
+}
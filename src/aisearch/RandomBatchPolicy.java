@@ -0,0 +1,32 @@
+package aisearch;
+
+import gamemodel.BoardBatch;
+import java.util.SplittableRandom;
+
+/**
+ * Plays a uniformly random legal move: the baseline every other policy
+ * should beat.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class RandomBatchPolicy implements BatchPolicy {
+
+    private final SplittableRandom random;
+
+    public RandomBatchPolicy(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public void chooseMoves(BoardBatch batch, byte[] decisions) {
+        for (int i = 0; i < batch.getRunningCount(); i++) {
+            int game = batch.getRunningGame(i);
+            int legal = batch.getLegalMoves(game);
+            int choice = random.nextInt(Integer.bitCount(legal));
+            for (int c = 0; c < choice; c++) {
+                legal &= legal - 1;
+            }
+            decisions[game] = (byte) Integer.numberOfTrailingZeros(legal);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package aisearch;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one depth of a breadth-first search, from the
+ * first node of the depth being expanded to the last. Searches that reuse
+ * their tree visit nodes depth first and record no layers. Off unless a
+ * recording enables it; when off a search only checks it once.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+@Name("aisearch.SearchLayer")
+@Label("Search Layer")
+@Category({"2048", "Search"})
+@Description("Expansion of one depth of a search")
+@Enabled(false)
+@StackTrace(false)
+public class SearchLayerEvent extends jdk.jfr.Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    @Description("Nodes expanded at this depth")
+    long nodes;
+
+    @Label("Pruned Nodes")
+    @Description("Nodes left unexpanded by the probability cutoff")
+    long prunedNodes;
+}
@@ -0,0 +1,9 @@
+package aisearch;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public enum SearchPhase {
+    INITIALIZATION, EXPANSION, EVALUATION, VOTING
+}
@@ -0,0 +1,209 @@
+package aisearch;
+
+import java.util.Arrays;
+
+/**
+ * Counters describing the work done by {@link SingleThreadSearch}. Each
+ * search thread writes to its own profile (see {@link SearchProfiler}), so the
+ * counters are plain fields and cost a few increments per node.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SearchProfile {
+
+    private long searches = 0;
+    private long[] nodesPerDepth = new long[8];
+    private long afterstates = 0;
+    private long nextStates = 0;
+    private long heuristicEvaluations = 0;
+    private long unchangedMoves = 0;
+    private long prunedNodes = 0;
+    private long reusedNodes = 0;
+    private final long[] phaseTimes = new long[SearchPhase.values().length];
+
+    void addSearch() {
+        searches++;
+    }
+
+    void addNode(int depth) {
+        if (depth >= nodesPerDepth.length) {
+            nodesPerDepth = Arrays.copyOf(nodesPerDepth, Math.max(depth + 1, nodesPerDepth.length * 2));
+        }
+        nodesPerDepth[depth]++;
+    }
+
+    void addAfterstate() {
+        afterstates++;
+    }
+
+    void addNextStates(long count) {
+        nextStates += count;
+    }
+
+    void addHeuristicEvaluations(long count) {
+        heuristicEvaluations += count;
+    }
+
+    void addUnchangedMove() {
+        unchangedMoves++;
+    }
+
+    void addPrunedNode() {
+        prunedNodes++;
+    }
+
+    void addReusedNode() {
+        reusedNodes++;
+    }
+
+    void addPhaseTime(SearchPhase phase, long nanos) {
+        phaseTimes[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Adds the counters of another profile to this one.
+     *
+     * @param other
+     */
+    public void add(SearchProfile other) {
+        searches += other.searches;
+        long[] otherNodes = other.nodesPerDepth;
+        if (otherNodes.length > nodesPerDepth.length) {
+            nodesPerDepth = Arrays.copyOf(nodesPerDepth, otherNodes.length);
+        }
+        for (int i = 0; i < otherNodes.length; i++) {
+            nodesPerDepth[i] += otherNodes[i];
+        }
+        afterstates += other.afterstates;
+        nextStates += other.nextStates;
+        heuristicEvaluations += other.heuristicEvaluations;
+        unchangedMoves += other.unchangedMoves;
+        prunedNodes += other.prunedNodes;
+        reusedNodes += other.reusedNodes;
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] += other.phaseTimes[i];
+        }
+    }
+
+    public void clear() {
+        searches = 0;
+        Arrays.fill(nodesPerDepth, 0);
+        afterstates = 0;
+        nextStates = 0;
+        heuristicEvaluations = 0;
+        unchangedMoves = 0;
+        prunedNodes = 0;
+        reusedNodes = 0;
+        Arrays.fill(phaseTimes, 0);
+    }
+
+    /**
+     * @return the number of searches run
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * @param depth
+     * @return the number of nodes expanded at depth (the root is depth 0)
+     */
+    public long getNodes(int depth) {
+        return depth < nodesPerDepth.length ? nodesPerDepth[depth] : 0;
+    }
+
+    /**
+     * @return the number of nodes expanded over all depths
+     */
+    public long getTotalNodes() {
+        long output = 0;
+        for (long nodes : nodesPerDepth) {
+            output += nodes;
+        }
+        return output;
+    }
+
+    /**
+     * @return the deepest depth with an expanded node
+     */
+    public int getMaximumDepth() {
+        for (int i = nodesPerDepth.length - 1; i >= 0; i--) {
+            if (nodesPerDepth[i] != 0) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of moves that changed the board
+     */
+    public long getAfterstates() {
+        return afterstates;
+    }
+
+    /**
+     * @return the number of tile spawns generated
+     */
+    public long getNextStates() {
+        return nextStates;
+    }
+
+    /**
+     * @return the heuristicEvaluations
+     */
+    public long getHeuristicEvaluations() {
+        return heuristicEvaluations;
+    }
+
+    /**
+     * @return the number of moves that did not change the board
+     */
+    public long getUnchangedMoves() {
+        return unchangedMoves;
+    }
+
+    /**
+     * @return the number of nodes not expanded because they were too
+     * unlikely to be reached
+     */
+    public long getPrunedNodes() {
+        return prunedNodes;
+    }
+
+    /**
+     * @return the number of nodes taken from the previous search's tree
+     */
+    public long getReusedNodes() {
+        return reusedNodes;
+    }
+
+    /**
+     * @param phase
+     * @return the time spent in phase in nanoseconds
+     */
+    public long getPhaseTime(SearchPhase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder output = new StringBuilder();
+        output.append("searches: ").append(searches).append("\n");
+        for (int depth = 0; depth <= getMaximumDepth(); depth++) {
+            output.append("nodes at depth ").append(depth).append(": ")
+                    .append(getNodes(depth)).append("\n");
+        }
+        output.append("afterstates: ").append(afterstates).append("\n");
+        output.append("next states: ").append(nextStates).append("\n");
+        output.append("unchanged moves: ").append(unchangedMoves).append("\n");
+        output.append("pruned nodes: ").append(prunedNodes).append("\n");
+        output.append("reused nodes: ").append(reusedNodes).append("\n");
+        output.append("heuristic evaluations: ").append(heuristicEvaluations).append("\n");
+        for (SearchPhase phase : SearchPhase.values()) {
+            output.append(phase.name().toLowerCase()).append(" time: ")
+                    .append(getPhaseTime(phase) / 1e9).append(" seconds\n");
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package aisearch;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands every search thread its own {@link SearchProfile} and sums them up
+ * when asked. Profiles of finished threads are kept so their work still
+ * shows up in the totals.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class SearchProfiler {
+
+    private static final ConcurrentLinkedQueue<SearchProfile> profiles = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<SearchProfile> threadProfile = ThreadLocal.withInitial(() -> {
+        SearchProfile profile = new SearchProfile();
+        profiles.add(profile);
+        return profile;
+    });
+
+    private SearchProfiler() {
+    }
+
+    /**
+     * @return the profile of the calling thread
+     */
+    public static SearchProfile current() {
+        return threadProfile.get();
+    }
+
+    /**
+     * Sums the profiles of all threads. Counters of threads that are still
+     * searching are read without synchronization, so totals taken mid-run
+     * may be a few nodes behind.
+     *
+     * @return a new profile holding the totals
+     */
+    public static SearchProfile aggregate() {
+        SearchProfile output = new SearchProfile();
+        for (SearchProfile profile : profiles) {
+            output.add(profile);
+        }
+        return output;
+    }
+
+    /**
+     * Clears the profiles of all threads. Only exact while no search runs.
+     */
+    public static void reset() {
+        for (SearchProfile profile : profiles) {
+            profile.clear();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package aisearch;
+
+import aiheuristics.Heuristic;
+import gamemodel.GameBoard;
+import java.util.Arrays;
+
+/**
+ * The nodes expanded by the last search of a {@link SingleThreadSearch},
+ * kept so the next search can start from the board that was actually reached
+ * instead of from scratch.
+ *
+ * A node is a board the search would have queued: a tile spawn after a move,
+ * or the afterstate itself when afterstates are evaluated. Nodes keep the
+ * heuristic values of their board and its afterstates without depth or
+ * search weighting, so they stay valid when the node moves up the tree.
+ * Weights and probabilities are kept relative to the parent for the same
+ * reason.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+final class SearchTree {
+
+    static final class Node {
+
+        final GameBoard board;
+        // chance sampling weight relative to the parent
+        final double weight;
+        // chance of reaching this node from the parent
+        final double probability;
+        // sum of the values of the board and its afterstates, null until
+        // the node is evaluated
+        long[] values = null;
+        // nodes under each direction, null until the node is expanded
+        Node[][] children = null;
+        // directions left unexpanded by the probability cutoff
+        int prunedDirections = 0;
+
+        Node(GameBoard board, double weight, double probability) {
+            this.board = board;
+            this.weight = weight;
+            this.probability = probability;
+        }
+    }
+
+    private final Heuristic[] heuristics;
+    private final StateEvaluationType evaluationType;
+    private final boolean considerFours;
+    private final ChanceSampling chanceSampling;
+    private final int chanceSampleSize;
+    private Node root = null;
+
+    SearchTree(Heuristic[] heuristics, StateEvaluationType evaluationType, boolean considerFours,
+            ChanceSampling chanceSampling, int chanceSampleSize) {
+        this.heuristics = heuristics;
+        this.evaluationType = evaluationType;
+        this.considerFours = considerFours;
+        this.chanceSampling = chanceSampling;
+        this.chanceSampleSize = chanceSampleSize;
+    }
+
+    /**
+     * The depth, weighting and cutoff of a search are applied when the tree
+     * is walked; everything else decides which nodes exist and what they
+     * hold.
+     *
+     * @return true if the nodes of this tree are the ones a search with these
+     * settings would make
+     */
+    boolean isBuiltWith(Heuristic[] heuristics, StateEvaluationType evaluationType, boolean considerFours,
+            ChanceSampling chanceSampling, int chanceSampleSize) {
+        return this.heuristics == heuristics
+                && this.evaluationType == evaluationType
+                && this.considerFours == considerFours
+                && this.chanceSampling == chanceSampling
+                && this.chanceSampleSize == chanceSampleSize;
+    }
+
+    /**
+     * Finds the node for the board the game reached from the root: the move
+     * that was played followed by the tile that spawned.
+     *
+     * @param board
+     * @return the node, or null if the search never made it (the spawn was
+     * not sampled, or was a four and fours are not considered)
+     */
+    Node findReachedChild(GameBoard board) {
+        if (root == null || root.children == null) {
+            return null;
+        }
+        int[][] grid = board.getGameGrid();
+        for (Node[] directionChildren : root.children) {
+            if (directionChildren == null) {
+                continue;
+            }
+            for (Node child : directionChildren) {
+                if (child.board.getScore() == board.getScore()
+                        && Arrays.deepEquals(child.board.getGameGrid(), grid)) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the root
+     */
+    Node getRoot() {
+        return root;
+    }
+
+    /**
+     * @param root the root to set; the rest of the old tree is dropped
+     */
+    void setRoot(Node root) {
+        this.root = root;
+    }
+}
@@ -1,9 +1,13 @@
 package aisearch;
 
 import aiheuristics.Heuristic;
+import aiheuristics.HeuristicInput;
 import gamemodel.GameBoard;
 import gamemodel.GameController;
+import gamemodel.MoveSet;
+import gamemodel.PackedBoard;
 import java.util.ArrayList;
+import java.util.Arrays;
 import gamemodel.Direction;
 import java.util.LinkedList;
 import java.util.Queue;
@@ -29,9 +33,31 @@ public class SingleThreadSearch {
     private double logarithmicDepthWeightPower = .5;
     private boolean depthScaling = false;
     private static final ConcurrentHashMap<String, byte[][][]> stateMap = new ConcurrentHashMap<>();
+    // not synchronized; only accurate when each thread has its own searcher
+    private long nodesSearched = 0;
+    private long nodesPruned = 0;
+    private boolean profilingEnabled = false;
     
 
     private boolean considerFoursForPossibleStates = false;
+    private ChanceSampling chanceSampling = ChanceSampling.NONE;
+    private int chanceSampleSize = 4;
+    // nodes less likely than this to be reached are not expanded
+    private double probabilityCutoff = 0;
+    private EvaluationCache evaluationCache = null;
+    // heuristics the set id was last looked up for
+    private Heuristic[] heuristicSetHeuristics = null;
+    private int heuristicSetId = 0;
+    private boolean treeReuse = false;
+    // nodes of the last tree search, null unless treeReuse is on
+    private SearchTree searchTree = null;
+    // one per depth of the tree search
+    private MoveSet[] treeMoves = new MoveSet[0];
+    private long[] treeGridValues = new long[0];
+    private long nodesReused = 0;
+    private int lastSearchDepth = 0;
+    // heuristic sums of the last search, by direction
+    private long[][] lastDirectionSums = new long[0][];
 
     /**
      * @return the considerFoursForPossibleStates
@@ -89,19 +115,38 @@ public class SingleThreadSearch {
         // nope, gotta build all the state grids 
          */
         ArrayList<Integer[]> positions = board.getEmptyPositions();
+        double[] weights = null;
+        if (this.chanceSampling != ChanceSampling.NONE && positions.size() > this.chanceSampleSize) {
+            weights = new double[positions.size()];
+            if (this.chanceSampling == ChanceSampling.STRATIFIED) {
+                sampleStratified(positions.size(), weights);
+            } else {
+                sampleByImportance(board, positions, weights);
+            }
+        }
         //byte[][][] gridsToAdd = new byte[positions.size() * 2][][];
         for (int i = 0; i < positions.size(); i++) {
+            if (weights != null && weights[i] == 0) {
+                continue; // not sampled
+            }
+            double weight = board.getSearchWeight() * (weights == null ? 1 : weights[i]);
+            // the real chance of the spawn, whether or not spawns are sampled
+            double probability = board.getSearchProbability() / positions.size();
             Integer[] position = positions.get(i);
             GameBoard board2 = new GameBoard(board);
             board2.getGameGrid()[position[0]][position[1]] = (1);
             board2.setPreviousMove(board.getPreviousMove());
             board2.setNumberOfMerges(board.getNumberOfMerges());
+            board2.setSearchWeight(weight);
+            board2.setSearchProbability(probability * GameController.CHANCE_OF_A_FOUR);
             states.add(board2);
             if (this.considerFoursForPossibleStates) {
                 GameBoard board4 = new GameBoard(board);
                 board4.getGameGrid()[position[0]][position[1]] = (2);
                 board4.setPreviousMove(board.getPreviousMove());
                 board4.setNumberOfMerges(board.getNumberOfMerges());
+                board4.setSearchWeight(weight);
+                board4.setSearchProbability(probability * (1 - GameController.CHANCE_OF_A_FOUR));
                 states.add(board4);
             }
 
@@ -114,6 +159,55 @@ public class SingleThreadSearch {
         return states;
     }
 
+    // Both samplers set weights[i] to the number of empty cells the sampled
+    // cell i stands for (0 when not sampled), so the weighted sum over the
+    // sample estimates the sum over every empty cell without bias.
+    private void sampleStratified(int positionCount, double[] weights) {
+        int start = 0;
+        for (int stratum = 0; stratum < this.chanceSampleSize; stratum++) {
+            int end = (int) ((long) positionCount * (stratum + 1) / this.chanceSampleSize);
+            int size = end - start;
+            weights[start + getRandom().nextInt(size)] = size;
+            start = end;
+        }
+    }
+
+    private void sampleByImportance(GameBoard board, ArrayList<Integer[]> positions, double[] weights) {
+        int[][] grid = board.getGameGrid();
+        double[] importance = new double[positions.size()];
+        double totalImportance = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            int x = positions.get(i)[0];
+            int y = positions.get(i)[1];
+            int neighbours = 0;
+            if (x > 0 && grid[x - 1][y] != 0) {
+                neighbours++;
+            }
+            if (x < grid.length - 1 && grid[x + 1][y] != 0) {
+                neighbours++;
+            }
+            if (y > 0 && grid[x][y - 1] != 0) {
+                neighbours++;
+            }
+            if (y < grid[x].length - 1 && grid[x][y + 1] != 0) {
+                neighbours++;
+            }
+            importance[i] = 1 + neighbours;
+            totalImportance += importance[i];
+        }
+        // draw with replacement; a cell drawn c times stands for
+        // c / (sample size * probability of drawing it) cells
+        for (int sample = 0; sample < this.chanceSampleSize; sample++) {
+            double target = getRandom().nextDouble() * totalImportance;
+            int i = 0;
+            while (i < importance.length - 1 && target >= importance[i]) {
+                target -= importance[i];
+                i++;
+            }
+            weights[i] += totalImportance / (importance[i] * this.chanceSampleSize);
+        }
+    }
+
     /**
      * @param evaluationType the evaluationType to set
      */
@@ -189,12 +283,15 @@ public class SingleThreadSearch {
         maxDepth = aMaximumDepth;
     }
 
-    private long addNewStates(GameBoard afterState, LinkedList queue) {
+    private long addNewStates(GameBoard afterState, LinkedList queue, SearchProfile profile) {
         long nextElementsToDepthIncrease = 0;
         if (this.evaluateStates) {
             LinkedList newStates = createAllPossibleNewStates(afterState);
             queue.addAll(newStates);
             nextElementsToDepthIncrease += newStates.size();
+            if (profile != null) {
+                profile.addNextStates(newStates.size());
+            }
 //            for (GameBoard newState : newStates) {
 //                queue.add(newState);
 //                nextElementsToDepthIncrease++;
@@ -208,24 +305,96 @@ public class SingleThreadSearch {
         return nextElementsToDepthIncrease;
     }
 
-    private long evaluateState(GameBoard state, Heuristic heuristic, int currentDirection, int currentDepth, int maxDepth) {
+    private void evaluateState(GameBoard state, Heuristic[] heuristics, long[] gridValues, long[] sums, int currentDirection, int currentDepth, int maxDepth) {
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            final Heuristic heuristic = heuristics[heuristicNum];
+            // evaluate state of board
+            long value = gridValues != null && heuristic.isGridOnly()
+                    ? gridValues[heuristicNum]
+                    : heuristic.getValueOfState(controller, state, currentDirection);
+            sums[heuristicNum] += weightValue(state, value, currentDepth, maxDepth);
+        }
+    }
+
+    /**
+     * Adds the value of state scored once for every direction. Heuristics
+     * that do not read the direction are evaluated once and counted
+     * directionCount times.
+     *
+     * @return the number of heuristic values computed
+     */
+    private int evaluateStateForAllDirections(GameBoard state, Heuristic[] heuristics, long[] gridValues,
+            long[] sums, int directionCount, int currentDepth, int maxDepth) {
+        int evaluations = 0;
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            final Heuristic heuristic = heuristics[heuristicNum];
+            if (heuristic.dependsOn(HeuristicInput.DIRECTION)) {
+                for (int direction = 0; direction < directionCount; direction++) {
+                    long value = heuristic.getValueOfState(controller, state, direction);
+                    sums[heuristicNum] += weightValue(state, value, currentDepth, maxDepth);
+                }
+                evaluations += directionCount;
+            } else {
+                long value = gridValues != null && heuristic.isGridOnly()
+                        ? gridValues[heuristicNum]
+                        : heuristic.getValueOfState(controller, state, 0);
+                sums[heuristicNum] += directionCount * weightValue(state, value, currentDepth, maxDepth);
+                evaluations++;
+            }
+        }
+        return evaluations;
+    }
+
+    private long weightValue(GameBoard state, long value, int currentDepth, int maxDepth) {
+        return weightValue(value, state.getSearchWeight(), currentDepth, maxDepth);
+    }
+
+    private long weightValue(long value, double weight, int currentDepth, int maxDepth) {
+        long depthValue = weightByDepth(value, currentDepth, maxDepth);
+        return weight == 1 ? depthValue : (long) (depthValue * weight);
+    }
+
+    private long weightByDepth(long value, int currentDepth, int maxDepth) {
         // if depth is 1 override with linear
         if (maxDepth == 1 && this.depthWeightingType == DepthWeighting.LOGARITHMIC) {
             double scale = (maxDepth - currentDepth + 1) / maxDepth;
-            return (long) (heuristic.getValueOfState(controller, state, currentDirection) * scale);
+            return (long) (value * scale);
         }
         switch (this.depthWeightingType) {
             default:
             case NONE:
-                return heuristic.getValueOfState(controller, state, currentDirection);
+                return value;
             case LINEAR:
                 double scale = (maxDepth - currentDepth + 1) / maxDepth;
-                return (long) (heuristic.getValueOfState(controller, state, currentDirection) * scale);
+                return (long) (value * scale);
             case LOGARITHMIC:
                 double x = (currentDepth - 1) / (maxDepth - 1);
                 double y = (Math.pow(this.logarithmicDepthWeightPower, x));
-                return (long) (heuristic.getValueOfState(controller, state, currentDirection) * y);
+                return (long) (value * y);
+        }
+    }
+
+    /**
+     * Fills values with the grid-only heuristic values of state from the
+     * evaluation cache, computing and storing them on a miss.
+     *
+     * @return values, or null when there is no cache or the board can not be
+     * packed
+     */
+    private long[] getGridValues(GameBoard state, Heuristic[] heuristics, long[] values) {
+        if (this.evaluationCache == null || !PackedBoard.canPack(state.getGameGrid())) {
+            return null;
+        }
+        long board = PackedBoard.pack(state.getGameGrid());
+        if (this.evaluationCache.get(board, this.heuristicSetId, values, heuristics.length)) {
+            return values;
         }
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            values[heuristicNum] = heuristics[heuristicNum].isGridOnly()
+                    ? heuristics[heuristicNum].getValueOfState(controller, state, 0) : 0;
+        }
+        this.evaluationCache.put(board, this.heuristicSetId, values, heuristics.length);
+        return values;
     }
 
     private int[] getHeuristicVotes(long[][] heuristicSums, Direction[] directions, Heuristic[] heuristics) {
@@ -315,7 +484,8 @@ public class SingleThreadSearch {
     // this increase is linear (for now)
     public int getDepthScale(GameBoard currentBoard) {
 
-        double emptyThreshold = (GameController.GRID_SIZE) * .75;
+        int gridSize = currentBoard.getGameGrid().length;
+        double emptyThreshold = (gridSize * gridSize) * .75;
         double percentEmpty = (double) currentBoard.getEmptyPositions().size()
                 / (emptyThreshold);
         percentEmpty = Math.max(0, Math.min(percentEmpty, 1));
@@ -331,9 +501,16 @@ public class SingleThreadSearch {
     }
 
     public int[] getVotesOnDirections(GameBoard currentBoard, Heuristic[] heuristics) {
+        SearchProfile profile = this.profilingEnabled ? SearchProfiler.current() : null;
+        if (this.treeReuse) {
+            return getVotesFromTree(currentBoard, heuristics, profile);
+        }
+        long phaseStartTime = profile != null ? System.nanoTime() : 0;
+        long evaluationTime = 0;
         Direction[] directions = Direction.values();
         LinkedList<GameBoard>[] directionQueues = new LinkedList[directions.length];
         long[][] heuristicSums = new long[directions.length][heuristics.length];
+        this.lastDirectionSums = heuristicSums;
         GameController gameController = this.controller;
 
         for (int i = 0; i < directionQueues.length; i++) {
@@ -342,26 +519,60 @@ public class SingleThreadSearch {
 
         int currentDepth = 1;
         int maxDepth = this.depthScaling ? getDepthScale(currentBoard) : this.maxDepth;
+        this.lastSearchDepth = maxDepth;
         long elementsToDepthIncrease = 0;
         long nextElementsToDepthIncrease = 0;
 
+        nodesSearched++;
+        if (profile != null) {
+            profile.addSearch();
+            profile.addNode(0);
+        }
+        long[] stateValues = new long[heuristics.length];
+        long[] afterstateValues = new long[heuristics.length];
+        updateHeuristicSetId(heuristics);
+
         println("Begin queue init");
+        MoveSet moves = new MoveSet(currentBoard.getGameGrid().length);
+        controller.computeAllMoves(currentBoard, moves);
         for (int directionNum = 0; directionNum < directions.length; directionNum++) {
-            GameBoard startingBoard = new GameBoard(currentBoard);
-            startingBoard.setPreviousMove(currentBoard.getPreviousMove());
-            GameBoard afterState = controller.moveGrid(startingBoard, directions[directionNum]);
+            if (!moves.isLegal(directions[directionNum])) {
+                if (profile != null) {
+                    profile.addUnchangedMove();
+                }
+                continue;
+            }
+            GameBoard afterState = moves.createAfterstate(currentBoard, directions[directionNum]);
             if ((afterState.isMoved()) && this.evaluateAfterstates) {
-                for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
-                    final Heuristic heuristic = heuristics[heuristicNum];
-                    // evaluate state of board
-                    heuristicSums[directionNum][heuristicNum] += evaluateState(afterState, heuristic, directionNum, currentDepth, maxDepth);
+                evaluateState(afterState, heuristics, getGridValues(afterState, heuristics, afterstateValues),
+                        heuristicSums[directionNum], directionNum, currentDepth, maxDepth);
+                if (profile != null) {
+                    profile.addHeuristicEvaluations(heuristics.length);
                 }
             }
             if ((afterState.isMoved())) {
-                elementsToDepthIncrease += addNewStates(afterState, directionQueues[directionNum]);
+                elementsToDepthIncrease += addNewStates(afterState, directionQueues[directionNum], profile);
             }
+            if (profile != null) {
+                if (afterState.isMoved()) {
+                    profile.addAfterstate();
+                } else {
+                    profile.addUnchangedMove();
+                }
+            }
+        }
+        if (profile != null) {
+            long now = System.nanoTime();
+            profile.addPhaseTime(SearchPhase.INITIALIZATION, now - phaseStartTime);
+            phaseStartTime = now;
         }
 
+        SearchLayerEvent layerEvent = new SearchLayerEvent();
+        boolean recordLayers = layerEvent.isEnabled();
+        long layerStartNodes = nodesSearched;
+        long layerStartPruned = nodesPruned;
+        layerEvent.begin();
+
         println("Begin queues while loop");
         while (!queuesAreEmpty(directionQueues)) {
             for (int directionQueueNum = 0; directionQueueNum < directionQueues.length; directionQueueNum++) {
@@ -371,31 +582,56 @@ public class SingleThreadSearch {
                     continue; // skip to next queue
                 }
                 GameBoard nextBoard = queue.poll();
+                nodesSearched++;
+                if (profile != null) {
+                    profile.addNode(currentDepth);
+                }
                 
                 elementsToDepthIncrease--;
+                controller.computeAllMoves(nextBoard, moves);
+                // merges are counted per move, evaluate as a fresh board
+                nextBoard.setNumberOfMerges(0);
+                if (this.evaluateStates) {
+                    long evaluationStartTime = profile != null ? System.nanoTime() : 0;
+                    int evaluations = evaluateStateForAllDirections(nextBoard, heuristics,
+                            getGridValues(nextBoard, heuristics, stateValues),
+                            heuristicSums[directionQueueNum], directions.length, currentDepth, maxDepth);
+                    if (profile != null) {
+                        evaluationTime += System.nanoTime() - evaluationStartTime;
+                        profile.addHeuristicEvaluations(evaluations);
+                    }
+                }
                 for (int i = 0; i < directions.length; i++) {
-                    GameBoard newBoard = new GameBoard(nextBoard);
-                    newBoard.setPreviousMove(nextBoard.getPreviousMove());
                     Direction direction = directions[i];
                     
-                    if (this.evaluateStates) {
-                        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
-                            final Heuristic heuristic = heuristics[heuristicNum];
-                            // evaluate state of board
-                            heuristicSums[directionQueueNum][heuristicNum] += evaluateState(newBoard, heuristic, i, currentDepth, maxDepth);
+                    if (!moves.isLegal(direction)) {
+                        if (profile != null) {
+                            profile.addUnchangedMove();
                         }
+                        continue;
+                    }
+                    GameBoard afterState = moves.createAfterstate(nextBoard, direction);
+                    if (profile != null) {
+                        profile.addAfterstate();
                     }
-                    
-                    GameBoard afterState = controller.moveGrid(newBoard, direction);
                     if (currentDepth <= maxDepth && afterState.isMoved()) { //(afterState.isMoved() || this.ignoreMovement) && currentDepth <= maxDepth) {
-                        nextElementsToDepthIncrease += addNewStates(afterState, queue);
+                        if (afterState.getSearchProbability() < this.probabilityCutoff) {
+                            nodesPruned++;
+                            if (profile != null) {
+                                profile.addPrunedNode();
+                            }
+                        } else {
+                            nextElementsToDepthIncrease += addNewStates(afterState, queue, profile);
+                        }
                     }
 
                     if (this.evaluateAfterstates && afterState.isMoved()) { //&& (afterState.isMoved() || this.ignoreMovement)) {
-                        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
-                            final Heuristic heuristic = heuristics[heuristicNum];
-                            // evaluate state of board
-                            heuristicSums[directionQueueNum][heuristicNum] += evaluateState(afterState, heuristic, i, currentDepth, maxDepth);
+                        long evaluationStartTime = profile != null ? System.nanoTime() : 0;
+                        evaluateState(afterState, heuristics, getGridValues(afterState, heuristics, afterstateValues),
+                                heuristicSums[directionQueueNum], i, currentDepth, maxDepth);
+                        if (profile != null) {
+                            evaluationTime += System.nanoTime() - evaluationStartTime;
+                            profile.addHeuristicEvaluations(heuristics.length);
                         }
                     }
 
@@ -403,6 +639,14 @@ public class SingleThreadSearch {
                 }
 
                 if (elementsToDepthIncrease <= 0) {
+                    if (recordLayers) {
+                        commitLayer(layerEvent, currentDepth, nodesSearched - layerStartNodes,
+                                nodesPruned - layerStartPruned);
+                        layerEvent = new SearchLayerEvent();
+                        layerEvent.begin();
+                        layerStartNodes = nodesSearched;
+                        layerStartPruned = nodesPruned;
+                    }
                     currentDepth++;
                     elementsToDepthIncrease = nextElementsToDepthIncrease;
                     nextElementsToDepthIncrease = 0;
@@ -410,7 +654,285 @@ public class SingleThreadSearch {
             }
         }
 
-        return getHeuristicVotes(heuristicSums, directions, heuristics);
+        if (recordLayers && nodesSearched > layerStartNodes) {
+            commitLayer(layerEvent, currentDepth, nodesSearched - layerStartNodes, nodesPruned - layerStartPruned);
+        }
+
+        if (profile == null) {
+            return getHeuristicVotes(heuristicSums, directions, heuristics);
+        }
+        long now = System.nanoTime();
+        profile.addPhaseTime(SearchPhase.EVALUATION, evaluationTime);
+        profile.addPhaseTime(SearchPhase.EXPANSION, now - phaseStartTime - evaluationTime);
+        int[] votes = getHeuristicVotes(heuristicSums, directions, heuristics);
+        profile.addPhaseTime(SearchPhase.VOTING, System.nanoTime() - now);
+        return votes;
+    }
+
+    private static void commitLayer(SearchLayerEvent event, int depth, long nodes, long prunedNodes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.nodes = nodes;
+            event.prunedNodes = prunedNodes;
+            event.commit();
+        }
+    }
+
+    private void updateHeuristicSetId(Heuristic[] heuristics) {
+        if (this.evaluationCache != null && heuristics != this.heuristicSetHeuristics) {
+            this.heuristicSetId = EvaluationCache.getHeuristicSetId(heuristics);
+            this.heuristicSetHeuristics = heuristics;
+        }
+    }
+
+    /**
+     * Searches a tree instead of the direction queues, starting from the
+     * node of the last search that matches currentBoard when there is one.
+     * Depth is counted along each path, so a node at depth d is evaluated at
+     * depth d and expanded while d is at most the maximum depth. Kept nodes
+     * are not evaluated again; only nodes that were below the old maximum
+     * depth or cut off by the old root's probabilities are added.
+     */
+    private int[] getVotesFromTree(GameBoard currentBoard, Heuristic[] heuristics, SearchProfile profile) {
+        long phaseStartTime = profile != null ? System.nanoTime() : 0;
+        Direction[] directions = Direction.values();
+        long[][] heuristicSums = new long[directions.length][heuristics.length];
+        this.lastDirectionSums = heuristicSums;
+        int maxDepth = this.depthScaling ? getDepthScale(currentBoard) : this.maxDepth;
+        this.lastSearchDepth = maxDepth;
+        nodesSearched++;
+        if (profile != null) {
+            profile.addSearch();
+            profile.addNode(0);
+        }
+        updateHeuristicSetId(heuristics);
+        if (this.treeGridValues.length != heuristics.length) {
+            this.treeGridValues = new long[heuristics.length];
+        }
+
+        SearchTree.Node root = null;
+        if (this.searchTree != null && this.searchTree.isBuiltWith(heuristics, this.evaluationType,
+                this.considerFoursForPossibleStates, this.chanceSampling, this.chanceSampleSize)) {
+            root = this.searchTree.findReachedChild(currentBoard);
+        }
+        if (root == null) {
+            // the caller may move currentBoard in place after the search
+            GameBoard rootBoard = new GameBoard(currentBoard);
+            rootBoard.setPreviousMove(currentBoard.getPreviousMove());
+            root = new SearchTree.Node(rootBoard, 1, 1);
+            this.searchTree = new SearchTree(heuristics, this.evaluationType,
+                    this.considerFoursForPossibleStates, this.chanceSampling, this.chanceSampleSize);
+        }
+        this.searchTree.setRoot(root);
+
+        MoveSet moves = getTreeMoves(0, root.board.getGameGrid().length);
+        controller.computeAllMoves(root.board, moves);
+        if (root.children == null) {
+            root.children = new SearchTree.Node[directions.length][];
+        }
+        long[] values = new long[heuristics.length];
+        for (int directionNum = 0; directionNum < directions.length; directionNum++) {
+            if (!moves.isLegal(directions[directionNum])) {
+                if (profile != null) {
+                    profile.addUnchangedMove();
+                }
+                continue;
+            }
+            GameBoard afterState = moves.createAfterstate(root.board, directions[directionNum]);
+            if (profile != null) {
+                profile.addAfterstate();
+            }
+            if (this.evaluateAfterstates) {
+                // the root's own afterstates are not part of its node values
+                Arrays.fill(values, 0);
+                addAfterstateValues(afterState, heuristics, values, directionNum, profile);
+                for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+                    heuristicSums[directionNum][heuristicNum] += weightValue(values[heuristicNum], 1, 1, maxDepth);
+                }
+            }
+            // the root of a search is never cut off
+            if (root.children[directionNum] == null) {
+                root.children[directionNum] = createChildren(afterState, profile);
+            }
+            for (SearchTree.Node child : root.children[directionNum]) {
+                visitTreeNode(child, heuristics, heuristicSums[directionNum], 1, maxDepth,
+                        child.weight, child.probability, profile);
+            }
+        }
+        root.prunedDirections = 0;
+
+        if (profile == null) {
+            return getHeuristicVotes(heuristicSums, directions, heuristics);
+        }
+        long now = System.nanoTime();
+        profile.addPhaseTime(SearchPhase.EXPANSION, now - phaseStartTime);
+        int[] votes = getHeuristicVotes(heuristicSums, directions, heuristics);
+        profile.addPhaseTime(SearchPhase.VOTING, System.nanoTime() - now);
+        return votes;
+    }
+
+    // adds the weighted values of node and everything under it to sums,
+    // evaluating and expanding the parts that are missing
+    private void visitTreeNode(SearchTree.Node node, Heuristic[] heuristics, long[] sums, int depth,
+            int maxDepth, double weight, double probability, SearchProfile profile) {
+        Direction[] directions = Direction.values();
+        MoveSet moves = null;
+        if (node.values == null) {
+            node.values = new long[heuristics.length];
+            // merges are counted per move, evaluate as a fresh board
+            node.board.setNumberOfMerges(0);
+            nodesSearched++;
+            if (profile != null) {
+                profile.addNode(depth);
+            }
+            if (this.evaluateStates) {
+                addStateValues(node.board, heuristics, node.values, directions.length, profile);
+            }
+            if (this.evaluateAfterstates) {
+                moves = getTreeMoves(depth, node.board.getGameGrid().length);
+                controller.computeAllMoves(node.board, moves);
+                for (int i = 0; i < directions.length; i++) {
+                    if (moves.isLegal(directions[i])) {
+                        addAfterstateValues(moves.createAfterstate(node.board, directions[i]),
+                                heuristics, node.values, i, profile);
+                    }
+                }
+            }
+        } else {
+            nodesReused++;
+            if (profile != null) {
+                profile.addReusedNode();
+            }
+        }
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            sums[heuristicNum] += weightValue(node.values[heuristicNum], weight, depth, maxDepth);
+        }
+
+        if (depth > maxDepth) {
+            node.children = null; // the tree got shallower, let the subtree go
+            return;
+        }
+        if (node.children == null || node.prunedDirections != 0) {
+            if (moves == null) {
+                moves = getTreeMoves(depth, node.board.getGameGrid().length);
+                controller.computeAllMoves(node.board, moves);
+            }
+            expandTreeNode(node, moves, probability, profile);
+        }
+        for (SearchTree.Node[] directionChildren : node.children) {
+            if (directionChildren == null) {
+                continue;
+            }
+            for (SearchTree.Node child : directionChildren) {
+                visitTreeNode(child, heuristics, sums, depth + 1, maxDepth,
+                        weight * child.weight, probability * child.probability, profile);
+            }
+        }
+    }
+
+    // adds the nodes under each legal direction of node that is not there
+    // yet and likely enough to be reached
+    private void expandTreeNode(SearchTree.Node node, MoveSet moves, double probability, SearchProfile profile) {
+        Direction[] directions = Direction.values();
+        if (node.children == null) {
+            node.children = new SearchTree.Node[directions.length][];
+        }
+        int prunedDirections = 0;
+        for (int i = 0; i < directions.length; i++) {
+            if (!moves.isLegal(directions[i])) {
+                if (profile != null) {
+                    profile.addUnchangedMove();
+                }
+                continue;
+            }
+            if (node.children[i] != null) {
+                continue;
+            }
+            if (probability < this.probabilityCutoff) {
+                prunedDirections |= 1 << i;
+                nodesPruned++;
+                if (profile != null) {
+                    profile.addPrunedNode();
+                }
+                continue;
+            }
+            node.children[i] = createChildren(moves.createAfterstate(node.board, directions[i]), profile);
+            if (profile != null) {
+                profile.addAfterstate();
+            }
+        }
+        node.prunedDirections = prunedDirections;
+    }
+
+    // the nodes the queue search would add for afterState, with weights and
+    // probabilities relative to it
+    private SearchTree.Node[] createChildren(GameBoard afterState, SearchProfile profile) {
+        afterState.setSearchWeight(1);
+        afterState.setSearchProbability(1);
+        ArrayList<SearchTree.Node> children = new ArrayList<>();
+        if (this.evaluateStates) {
+            LinkedList<GameBoard> newStates = createAllPossibleNewStates(afterState);
+            if (profile != null) {
+                profile.addNextStates(newStates.size());
+            }
+            for (GameBoard newState : newStates) {
+                children.add(new SearchTree.Node(newState, newState.getSearchWeight(), newState.getSearchProbability()));
+            }
+        }
+        if (this.evaluateAfterstates) {
+            children.add(new SearchTree.Node(afterState, 1, 1));
+        }
+        return children.toArray(new SearchTree.Node[children.size()]);
+    }
+
+    private MoveSet getTreeMoves(int depth, int size) {
+        if (depth >= treeMoves.length) {
+            treeMoves = Arrays.copyOf(treeMoves, depth + 1);
+        }
+        if (treeMoves[depth] == null || treeMoves[depth].getSize() != size) {
+            treeMoves[depth] = new MoveSet(size);
+        }
+        return treeMoves[depth];
+    }
+
+    // adds the value of state scored for every direction, unweighted
+    private void addStateValues(GameBoard state, Heuristic[] heuristics, long[] values, int directionCount,
+            SearchProfile profile) {
+        long[] gridValues = getGridValues(state, heuristics, this.treeGridValues);
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            final Heuristic heuristic = heuristics[heuristicNum];
+            if (heuristic.dependsOn(HeuristicInput.DIRECTION)) {
+                for (int direction = 0; direction < directionCount; direction++) {
+                    values[heuristicNum] += heuristic.getValueOfState(controller, state, direction);
+                }
+                if (profile != null) {
+                    profile.addHeuristicEvaluations(directionCount);
+                }
+            } else {
+                values[heuristicNum] += directionCount * (gridValues != null && heuristic.isGridOnly()
+                        ? gridValues[heuristicNum]
+                        : heuristic.getValueOfState(controller, state, 0));
+                if (profile != null) {
+                    profile.addHeuristicEvaluations(1);
+                }
+            }
+        }
+    }
+
+    // adds the value of an afterstate reached by direction, unweighted
+    private void addAfterstateValues(GameBoard afterState, Heuristic[] heuristics, long[] values, int direction,
+            SearchProfile profile) {
+        long[] gridValues = getGridValues(afterState, heuristics, this.treeGridValues);
+        for (int heuristicNum = 0; heuristicNum < heuristics.length; heuristicNum++) {
+            final Heuristic heuristic = heuristics[heuristicNum];
+            values[heuristicNum] += gridValues != null && heuristic.isGridOnly()
+                    ? gridValues[heuristicNum]
+                    : heuristic.getValueOfState(controller, afterState, direction);
+        }
+        if (profile != null) {
+            profile.addHeuristicEvaluations(heuristics.length);
+        }
     }
 
     private boolean queuesAreEmpty(Queue[] queues) {
@@ -460,6 +982,157 @@ public class SingleThreadSearch {
         this.logarithmicDepthWeightPower = logarithmicDepthWeightPower;
     }
 
+    /**
+     * @return the profilingEnabled
+     */
+    public boolean isProfilingEnabled() {
+        return profilingEnabled;
+    }
+
+    /**
+     * @param profilingEnabled record per-thread search counters in
+     * {@link SearchProfiler}
+     */
+    public void setProfilingEnabled(boolean profilingEnabled) {
+        this.profilingEnabled = profilingEnabled;
+    }
+
+    /**
+     * @return the number of nodes expanded by this searcher so far
+     */
+    public long getNodesSearched() {
+        return nodesSearched;
+    }
+
+    /**
+     * @return the maximum depth of the last search, after depth scaling
+     */
+    public int getLastSearchDepth() {
+        return lastSearchDepth;
+    }
+
+    /**
+     * @return the value each heuristic gave each direction in the last
+     * search, indexed [direction ordinal][heuristic]; directions that cannot
+     * be played are 0
+     */
+    public long[][] getLastDirectionSums() {
+        long[][] output = new long[lastDirectionSums.length][];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = lastDirectionSums[i].clone();
+        }
+        return output;
+    }
+
+    /**
+     * @return the evaluationCache
+     */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * @param evaluationCache a cache of grid-only heuristic values, usually
+     * shared by every searcher in the process, or null to evaluate every board
+     */
+    public void setEvaluationCache(EvaluationCache evaluationCache) {
+        this.evaluationCache = evaluationCache;
+    }
+
+    /**
+     * @return the probabilityCutoff
+     */
+    public double getProbabilityCutoff() {
+        return probabilityCutoff;
+    }
+
+    /**
+     * Boards reached with a lower probability than the cutoff are still
+     * evaluated but not expanded further. The probability of a board is the
+     * product of the chances of the tile spawns leading to it, so this only
+     * prunes when next states are evaluated.
+     *
+     * @param probabilityCutoff the probabilityCutoff to set, 0 to expand
+     * everything up to the maximum depth
+     */
+    public void setProbabilityCutoff(double probabilityCutoff) {
+        this.probabilityCutoff = probabilityCutoff;
+    }
+
+    /**
+     * @return the number of nodes this searcher did not expand because of the
+     * probability cutoff
+     */
+    public long getNodesPruned() {
+        return nodesPruned;
+    }
+
+    /**
+     * @return the treeReuse
+     */
+    public boolean isTreeReuse() {
+        return treeReuse;
+    }
+
+    /**
+     * With tree reuse the searcher keeps the nodes of its last search and
+     * starts the next one from the node of the board the game reached, so
+     * only the missing bottom of the tree is evaluated. It searches a tree
+     * with the depth counted along each path, which can expand other nodes
+     * than the direction queues, whose depth is shared by all four
+     * directions. Boards the last search did not reach (an unsampled or four
+     * spawn, a new game) start a new tree.
+     *
+     * @param treeReuse the treeReuse to set
+     */
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+        if (!treeReuse) {
+            this.searchTree = null;
+        }
+    }
+
+    /**
+     * @return the number of nodes the tree search took from an earlier
+     * search instead of evaluating them
+     */
+    public long getNodesReused() {
+        return nodesReused;
+    }
+
+    /**
+     * @return the chanceSampling
+     */
+    public ChanceSampling getChanceSampling() {
+        return chanceSampling;
+    }
+
+    /**
+     * @param chanceSampling how to pick spawn positions on boards with more
+     * empty cells than the chance sample size
+     */
+    public void setChanceSampling(ChanceSampling chanceSampling) {
+        this.chanceSampling = chanceSampling;
+    }
+
+    /**
+     * @return the chanceSampleSize
+     */
+    public int getChanceSampleSize() {
+        return chanceSampleSize;
+    }
+
+    /**
+     * @param chanceSampleSize the most spawn positions to expand per board
+     * when chance sampling is on
+     */
+    public void setChanceSampleSize(int chanceSampleSize) {
+        if (chanceSampleSize < 1) {
+            throw new IllegalArgumentException("Chance sample size must be at least 1");
+        }
+        this.chanceSampleSize = chanceSampleSize;
+    }
+
     /**
      * @return the evaluateStates
      */
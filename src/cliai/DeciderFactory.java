@@ -0,0 +1,20 @@
+package cliai;
+
+import aidecision.AIDecider;
+import aiheuristics.Heuristic;
+import java.util.Random;
+
+/**
+ * Creates the decider for each simulated game.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public interface DeciderFactory {
+
+    /**
+     * @param heuristics the heuristics whose votes the decider evaluates
+     * @param random seeded random the decider should use to break ties
+     * @return a decider for a single game
+     */
+    AIDecider createDecider(Heuristic[] heuristics, Random random);
+}
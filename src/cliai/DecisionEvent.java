@@ -0,0 +1,62 @@
+package cliai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for one move chosen by
+ * {@link GameSimulation#decide}, lasting from the start of the search to the
+ * decision. The move number and highest tile give the phase of the game, so
+ * latency and allocation can be sliced by phase. Off unless a recording
+ * enables it.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+@Name("cliai.Decision")
+@Label("Decision")
+@Category({"2048", "Simulation"})
+@Description("Search and vote for one move")
+@Enabled(false)
+@StackTrace(false)
+public class DecisionEvent extends jdk.jfr.Event {
+
+    @Label("Move Number")
+    long moveNumber;
+
+    @Label("Highest Tile")
+    @Description("Exponent of the highest tile on the board")
+    int highestTile;
+
+    @Label("Board")
+    @Description("Tile exponents, as in GameBoard.toStorageString")
+    String board;
+
+    @Label("Search Depth")
+    @Description("Maximum depth searched, after depth scaling; 0 for an opening table move")
+    int searchDepth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Direction")
+    String direction;
+
+    @Label("Opening Table")
+    boolean openingTable;
+
+    @Label("Votes Up")
+    int votesUp;
+
+    @Label("Votes Down")
+    int votesDown;
+
+    @Label("Votes Left")
+    int votesLeft;
+
+    @Label("Votes Right")
+    int votesRight;
+}
@@ -0,0 +1,347 @@
+package cliai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the games of {@link MassParallelRunner} on {@link DistributedWorker}
+ * processes, on this machine or others, over TCP (see
+ * {@link DistributedProtocol}).
+ *
+ * The games are cut into shards of consecutive game ids. Every game is
+ * seeded from the run seed and its id, so a shard plays the same games on
+ * whichever worker gets it. Each worker holds a few shards at a time and
+ * streams results back as games end. A worker that disconnects or misses
+ * heartbeats for {@link DistributedProtocol#HEARTBEAT_TIMEOUT_MILLIS} is
+ * dropped and its unfinished shards go back in the queue; results already
+ * received are kept, and a game received twice is counted once.
+ *
+ * Listens on -Dcoordinator.port at -Dcoordinator.bindAddress, the loopback
+ * address unless set. The protocol has no authentication, so only bind to
+ * an address on a network you trust. Results are written to results.bin as
+ * in {@link MassParallelRunner}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class DistributedCoordinator {
+
+    private static final int SHARDS_PER_WORKER = 2;
+    private static final int MAX_SHARD_ATTEMPTS = 3;
+
+    private final long seed;
+    private final int maxDepth;
+    private final String configurationHash;
+    private final int gamesToPlay;
+    private final BlockingQueue<Shard> pendingShards = new LinkedBlockingDeque<>();
+    private final BlockingQueue<GameResult> results = new LinkedBlockingQueue<>();
+    private final List<WorkerConnection> workers = new ArrayList<>();
+    // games received or given up on, guarded by this
+    private final boolean[] finishedGames;
+    private int finishedCount = 0;
+    private int failedGames = 0;
+    private volatile boolean closing = false;
+
+    public DistributedCoordinator(long seed, int maxDepth, String configurationHash, int gamesToPlay, int shardSize) {
+        this.seed = seed;
+        this.maxDepth = maxDepth;
+        this.configurationHash = configurationHash;
+        this.gamesToPlay = gamesToPlay;
+        this.finishedGames = new boolean[gamesToPlay];
+        int shardId = 0;
+        for (int firstGame = 0; firstGame < gamesToPlay; firstGame += shardSize) {
+            pendingShards.add(new Shard(shardId++, firstGame, Math.min(shardSize, gamesToPlay - firstGame)));
+        }
+    }
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter number of games to play: ");
+        int gamesToPlay = input.nextInt();
+        System.out.print("Enter max depth of search: ");
+        int maxDepth = input.nextInt();
+        System.out.print("Enter games per shard: ");
+        int shardSize = input.nextInt();
+        int port = Integer.getInteger("coordinator.port", DistributedProtocol.DEFAULT_PORT);
+        String bindAddress = System.getProperty("coordinator.bindAddress");
+        long seed = Long.getLong("games.seed", System.currentTimeMillis());
+
+        GameSimulation simulation = MassParallelRunner.createSimulation(maxDepth);
+        long configId = simulation.getConfigurationFingerprint();
+        DistributedCoordinator coordinator = new DistributedCoordinator(seed, maxDepth,
+                simulation.getConfigurationHash(), gamesToPlay, shardSize);
+        ScoreStatistics statistics = new ScoreStatistics();
+        long programStartTime = System.currentTimeMillis();
+
+        try (ServerSocket server = new ServerSocket(port, 0, bindAddress == null
+                ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bindAddress));
+                ResultsWriter resultsWriter = new ResultsWriter(new File("results.bin"), 0,
+                        MassParallelRunner.RESULTS_ROW_GROUP_SIZE)) {
+            System.out.println("Waiting for workers on " + server.getLocalSocketAddress());
+            Thread acceptor = new Thread(() -> coordinator.acceptWorkers(server), "coordinator-accept");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            while (coordinator.getFinishedCount() < gamesToPlay || !coordinator.results.isEmpty()) {
+                GameResult result = coordinator.results.poll(1, TimeUnit.SECONDS);
+                if (result == null) {
+                    continue;
+                }
+                statistics.add(result);
+                resultsWriter.add(configId, result);
+                if (statistics.getCount() % shardSize == 0) {
+                    System.out.println("completed " + statistics.getCount() + " games");
+                }
+            }
+            coordinator.shutdownWorkers();
+        } catch (IOException | InterruptedException ex) {
+            ex.printStackTrace(System.err);
+        }
+
+        long programEndTime = System.currentTimeMillis();
+        System.out.println("----------------");
+        System.out.println("OUTPUT");
+        System.out.println("Games played: " + statistics.getCount());
+        System.out.println("Games failed: " + coordinator.getFailedCount());
+        System.out.println("maximum depth: " + maxDepth);
+        System.out.println("Total time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
+        System.out.println("Mean: " + (long) statistics.getMean());
+        System.out.println("Standard Deviation: " + statistics.getStandardDeviation());
+        System.out.println("Max: " + statistics.getMax());
+        System.out.println("Min: " + statistics.getMin());
+    }
+
+    private void acceptWorkers(ServerSocket server) {
+        while (!closing) {
+            try {
+                Socket socket = server.accept();
+                WorkerConnection worker = new WorkerConnection(socket);
+                synchronized (workers) {
+                    workers.add(worker);
+                }
+                Thread thread = new Thread(worker, "coordinator-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ex) {
+                if (!closing) {
+                    ex.printStackTrace(System.err);
+                }
+                return;
+            }
+        }
+    }
+
+    private void shutdownWorkers() {
+        closing = true;
+        synchronized (workers) {
+            for (WorkerConnection worker : workers) {
+                worker.shutdown();
+            }
+        }
+    }
+
+    private synchronized void receive(GameResult result) {
+        int gameId = result.getGameId();
+        if (gameId < 0 || gameId >= gamesToPlay || finishedGames[gameId]) {
+            return; // replayed after a reassignment
+        }
+        finishedGames[gameId] = true;
+        finishedCount++;
+        results.add(result);
+    }
+
+    // a shard is done when all of its games are in; games a worker failed
+    // on are played again elsewhere a few times before they are given up
+    private synchronized void finishShard(Shard shard) {
+        int missing = countMissing(shard);
+        if (missing == 0) {
+            return;
+        }
+        shard.attempts++;
+        if (shard.attempts < MAX_SHARD_ATTEMPTS) {
+            pendingShards.add(shard);
+            return;
+        }
+        System.out.println("Giving up on " + missing + " games of shard " + shard.id);
+        for (int gameId = shard.firstGame; gameId < shard.firstGame + shard.gameCount; gameId++) {
+            if (!finishedGames[gameId]) {
+                finishedGames[gameId] = true;
+                finishedCount++;
+                failedGames++;
+            }
+        }
+    }
+
+    // a shard a worker refused was never played, so it costs no attempt
+    private synchronized void requeueShard(Shard shard) {
+        if (countMissing(shard) > 0) {
+            pendingShards.add(shard);
+        }
+    }
+
+    private synchronized int countMissing(Shard shard) {
+        int missing = 0;
+        for (int gameId = shard.firstGame; gameId < shard.firstGame + shard.gameCount; gameId++) {
+            if (!finishedGames[gameId]) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    private synchronized int getFinishedCount() {
+        return finishedCount;
+    }
+
+    private synchronized int getFailedCount() {
+        return failedGames;
+    }
+
+    private static final class Shard {
+
+        private final int id;
+        private final int firstGame;
+        private final int gameCount;
+        private int attempts = 0;
+
+        Shard(int id, int firstGame, int gameCount) {
+            this.id = id;
+            this.firstGame = firstGame;
+            this.gameCount = gameCount;
+        }
+    }
+
+    private final class WorkerConnection implements Runnable {
+
+        private final Socket socket;
+        private final Map<Integer, Shard> assignedShards = new HashMap<>();
+        private DataOutputStream output;
+        // set when the worker runs a different configuration
+        private boolean refused = false;
+
+        WorkerConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            String name = socket.getRemoteSocketAddress().toString();
+            try {
+                socket.setSoTimeout(DistributedProtocol.HEARTBEAT_TIMEOUT_MILLIS);
+                socket.setTcpNoDelay(true);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                synchronized (this) {
+                    output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                }
+                if (input.readByte() != DistributedProtocol.HELLO || input.readInt() != DistributedProtocol.MAGIC
+                        || input.readInt() != DistributedProtocol.VERSION) {
+                    throw new IOException("Not a worker of this version");
+                }
+                System.out.println("Worker " + name + " connected with " + input.readInt() + " threads");
+                assignShards();
+                while (true) {
+                    byte type = input.readByte();
+                    switch (type) {
+                        case DistributedProtocol.RESULT:
+                            input.readInt(); // shard id
+                            receive(DistributedProtocol.readResult(input));
+                            break;
+                        case DistributedProtocol.SHARD_DONE:
+                            finishShard(removeShard(input.readInt()));
+                            break;
+                        case DistributedProtocol.CONFIG_MISMATCH:
+                            synchronized (this) {
+                                refused = true;
+                            }
+                            throw new IOException("Worker refused shard " + input.readInt()
+                                    + ": it runs a different configuration");
+                        case DistributedProtocol.HEARTBEAT:
+                            break;
+                        default:
+                            throw new IOException("Unexpected message type " + type);
+                    }
+                    assignShards();
+                }
+            } catch (SocketTimeoutException ex) {
+                System.out.println("Worker " + name + " missed its heartbeats");
+            } catch (IOException ex) {
+                if (!closing) {
+                    System.out.println("Lost worker " + name + ": " + ex);
+                }
+            } finally {
+                synchronized (this) {
+                    // unfinished shards go to the other workers
+                    for (Shard shard : assignedShards.values()) {
+                        if (refused) {
+                            requeueShard(shard);
+                        } else {
+                            finishShard(shard);
+                        }
+                    }
+                    assignedShards.clear();
+                }
+                try {
+                    socket.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace(System.err);
+                }
+            }
+        }
+
+        private synchronized Shard removeShard(int shardId) throws IOException {
+            Shard shard = assignedShards.remove(shardId);
+            if (shard == null) {
+                throw new IOException("Worker finished shard " + shardId + " it was never given");
+            }
+            return shard;
+        }
+
+        // called after every message, so idle workers pick up shards lost by
+        // others within a heartbeat
+        private synchronized void assignShards() throws IOException {
+            while (assignedShards.size() < SHARDS_PER_WORKER && !closing) {
+                Shard shard = pendingShards.poll();
+                if (shard == null) {
+                    break;
+                }
+                assignedShards.put(shard.id, shard);
+                output.writeByte(DistributedProtocol.SHARD);
+                output.writeInt(shard.id);
+                output.writeLong(seed);
+                output.writeInt(shard.firstGame);
+                output.writeInt(shard.gameCount);
+                output.writeInt(maxDepth);
+                output.writeUTF(configurationHash);
+            }
+            output.flush();
+        }
+
+        private synchronized void shutdown() {
+            if (output == null) {
+                return;
+            }
+            try {
+                output.writeByte(DistributedProtocol.SHUTDOWN);
+                output.flush();
+            } catch (IOException ex) {
+                // already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package cliai;
+
+import gamemodel.GameBoard;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages between a {@link DistributedCoordinator} and its
+ * {@link DistributedWorker}s. Every message is a type byte followed by its
+ * fields, written with DataOutputStream:
+ *
+ * <pre>
+ * worker:      HELLO int magic, int version, int thread count
+ * coordinator: SHARD int shard id, long run seed, int first game id,
+ *                  int game count, int max depth, UTF configuration hash
+ * worker:      RESULT int shard id, game result (see writeResult)
+ * worker:      SHARD_DONE int shard id
+ * worker:      CONFIG_MISMATCH int shard id
+ * worker:      HEARTBEAT
+ * coordinator: SHUTDOWN
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+final class DistributedProtocol {
+
+    static final int MAGIC = 0x44495354; // "DIST"
+    static final int VERSION = 1;
+    static final int DEFAULT_PORT = 20480;
+
+    static final byte HELLO = 1;
+    static final byte SHARD = 2;
+    static final byte RESULT = 3;
+    static final byte SHARD_DONE = 4;
+    static final byte CONFIG_MISMATCH = 5;
+    static final byte HEARTBEAT = 6;
+    static final byte SHUTDOWN = 7;
+
+    static final int HEARTBEAT_INTERVAL_MILLIS = 2000;
+    // a worker silent for this long is taken for lost
+    static final int HEARTBEAT_TIMEOUT_MILLIS = 10000;
+
+    private DistributedProtocol() {
+    }
+
+    /**
+     * Writes the fields of a result: int game id, long seed, int score, long
+     * move count, long cpu time, byte board size, then the tile exponents
+     * column by column.
+     *
+     * @param output
+     * @param result
+     * @throws IOException
+     */
+    static void writeResult(DataOutputStream output, GameResult result) throws IOException {
+        output.writeInt(result.getGameId());
+        output.writeLong(result.getSeed());
+        output.writeInt(result.getScore());
+        output.writeLong(result.getMoveCount());
+        output.writeLong(result.getCpuTime());
+        int[][] grid = result.getFinalBoard().getGameGrid();
+        output.writeByte(grid.length);
+        for (int[] column : grid) {
+            for (int value : column) {
+                output.writeByte(value);
+            }
+        }
+    }
+
+    static GameResult readResult(DataInputStream input) throws IOException {
+        int gameId = input.readInt();
+        long seed = input.readLong();
+        int score = input.readInt();
+        long moveCount = input.readLong();
+        long cpuTime = input.readLong();
+        int size = input.readUnsignedByte();
+        int[][] grid = new int[size][size];
+        for (int[] column : grid) {
+            for (int y = 0; y < size; y++) {
+                column[y] = input.readUnsignedByte();
+            }
+        }
+        GameBoard board = new GameBoard(grid);
+        board.setScore(score);
+        return new GameResult(gameId, seed, board, moveCount, cpuTime);
+    }
+}
@@ -0,0 +1,130 @@
+package cliai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays the shards a {@link DistributedCoordinator} hands out, on every
+ * processor of this machine, and streams each result back as soon as the
+ * game ends.
+ *
+ * Connects to -Dcoordinator.host (localhost by default) on
+ * -Dcoordinator.port. The configuration is built from this JVM's own search
+ * system properties, as in {@link MassParallelRunner}, and shards made with
+ * a different configuration are refused; start workers with the same
+ * properties as the coordinator.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class DistributedWorker {
+
+    public static void main(String[] args) {
+        String host = System.getProperty("coordinator.host", "localhost");
+        int port = Integer.getInteger("coordinator.port", DistributedProtocol.DEFAULT_PORT);
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor();
+        Map<Integer, GameSimulation> simulations = new HashMap<>();
+
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            synchronized (output) {
+                output.writeByte(DistributedProtocol.HELLO);
+                output.writeInt(DistributedProtocol.MAGIC);
+                output.writeInt(DistributedProtocol.VERSION);
+                output.writeInt(threadCount);
+                output.flush();
+            }
+            System.out.println("Connected to " + host + ":" + port);
+            heartbeat.scheduleAtFixedRate(() -> {
+                try {
+                    synchronized (output) {
+                        output.writeByte(DistributedProtocol.HEARTBEAT);
+                        output.flush();
+                    }
+                } catch (IOException ex) {
+                    // the main loop sees the closed connection too
+                }
+            }, DistributedProtocol.HEARTBEAT_INTERVAL_MILLIS, DistributedProtocol.HEARTBEAT_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+
+            while (true) {
+                byte type = input.readByte();
+                if (type == DistributedProtocol.SHUTDOWN) {
+                    break;
+                }
+                if (type != DistributedProtocol.SHARD) {
+                    throw new IOException("Unexpected message type " + type);
+                }
+                int shardId = input.readInt();
+                long seed = input.readLong();
+                int firstGame = input.readInt();
+                int gameCount = input.readInt();
+                int maxDepth = input.readInt();
+                String configurationHash = input.readUTF();
+
+                GameSimulation simulation = simulations.computeIfAbsent(maxDepth,
+                        MassParallelRunner::createSimulation);
+                if (!simulation.getConfigurationHash().equals(configurationHash)) {
+                    System.out.println("Refusing shard " + shardId + ": the coordinator runs a different configuration");
+                    synchronized (output) {
+                        output.writeByte(DistributedProtocol.CONFIG_MISMATCH);
+                        output.writeInt(shardId);
+                        output.flush();
+                    }
+                    continue;
+                }
+                playShard(pipeline, simulation, output, shardId, seed, firstGame, gameCount);
+                synchronized (output) {
+                    output.writeByte(DistributedProtocol.SHARD_DONE);
+                    output.writeInt(shardId);
+                    output.flush();
+                }
+            }
+            System.out.println("Coordinator finished the run");
+        } catch (IOException | UncheckedIOException | InterruptedException ex) {
+            ex.printStackTrace(System.err);
+        } finally {
+            heartbeat.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void playShard(GamePipeline pipeline, GameSimulation simulation, DataOutputStream output,
+            int shardId, long seed, int firstGame, int gameCount) throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        // games are seeded as in MassParallelRunner, so a shard plays the
+        // same games on any worker
+        int failures = pipeline.run(gameCount,
+                i -> () -> simulation.play(firstGame + i, GameSimulation.mixSeed(seed, firstGame + i)),
+                (result, i) -> {
+                    try {
+                        synchronized (output) {
+                            output.writeByte(DistributedProtocol.RESULT);
+                            output.writeInt(shardId);
+                            DistributedProtocol.writeResult(output, result);
+                            output.flush();
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+        System.out.println("Shard " + shardId + ": " + gameCount + " games in "
+                + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds"
+                + (failures > 0 ? ", " + failures + " failed" : ""));
+    }
+}
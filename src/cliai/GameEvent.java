@@ -0,0 +1,37 @@
+package cliai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a game played by {@link GameSimulation#play},
+ * lasting from the starting board to game over. Off unless a recording
+ * enables it.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+@Name("cliai.Game")
+@Label("Game")
+@Category({"2048", "Simulation"})
+@Enabled(false)
+@StackTrace(false)
+public class GameEvent extends jdk.jfr.Event {
+
+    @Label("Game Id")
+    int gameId;
+
+    @Label("Seed")
+    long seed;
+
+    @Label("Score")
+    int score;
+
+    @Label("Moves")
+    long moves;
+
+    @Label("Highest Tile")
+    int highestTile;
+}
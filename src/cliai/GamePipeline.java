@@ -0,0 +1,80 @@
+package cliai;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Runs tasks on an executor with a bounded number in flight and hands each
+ * result to a consumer as soon as it finishes, in completion order. New
+ * tasks are only created once earlier results have been consumed, so memory
+ * use does not grow with the number of tasks.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GamePipeline {
+
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public GamePipeline(ExecutorService executor, int maxInFlight) {
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Runs taskCount tasks. The consumer is called on the calling thread, so
+     * it can write output without synchronization. If run ends early, by an
+     * interrupt or by an exception from the consumer or a task factory,
+     * tasks still in flight are cancelled.
+     *
+     * @param <T>
+     * @param taskCount
+     * @param tasks creates the task with the given index
+     * @param consumer receives each result and the index of its task
+     * @return the number of tasks that failed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <T> int run(int taskCount, IntFunction<Callable<T>> tasks, ObjIntConsumer<T> consumer)
+            throws InterruptedException {
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<T>, Integer> inFlight = new HashMap<>();
+        int submitted = 0;
+        int failures = 0;
+        try {
+            while (submitted < taskCount || !inFlight.isEmpty()) {
+                while (submitted < taskCount && inFlight.size() < maxInFlight) {
+                    inFlight.put(completionService.submit(tasks.apply(submitted)), submitted);
+                    submitted++;
+                }
+                Future<T> future = completionService.take();
+                int index = inFlight.remove(future);
+                try {
+                    consumer.accept(future.get(), index);
+                } catch (ExecutionException ex) {
+                    ex.printStackTrace(System.err);
+                    failures++;
+                }
+            }
+        } finally {
+            for (Future<T> future : inFlight.keySet()) {
+                future.cancel(true);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the maxInFlight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+}
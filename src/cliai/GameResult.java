@@ -0,0 +1,82 @@
+package cliai;
+
+import gamemodel.GameBoard;
+
+/**
+ * Outcome of a single simulated game.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GameResult {
+
+    private final int gameId;
+    private final long seed;
+    private final GameBoard finalBoard;
+    private final long moveCount;
+    private final long cpuTime;
+
+    public GameResult(int gameId, long seed, GameBoard finalBoard, long moveCount, long cpuTime) {
+        this.gameId = gameId;
+        this.seed = seed;
+        this.finalBoard = finalBoard;
+        this.moveCount = moveCount;
+        this.cpuTime = cpuTime;
+    }
+
+    /**
+     * @return the gameId
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return the seed the game was played with
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the finalBoard
+     */
+    public GameBoard getFinalBoard() {
+        return finalBoard;
+    }
+
+    /**
+     * @return the score of the final board
+     */
+    public int getScore() {
+        return finalBoard.getScore();
+    }
+
+    /**
+     * @return the moveCount
+     */
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the cpu time spent on the game in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * @return the exponent of the highest tile on the final board
+     */
+    public int getHighestTile() {
+        int highest = 0;
+        for (int[] row : finalBoard.getGameGrid()) {
+            for (int value : row) {
+                if (value > highest) {
+                    highest = value;
+                }
+            }
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,534 @@
+package cliai;
+
+import aidecision.AIDecider;
+import aidecision.MajorityVoting;
+import aiheuristics.Heuristic;
+import aisearch.ChanceSampling;
+import aisearch.DepthWeighting;
+import aisearch.EvaluationCache;
+import aisearch.OpeningTable;
+import aisearch.SingleThreadSearch;
+import aisearch.StateEvaluationType;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.MoveEngine;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+/**
+ * Plays complete games with a fixed search configuration. Every game gets its
+ * own controller, searcher and decider seeded from the game seed, so a game
+ * can be replayed (or resumed after a crash) by seed alone.
+ *
+ * Games, decisions and search layers are reported as flight recorder events
+ * when a recording turns them on, for example with
+ * -XX:StartFlightRecording:settings=profile,settings=src/cliai/simulation.jfc
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GameSimulation {
+
+    /**
+     * Bump when a change to the game or the search changes how a game with
+     * the same configuration and seed plays out, so results stored by older
+     * code are not reused (see {@link ResultStore}).
+     */
+    public static final int ENGINE_VERSION = 1;
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final Heuristic[] heuristics;
+    private int maxDepth = 2;
+    private DepthWeighting depthWeightingType = DepthWeighting.NONE;
+    private StateEvaluationType evaluationType = StateEvaluationType.NEXT_STATES;
+    private boolean depthScaling = true;
+    private boolean considerFoursForPossibleStates = false;
+    private ChanceSampling chanceSampling = ChanceSampling.NONE;
+    private int chanceSampleSize = 4;
+    private double probabilityCutoff = 0;
+    private boolean treeReuse = false;
+    private EvaluationCache evaluationCache = null;
+    private OpeningTable openingTable = null;
+    private MoveEngine moveEngine = MoveEngine.GRID;
+    private int boardSize = GameController.ROW_SIZE;
+    private SimulationMetrics metrics = null;
+    private boolean profilingEnabled = false;
+    private DeciderFactory deciderFactory = (heuristics, random) -> {
+        MajorityVoting decider = new MajorityVoting(heuristics);
+        decider.setRandom(random);
+        decider.setLearning(false);
+        return decider;
+    };
+
+    public GameSimulation(Heuristic[] heuristics) {
+        this.heuristics = heuristics;
+    }
+
+    /**
+     * Mixes a value into a seed (SplitMix64 finalizer) so that nearby game ids
+     * do not produce correlated random streams.
+     *
+     * @param seed
+     * @param value
+     * @return the mixed seed
+     */
+    public static long mixSeed(long seed, long value) {
+        long z = seed + (value + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public SingleThreadSearch createSearcher(GameController controller) {
+        SingleThreadSearch searcher = new SingleThreadSearch(controller);
+        searcher.setMaximumDepth(maxDepth);
+        searcher.setDepthWeightingType(depthWeightingType);
+        searcher.setEvaluationType(evaluationType);
+        searcher.setDepthScaling(depthScaling);
+        searcher.setConsiderFoursForPossibleStates(considerFoursForPossibleStates);
+        searcher.setChanceSampling(chanceSampling);
+        searcher.setChanceSampleSize(chanceSampleSize);
+        searcher.setProbabilityCutoff(probabilityCutoff);
+        searcher.setTreeReuse(treeReuse);
+        searcher.setEvaluationCache(evaluationCache);
+        searcher.setProfilingEnabled(profilingEnabled);
+        return searcher;
+    }
+
+    /**
+     * @return the settings that decide which move is played, one per line
+     */
+    public String getConfigurationDescription() {
+        StringBuilder output = new StringBuilder();
+        output.append("heuristics:");
+        for (Heuristic heuristic : heuristics) {
+            output.append(" ").append(heuristic.getClass().getName());
+            String parameters = heuristic.getParameterDescription();
+            if (!parameters.isEmpty()) {
+                output.append("[").append(parameters).append("]");
+            }
+        }
+        output.append("\nweights:");
+        for (Heuristic heuristic : heuristics) {
+            output.append(" ").append(heuristic.getWeight());
+        }
+        output.append("\nboardSize: ").append(boardSize)
+                .append("\nmaxDepth: ").append(maxDepth)
+                .append("\ndepthWeighting: ").append(depthWeightingType)
+                .append("\nevaluationType: ").append(evaluationType)
+                .append("\ndepthScaling: ").append(depthScaling)
+                .append("\nconsiderFours: ").append(considerFoursForPossibleStates)
+                .append("\nchanceSampling: ").append(chanceSampling)
+                .append(" ").append(chanceSampleSize)
+                .append("\nprobabilityCutoff: ").append(probabilityCutoff)
+                .append("\ntreeReuse: ").append(treeReuse)
+                .append("\ndecider: ").append(deciderFactory.createDecider(heuristics, new Random(0))
+                .getConfigurationDescription())
+                .append("\n");
+        return output.toString();
+    }
+
+    /**
+     * Everything that decides how a game plays out for a given seed: the
+     * configuration description, the opening moves played from a table and
+     * the engine version. The move engine, evaluation cache and profiling
+     * are left out since they do not change any decision. Learned heuristics
+     * are told apart by a hash of their tables or network.
+     *
+     * @return a SHA-256 hash of the canonical configuration, in hex
+     */
+    public String getConfigurationHash() {
+        String canonical = getConfigurationDescription()
+                + "openingMoves: " + (openingTable == null ? 0 : openingTable.getMoveCount())
+                + "\nengineVersion: " + ENGINE_VERSION + "\n";
+        try {
+            return ResultStore.toHex(MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform has SHA-256
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the configuration description
+     */
+    public long getConfigurationFingerprint() {
+        long hash = 0xCBF29CE484222325L;
+        for (byte value : getConfigurationDescription().getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (value & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Chooses the move for a board, from the opening table when the board is
+     * in it and by searching otherwise.
+     *
+     * @param board
+     * @param moveCount number of moves played so far
+     * @param searcher
+     * @param decider
+     * @return the chosen direction
+     */
+    public Direction decide(GameBoard board, long moveCount, SingleThreadSearch searcher, AIDecider decider) {
+        DecisionEvent event = new DecisionEvent();
+        event.begin();
+        long searchStartTime = metrics == null ? 0 : System.nanoTime();
+        if (openingTable != null && moveCount < openingTable.getMoveCount()) {
+            Direction decision = openingTable.lookup(board);
+            if (decision != null) {
+                if (metrics != null) {
+                    metrics.recordMove(System.nanoTime() - searchStartTime, 0);
+                }
+                if (event.shouldCommit()) {
+                    commitDecision(event, board, moveCount, 0, 0, decision, null);
+                }
+                return decision;
+            }
+        }
+        long nodesBefore = searcher.getNodesSearched();
+        int[] votes = searcher.getVotesOnDirections(board, heuristics);
+        if (metrics != null) {
+            metrics.recordMove(System.nanoTime() - searchStartTime,
+                    searcher.getNodesSearched() - nodesBefore);
+        }
+        Direction decision = decider.evaluateVotes(votes);
+        if (metrics != null) {
+            metrics.recordVotes(votes, decision);
+        }
+        if (event.shouldCommit()) {
+            commitDecision(event, board, moveCount, searcher.getLastSearchDepth(),
+                    searcher.getNodesSearched() - nodesBefore, decision, votes);
+        }
+        return decision;
+    }
+
+    // only called when a recording wants the event, so the board string and
+    // vote split cost nothing otherwise
+    private static void commitDecision(DecisionEvent event, GameBoard board, long moveCount, int searchDepth,
+            long nodes, Direction decision, int[] votes) {
+        event.moveNumber = moveCount;
+        event.highestTile = getHighestTile(board);
+        event.board = board.toStorageString();
+        event.searchDepth = searchDepth;
+        event.nodes = nodes;
+        event.direction = decision.name();
+        event.openingTable = votes == null;
+        if (votes != null) {
+            int[] split = new int[Direction.values().length];
+            for (int vote : votes) {
+                split[vote]++;
+            }
+            event.votesUp = split[Direction.UP.ordinal()];
+            event.votesDown = split[Direction.DOWN.ordinal()];
+            event.votesLeft = split[Direction.LEFT.ordinal()];
+            event.votesRight = split[Direction.RIGHT.ordinal()];
+        }
+        event.commit();
+    }
+
+    private static int getHighestTile(GameBoard board) {
+        int highest = 0;
+        for (int[] column : board.getGameGrid()) {
+            for (int value : column) {
+                highest = Math.max(highest, value);
+            }
+        }
+        return highest;
+    }
+
+    public GameResult play(int gameId, long seed) {
+        GameEvent event = new GameEvent();
+        event.begin();
+        long startTime = getCpuTime();
+        GameController controller = new GameController(boardSize);
+        controller.setRandom(new Random(seed));
+        controller.setMoveEngine(moveEngine);
+        SingleThreadSearch searcher = createSearcher(controller);
+        searcher.setRandom(new Random(mixSeed(seed, 1)));
+        AIDecider decider = deciderFactory.createDecider(heuristics, new Random(mixSeed(seed, 2)));
+
+        GameBoard currentBoard = controller.createStartingGameboard();
+        long moveCount = 0;
+        boolean gameOver = controller.isGameOver(currentBoard);
+        while (!gameOver) {
+            Direction decision = decide(currentBoard, moveCount, searcher, decider);
+            int scoreBefore = currentBoard.getScore();
+            currentBoard = controller.doGameMove(currentBoard, decision);
+            moveCount++;
+            gameOver = controller.isGameOver(currentBoard);
+            decider.recordOutcome(currentBoard.getScore() - scoreBefore, gameOver);
+        }
+        GameResult result = new GameResult(gameId, seed, currentBoard, moveCount, getCpuTime() - startTime);
+        if (metrics != null) {
+            metrics.recordGame(result);
+        }
+        if (event.shouldCommit()) {
+            event.gameId = gameId;
+            event.seed = seed;
+            event.score = result.getScore();
+            event.moves = moveCount;
+            event.highestTile = result.getHighestTile();
+            event.commit();
+        }
+        return result;
+    }
+
+    private static long getCpuTime() {
+        if (THREAD_BEAN.isCurrentThreadCpuTimeSupported()) {
+            return THREAD_BEAN.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * @return the metrics
+     */
+    public SimulationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics the metrics to report moves and games to, or null
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the deciderFactory
+     */
+    public DeciderFactory getDeciderFactory() {
+        return deciderFactory;
+    }
+
+    /**
+     * @param deciderFactory creates the decider of each game; defaults to
+     * {@link MajorityVoting} without learning
+     */
+    public void setDeciderFactory(DeciderFactory deciderFactory) {
+        this.deciderFactory = deciderFactory;
+    }
+
+    /**
+     * @return the profilingEnabled
+     */
+    public boolean isProfilingEnabled() {
+        return profilingEnabled;
+    }
+
+    /**
+     * @param profilingEnabled the profilingEnabled to set
+     */
+    public void setProfilingEnabled(boolean profilingEnabled) {
+        this.profilingEnabled = profilingEnabled;
+    }
+
+    /**
+     * @return the heuristics
+     */
+    public Heuristic[] getHeuristics() {
+        return heuristics;
+    }
+
+    /**
+     * @return the maxDepth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDepth the maxDepth to set
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the depthWeightingType
+     */
+    public DepthWeighting getDepthWeightingType() {
+        return depthWeightingType;
+    }
+
+    /**
+     * @param depthWeightingType the depthWeightingType to set
+     */
+    public void setDepthWeightingType(DepthWeighting depthWeightingType) {
+        this.depthWeightingType = depthWeightingType;
+    }
+
+    /**
+     * @return the evaluationType
+     */
+    public StateEvaluationType getEvaluationType() {
+        return evaluationType;
+    }
+
+    /**
+     * @param evaluationType the evaluationType to set
+     */
+    public void setEvaluationType(StateEvaluationType evaluationType) {
+        this.evaluationType = evaluationType;
+    }
+
+    /**
+     * @return the depthScaling
+     */
+    public boolean isDepthScaling() {
+        return depthScaling;
+    }
+
+    /**
+     * @param depthScaling the depthScaling to set
+     */
+    public void setDepthScaling(boolean depthScaling) {
+        this.depthScaling = depthScaling;
+    }
+
+    /**
+     * @return the considerFoursForPossibleStates
+     */
+    public boolean isConsiderFoursForPossibleStates() {
+        return considerFoursForPossibleStates;
+    }
+
+    /**
+     * @param considerFoursForPossibleStates the considerFoursForPossibleStates
+     * to set
+     */
+    public void setConsiderFoursForPossibleStates(boolean considerFoursForPossibleStates) {
+        this.considerFoursForPossibleStates = considerFoursForPossibleStates;
+    }
+
+    /**
+     * @return the chanceSampling
+     */
+    public ChanceSampling getChanceSampling() {
+        return chanceSampling;
+    }
+
+    /**
+     * @param chanceSampling the chanceSampling to set
+     */
+    public void setChanceSampling(ChanceSampling chanceSampling) {
+        this.chanceSampling = chanceSampling;
+    }
+
+    /**
+     * @return the chanceSampleSize
+     */
+    public int getChanceSampleSize() {
+        return chanceSampleSize;
+    }
+
+    /**
+     * @param chanceSampleSize the chanceSampleSize to set
+     */
+    public void setChanceSampleSize(int chanceSampleSize) {
+        this.chanceSampleSize = chanceSampleSize;
+    }
+
+    /**
+     * @return the probabilityCutoff
+     */
+    public double getProbabilityCutoff() {
+        return probabilityCutoff;
+    }
+
+    /**
+     * @param probabilityCutoff the probabilityCutoff to set
+     */
+    public void setProbabilityCutoff(double probabilityCutoff) {
+        this.probabilityCutoff = probabilityCutoff;
+    }
+
+    /**
+     * @return the moveEngine
+     */
+    public MoveEngine getMoveEngine() {
+        return moveEngine;
+    }
+
+    /**
+     * @param moveEngine the engine the game controllers move with
+     */
+    public void setMoveEngine(MoveEngine moveEngine) {
+        this.moveEngine = moveEngine;
+    }
+
+    /**
+     * @return the boardSize
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @param boardSize the width and height of the boards games are played
+     * on
+     * @throws IllegalArgumentException if a heuristic cannot value boards of
+     * that size
+     */
+    public void setBoardSize(int boardSize) {
+        for (Heuristic heuristic : heuristics) {
+            if (!heuristic.supportsBoardSize(boardSize)) {
+                throw new IllegalArgumentException(heuristic.getClass().getSimpleName()
+                        + " cannot value " + boardSize + "x" + boardSize + " boards");
+            }
+        }
+        this.boardSize = boardSize;
+    }
+
+    /**
+     * @return the openingTable
+     */
+    public OpeningTable getOpeningTable() {
+        return openingTable;
+    }
+
+    /**
+     * @param openingTable decisions for the first moves, made with this
+     * configuration, or null to search every move
+     */
+    public void setOpeningTable(OpeningTable openingTable) {
+        this.openingTable = openingTable;
+    }
+
+    /**
+     * @return the treeReuse
+     */
+    public boolean isTreeReuse() {
+        return treeReuse;
+    }
+
+    /**
+     * @param treeReuse search a tree kept between the moves of a game, see
+     * {@link SingleThreadSearch#setTreeReuse(boolean)}
+     */
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+    }
+
+    /**
+     * @return the evaluationCache
+     */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    /**
+     * @param evaluationCache a cache shared by the searchers of every game,
+     * or null
+     */
+    public void setEvaluationCache(EvaluationCache evaluationCache) {
+        this.evaluationCache = evaluationCache;
+    }
+}
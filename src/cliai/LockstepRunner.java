@@ -0,0 +1,114 @@
+package cliai;
+
+import aiheuristics.Corners;
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicBatchEvaluator;
+import aiheuristics.QuantizedNetwork;
+import aisearch.BatchPolicy;
+import aisearch.GreedyBatchPolicy;
+import aisearch.RandomBatchPolicy;
+import gamemodel.BoardBatch;
+import java.io.File;
+import java.io.IOException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plays games with a cheap policy in lockstep batches of packed boards (see
+ * {@link BoardBatch}) instead of one task per game. Each batch is played to
+ * the end on one thread, and batches run in parallel.
+ *
+ * The quantized network policy reads the network written by
+ * {@link PolicyDistiller} from -Dnetwork.file (network.bin). -Dgames.seed=N
+ * seeds the games the same way every run.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class LockstepRunner {
+
+    private static final String[] POLICY_NAMES = {"random", "greedy afterstate", "quantized network"};
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter number of games to play: ");
+        int gamesToPlay = input.nextInt();
+        System.out.print("Enter games per batch: ");
+        int batchSize = input.nextInt();
+        System.out.print("Enter policy (0 = random, 1 = greedy afterstate, 2 = quantized network): ");
+        int policyType = input.nextInt();
+        QuantizedNetwork network = null;
+        if (policyType == 2) {
+            try {
+                network = QuantizedNetwork.load(new File(System.getProperty("network.file", "network.bin")), 1);
+            } catch (IOException ex) {
+                ex.printStackTrace(System.err);
+                return;
+            }
+        }
+        QuantizedNetwork evaluator = network;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        long seed = Long.getLong("games.seed", System.currentTimeMillis());
+        Heuristic[] heuristics = new Heuristic[]{new Corners(1)};
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+        ScoreStatistics statistics = new ScoreStatistics();
+        long[] moveCount = new long[1];
+        int batchCount = (gamesToPlay + batchSize - 1) / batchSize;
+        long programStartTime = System.currentTimeMillis();
+        int failures = 0;
+        try {
+            failures = pipeline.run(batchCount, batchIndex -> () -> {
+                int size = Math.min(batchSize, gamesToPlay - batchIndex * batchSize);
+                BatchPolicy policy;
+                if (policyType == 0) {
+                    policy = new RandomBatchPolicy(GameSimulation.mixSeed(seed, -batchIndex - 1));
+                } else if (policyType == 1) {
+                    policy = new GreedyBatchPolicy(new HeuristicBatchEvaluator(heuristics));
+                } else {
+                    policy = new GreedyBatchPolicy(evaluator);
+                }
+                return play(new BoardBatch(size), GameSimulation.mixSeed(seed, batchIndex), policy);
+            }, (batch, batchIndex) -> {
+                for (int game = 0; game < batch.getCapacity(); game++) {
+                    statistics.add(batch.getScore(game), 0);
+                    moveCount[0] += batch.getMoveCount(game);
+                }
+            });
+        } catch (InterruptedException ex) {
+            ex.printStackTrace(System.err);
+        }
+        executor.shutdown();
+        double seconds = (System.currentTimeMillis() - programStartTime) / 1000.0;
+        System.out.println("----------------");
+        System.out.println("OUTPUT");
+        System.out.println("Games played: " + statistics.getCount());
+        System.out.println("Batches failed: " + failures + " of " + batchCount);
+        System.out.println("Policy: " + POLICY_NAMES[policyType]);
+        System.out.println("Total time: " + seconds + " seconds ("
+                + String.format("%.0f", moveCount[0] / seconds) + " moves/s)");
+        System.out.println("Mean: " + (long) statistics.getMean());
+        System.out.println("Standard Deviation: " + statistics.getStandardDeviation());
+        System.out.println("Max: " + statistics.getMax());
+        System.out.println("Min: " + statistics.getMin());
+    }
+
+    /**
+     * Plays every game of a batch to the end.
+     *
+     * @param batch
+     * @param seed
+     * @param policy
+     * @return the batch, with every game over
+     */
+    static BoardBatch play(BoardBatch batch, long seed, BatchPolicy policy) {
+        byte[] decisions = new byte[batch.getCapacity()];
+        batch.start(seed);
+        while (batch.computeMoves() > 0) {
+            policy.chooseMoves(batch, decisions);
+            batch.applyMoves(decisions);
+        }
+        return batch;
+    }
+}
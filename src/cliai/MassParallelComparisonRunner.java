@@ -0,0 +1,138 @@
+package cliai;
+
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicList;
+import aisearch.DepthWeighting;
+import aisearch.StateEvaluationType;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compare heuristic combos with sequential testing: games are played in
+ * rounds, and after each round combos that are already clearly worse than
+ * the leader stop getting games.
+ *
+ * All combos play the same game seeds in the same order, so differences in
+ * score come from the heuristics and not from luckier tile spawns. The
+ * confidence race drops nothing until both sides of a comparison have
+ * -Dcomparison.minimumGames (30) games, whatever the round size.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class MassParallelComparisonRunner {
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter combo size: ");
+        int comboSize = input.nextInt();
+        System.out.print("Enter max depth of search: ");
+        int maxDepth = input.nextInt();
+        System.out.print("Enter games per candidate per round: ");
+        int gamesPerRound = input.nextInt();
+        System.out.print("Enter max games per candidate: ");
+        int maxGames = input.nextInt();
+        System.out.print("Enter elimination rule (0 = confidence race, 1 = successive halving): ");
+        SequentialComparison.EliminationRule rule = input.nextInt() == 1
+                ? SequentialComparison.EliminationRule.SUCCESSIVE_HALVING
+                : SequentialComparison.EliminationRule.CONFIDENCE_RACE;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        long seed = System.currentTimeMillis();
+
+        Heuristic[][] combos = MassParallelHeuristicRunner.combinator(HeuristicList.getHeuristics(), comboSize);
+        GameSimulation[] simulations = new GameSimulation[combos.length];
+        for (int i = 0; i < combos.length; i++) {
+            simulations[i] = new GameSimulation(combos[i]);
+            simulations[i].setMaxDepth(maxDepth);
+            simulations[i].setDepthWeightingType(DepthWeighting.NONE);
+            simulations[i].setEvaluationType(StateEvaluationType.NEXT_STATES);
+            simulations[i].setDepthScaling(true);
+            simulations[i].setConsiderFoursForPossibleStates(false);
+        }
+        SequentialComparison comparison = new SequentialComparison(combos.length, rule);
+        comparison.setMinimumGames(Integer.getInteger("comparison.minimumGames", comparison.getMinimumGames()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+        long programStartTime = System.currentTimeMillis();
+        int gamesPlayed = 0;
+        int round = 0;
+        while (!comparison.isDecided() && gamesPlayed < maxGames) {
+            // successive halving doubles the games of the survivors each round
+            int roundGames = rule == SequentialComparison.EliminationRule.SUCCESSIVE_HALVING
+                    ? gamesPerRound << round : gamesPerRound;
+            roundGames = Math.min(roundGames, maxGames - gamesPlayed);
+            int[] active = comparison.getActiveCandidates();
+            System.out.println("Round " + round + ": " + active.length + " candidates, "
+                    + roundGames + " games each");
+
+            final int firstGame = gamesPlayed;
+            try {
+                // game-major order, so every candidate progresses at the same pace
+                int failures = pipeline.run(active.length * roundGames, task -> {
+                    int gameId = firstGame + task / active.length;
+                    GameSimulation simulation = simulations[active[task % active.length]];
+                    return () -> simulation.play(gameId, GameSimulation.mixSeed(seed, gameId));
+                }, (result, task) -> comparison.record(active[task % active.length], result));
+                // candidates missing games are no longer compared on the same
+                // seeds, so the race stops as the sweep does
+                if (failures > 0) {
+                    System.out.println(failures + " games failed in round " + round + ", stopping");
+                    break;
+                }
+            } catch (InterruptedException ex) {
+                ex.printStackTrace(System.err);
+                break;
+            }
+            gamesPlayed += roundGames;
+            round++;
+
+            for (int candidate : comparison.eliminate()) {
+                System.out.println("\tdropped " + getComboName(combos[candidate])
+                        + " (mean " + (long) comparison.getStatistics(candidate).getMean()
+                        + " after " + comparison.getStatistics(candidate).getCount() + " games)");
+            }
+        }
+        executor.shutdown();
+        long programEndTime = System.currentTimeMillis();
+
+        System.out.println("----------------");
+        System.out.println("OUTPUT");
+        System.out.println("Total AI computation time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
+        int leader = comparison.getLeader();
+        System.out.println("Leader: " + getComboName(combos[leader]));
+        if (!comparison.isDecided()) {
+            System.out.println("Undecided between " + comparison.getActiveCandidates().length
+                    + " candidates after " + gamesPlayed + " games each");
+        }
+
+        File comparisonFile = new File("comparisonOutput" + comboSize + ".csv");
+        try (PrintWriter writer = new PrintWriter(comparisonFile)) {
+            writer.println("heuristics,cpu_time,mean,std_dev,max,min,games,eliminated");
+            for (int i = 0; i < combos.length; i++) {
+                ScoreStatistics statistics = comparison.getStatistics(i);
+                writer.println(getComboName(combos[i]) + ","
+                        + statistics.getCpuTime() / 1e9 + ","
+                        + (long) statistics.getMean() + ","
+                        + statistics.getStandardDeviation() + ","
+                        + statistics.getMax() + ","
+                        + statistics.getMin() + ","
+                        + statistics.getCount() + ","
+                        + comparison.isEliminated(i));
+            }
+        } catch (FileNotFoundException ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    private static String getComboName(Heuristic[] combo) {
+        StringBuilder output = new StringBuilder();
+        for (Heuristic heuristic : combo) {
+            output.append(heuristic.getClass().getSimpleName()).append(" ");
+        }
+        return output.toString();
+    }
+}
@@ -1,26 +1,35 @@
 package cliai;
 
-import aidecision.MajorityVoting;
 import aiheuristics.Heuristic;
 import aiheuristics.HeuristicList;
 import aisearch.DepthWeighting;
-import aisearch.SingleThreadSearch;
 import aisearch.StateEvaluationType;
-import gamemodel.Direction;
-import gamemodel.GameBoard;
-import gamemodel.GameController;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.util.LinkedList;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 /**
  * Run multiple games and compare results
  *
+ * Progress is checkpointed to sweepCheckpoint.bin after every batch of games;
+ * restarting the runner resumes the sweep from the last saved batch. A batch
+ * with a failed game, or an error writing the output, stops the sweep
+ * without saving the batch, so it is played again on the next run.
+ * Every game of the sweep is also written to sweepResults.bin, a columnar
+ * file read with {@link ResultsReader}, under the fingerprint of its combo's
+ * configuration.
+ *
+ * Finished games are kept in a {@link ResultStore} (resultStore.bin, or the
+ * file named by -Dresults.store) and games the store already holds are not
+ * played again. Start with -Dgames.seed=N to seed the sweep the same way
+ * every time, so a repeated sweep only plays new configurations.
+ *
  * @author Lucas Burdell <lucasburdell@gmail.com>
  */
 public class MassParallelHeuristicRunner {
@@ -70,168 +79,188 @@ public class MassParallelHeuristicRunner {
     public static void main(String[] args) {
         int gamesToPlay = 100;
         int maxDepth = 2;
-        int progressReportIteration = 1;
         int threadCount = Runtime.getRuntime().availableProcessors();
+        int batchSize = threadCount * 2;
         Heuristic[] heuristics = HeuristicList.getHeuristics();
         int[] combosToDo = new int[]{1, 2, 8, 9};
-        for (int k : combosToDo) {
+
+        File checkpointFile = new File("sweepCheckpoint.bin");
+        SweepCheckpoint checkpoint = SweepCheckpoint.load(checkpointFile);
+        if (checkpoint != null && checkpoint.matches(gamesToPlay, maxDepth, combosToDo)) {
+            System.out.println("Resuming sweep " + checkpoint.getSeed()
+                    + " at size index " + checkpoint.getComboSizeIndex()
+                    + ", combo " + checkpoint.getComboIndex()
+                    + ", game " + checkpoint.getGamesCompleted());
+        } else {
+            if (checkpoint != null) {
+                System.out.println("Ignoring checkpoint from a sweep with different settings");
+            }
+            checkpoint = new SweepCheckpoint(Long.getLong("games.seed", System.currentTimeMillis()),
+                    gamesToPlay, maxDepth, combosToDo);
+            System.out.println("Starting sweep " + checkpoint.getSeed());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+        File resultsFile = new File("sweepResults.bin");
+        ResultsWriter resultsWriter;
+        ResultStore resultStore;
+        try {
+            // the store first, so a file it refuses stops the sweep before
+            // the results file is cut back
+            resultStore = new ResultStore(new File(System.getProperty("results.store", "resultStore.bin")));
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            executor.shutdown();
+            return;
+        }
+        try {
+            resultsWriter = new ResultsWriter(resultsFile, checkpoint.getResultsFileLength(),
+                    MassParallelRunner.RESULTS_ROW_GROUP_SIZE);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            executor.shutdown();
+            try {
+                resultStore.close();
+            } catch (IOException closeEx) {
+                closeEx.printStackTrace(System.err);
+            }
+            return;
+        }
+        for (int sizeIndex = checkpoint.getComboSizeIndex(); sizeIndex < combosToDo.length; sizeIndex++) {
+            int k = combosToDo[sizeIndex];
             System.out.println("generating size " + k + " combos");
             Heuristic[][] combos = (Heuristic[][]) combinator(heuristics, k);
-            for (int j = 0; j < combos.length; j++) {
+            int firstCombo = sizeIndex == checkpoint.getComboSizeIndex() ? checkpoint.getComboIndex() : 0;
+            for (int j = firstCombo; j < combos.length; j++) {
                 Heuristic[] combo = combos[j];
                 System.out.println("Current combo:");
                 for (Heuristic heuristic : combo) {
                     System.out.println("\t" + heuristic.getClass().getCanonicalName());
                 }
-                final int[] scoreResults = new int[gamesToPlay];
-                final GameBoard[] finalBoards = new GameBoard[gamesToPlay];
-
-                //searcher.setDebugMessagesEnabled(true);
-                ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-                Future[] futures = new Future[gamesToPlay];
+                ScoreStatistics statistics = checkpoint.getStatistics();
+                int firstGame = checkpoint.getGamesCompleted();
 
-                GameController controller = new GameController();
-                
+                GameSimulation simulation = new GameSimulation(combo);
+                simulation.setMaxDepth(maxDepth);
+                simulation.setDepthWeightingType(DepthWeighting.NONE);
+                simulation.setEvaluationType(StateEvaluationType.NEXT_STATES);
+                simulation.setDepthScaling(true);
+                simulation.setConsiderFoursForPossibleStates(false);
+                long comboSeed = GameSimulation.mixSeed(checkpoint.getSeed(), (k << 16) + j);
+                long configId = simulation.getConfigurationFingerprint();
+                String configurationHash = simulation.getConfigurationHash();
 
-                SingleThreadSearch searcher = new SingleThreadSearch(controller);
-                searcher.setMaximumDepth(maxDepth);
-                searcher.setDepthWeightingType(DepthWeighting.NONE);
-                searcher.setEvaluationType(StateEvaluationType.NEXT_STATES);
-                searcher.setDepthScaling(true);
-                searcher.setConsiderFoursForPossibleStates(false);
-
-                //searcher.setDebugMessagesEnabled(true);
-                MajorityVoting decider = new MajorityVoting(combo);
-
-                long programStartTime = System.currentTimeMillis();
-                for (int i = 0; i < gamesToPlay; i++) {
-                    final int gameId = i;
-                    futures[gameId] = executor.submit(() -> {
-
-                        GameBoard currentBoard = controller.createStartingGameboard();
-
-                        long moveCount = 0;
-                        //long startTime = System.currentTimeMillis();
-                        //System.out.println("start playing for " + gameId);
-                        while (!controller.isGameOver(currentBoard)) {
-                            int[] votes = searcher.getVotesOnDirections(currentBoard, combo);
-                            Direction decision = decider.evaluateVotes(votes);
-                            currentBoard = controller.doGameMove(currentBoard, decision);
-                            //System.out.println("gameid " + gameId + " score: " + currentBoard.getScore());
-                            //System.out.println(currentBoard.getScore());
-                            //System.out.println(currentBoard);
-                            //System.out.println("Moved above board " + decision);
-                            if (moveCount % 20L == 0) {
-                                //System.out.println("moves made this game: " + moveCount);
-                            }
-                            moveCount++;
-
-                        }
-                        //long endTime = System.currentTimeMillis();
-                        scoreResults[gameId] = currentBoard.getScore();
-                        finalBoards[gameId] = currentBoard;
-//                System.out.println("final score: " + currentBoard.getScore());
-//                System.out.println("game " + gameId + " complete");
-//System.out.println("game took: " + (endTime - startTime) / 1000.0 + " seconds");
-                    });
-                }
-                for (int i = 0; i < futures.length; i++) {
-                    Future future = futures[i];
-                    try {
-                        future.get();
-                        if (i % progressReportIteration == 0) {
-                            //System.out.println("completed " + i + " games");
+                File scoreFile = new File("scoreOutput" + k + "-" + j + ".csv");
+                File boardFile = new File("boardOutput" + k + "-" + j + ".txt");
+                try (PrintWriter scoreWriter = openOutput(scoreFile, checkpoint.getScoreFileLength(), "gameid,gamescore");
+                        PrintWriter boardWriter = openOutput(boardFile, checkpoint.getBoardFileLength(), "gameid,board")) {
+                    long programStartTime = System.currentTimeMillis();
+                    for (int batchStart = firstGame; batchStart < gamesToPlay; batchStart += batchSize) {
+                        final int batchFirstGame = batchStart;
+                        int batchGames = Math.min(batchSize, gamesToPlay - batchStart);
+                        int failures = pipeline.run(batchGames,
+                                i -> {
+                                    int gameId = batchFirstGame + i;
+                                    long gameSeed = GameSimulation.mixSeed(comboSeed, gameId);
+                                    GameResult stored = resultStore.get(configurationHash, gameId, gameSeed);
+                                    if (stored != null) {
+                                        return () -> stored;
+                                    }
+                                    return () -> simulation.play(gameId, gameSeed);
+                                },
+                                (result, i) -> {
+                                    statistics.add(result);
+                                    scoreWriter.println(result.getGameId() + "," + result.getScore());
+                                    boardWriter.println(result.getGameId() + "," + result.getFinalBoard().toStorageString());
+                                    try {
+                                        resultsWriter.add(configId, result);
+                                        resultStore.put(configurationHash, result);
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                });
+                        if (failures > 0) {
+                            // the checkpoint keeps the batch unplayed; games that
+                            // finished are in the result store for the retry
+                            throw new IOException(failures + " games of the batch from game "
+                                    + batchFirstGame + " failed");
                         }
-                    } catch (InterruptedException | ExecutionException ex) {
-                        ex.printStackTrace(System.err);
+                        scoreWriter.flush();
+                        boardWriter.flush();
+                        // a row group per batch, so the file can be cut back
+                        // to the checkpoint
+                        resultsWriter.flush();
+                        resultStore.flush();
+                        checkpoint.recordBatch(batchGames, scoreFile.length(), boardFile.length(),
+                                resultsFile.length());
+                        checkpoint.save(checkpointFile);
                     }
+                    long programEndTime = System.currentTimeMillis();
+                    System.out.println("Total AI computation time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
+                } catch (IOException | UncheckedIOException | InterruptedException ex) {
+                    ex.printStackTrace(System.err);
+                    System.out.println("Sweep stopped at combo " + k + "-" + j
+                            + "; run again to resume from the last checkpoint");
+                    shutdown(executor, resultsWriter, resultStore);
+                    return;
                 }
-                executor.shutdown();
-                long programEndTime = System.currentTimeMillis();
-                System.out.println("Total AI computation time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
-                System.out.println("Mean: " + getMean(scoreResults));
-                System.out.println("Standard Deviation: " + getStandardDeviation(scoreResults));
-                System.out.println("Max: " + getMaxNumber(scoreResults));
-                System.out.println("Min: " + getMinNumber(scoreResults));
+                scoreFile.setWritable(true);
+                scoreFile.setReadable(true);
+                boardFile.setWritable(true);
+                boardFile.setReadable(true);
+
+                System.out.println("Mean: " + (long) statistics.getMean());
+                System.out.println("Standard Deviation: " + statistics.getStandardDeviation());
+                System.out.println("Max: " + statistics.getMax());
+                System.out.println("Min: " + statistics.getMin());
                 System.out.println("Heuristics used: ");
                 for (Heuristic heuristic : combo) {
                     System.out.println("\t" + heuristic.getClass().getCanonicalName());
                 }
-                File scoreFile = new File("scoreOutput" + k + "-" + j + ".csv");
-                File boardFile = new File("boardOutput" + k + "-" + j + ".txt");
-                try (PrintWriter writer = new PrintWriter(scoreFile)) {
-                    writer.println("gameid,gamescore");
-                    for (int i = 0; i < scoreResults.length; i++) {
-                        int scoreResult = scoreResults[i];
-                        writer.println(i + "," + scoreResult);
-                    }
-
-                    scoreFile.setWritable(true);
-                    scoreFile.setReadable(true);
-                    writer.close();
-                } catch (FileNotFoundException ex) {
-                    ex.printStackTrace(System.err);
-                }
-                try (PrintWriter writer = new PrintWriter(boardFile)) {
-                    writer.println("gameid,board");
-                    for (int i = 0; i < finalBoards.length; i++) {
-                        GameBoard finalBoard = finalBoards[i];
-                        writer.println(i + "," + finalBoard.toStorageString());
-                    }
-                    
-                    boardFile.setWritable(true);
-                    boardFile.setReadable(true);
-                    writer.close();
-                } catch (FileNotFoundException ex) {
-                    ex.printStackTrace(System.err);
-                }
+                checkpoint.advance(sizeIndex, j + 1);
+                checkpoint.save(checkpointFile);
             }
+            checkpoint.advance(sizeIndex + 1, 0);
+            checkpoint.save(checkpointFile);
         }
-
-    }
-
-    private static long getMean(int[] scoreResults) {
-        long output = 0;
-        for (int i = 0; i < scoreResults.length; i++) {
-            int scoreResult = scoreResults[i];
-            output += scoreResult;
+        System.out.println("Result store: " + resultStore.getHits() + " games reused, "
+                + resultStore.getMisses() + " played");
+        if (shutdown(executor, resultsWriter, resultStore)) {
+            checkpointFile.delete();
         }
-        return output / (long) scoreResults.length;
     }
 
-    private static double getStandardDeviation(int[] scoreResults) {
-        long mean = getMean(scoreResults);
-        double[] standardResults = new double[scoreResults.length];
-        for (int i = 0; i < scoreResults.length; i++) {
-            standardResults[i] = Math.pow((scoreResults[i] - mean), 2);
-        }
-        double output = 0;
-        for (int i = 0; i < standardResults.length; i++) {
-            double standardResult = standardResults[i];
-            output += standardResult;
-        }
-        return Math.sqrt(output / standardResults.length);
-    }
-
-    private static int getMaxNumber(int[] array) {
-        int max = 0;
-        for (int i = 1; i < array.length; i++) {
-            int j = array[i];
-            if (j > array[max]) {
-                max = i;
-            }
+    /**
+     * @return true if both files were closed
+     */
+    private static boolean shutdown(ExecutorService executor, ResultsWriter resultsWriter,
+            ResultStore resultStore) {
+        executor.shutdownNow();
+        try {
+            resultsWriter.close();
+            resultStore.close();
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return false;
         }
-        return array[max];
     }
 
-    private static int getMinNumber(int[] array) {
-        int min = 0;
-        for (int i = 1; i < array.length; i++) {
-            int j = array[i];
-            if (j < array[min]) {
-                min = i;
+    /**
+     * Opens a per-combo output file. A fresh file gets its header; a file
+     * from an interrupted run is cut back to the length recorded in the
+     * checkpoint, dropping rows of games that finished after the last save.
+     */
+    private static PrintWriter openOutput(File file, long resumeLength, String header) throws IOException {
+        if (resumeLength > 0) {
+            try (RandomAccessFile truncator = new RandomAccessFile(file, "rw")) {
+                truncator.setLength(resumeLength);
             }
+            return new PrintWriter(new FileOutputStream(file, true));
         }
-        return array[min];
+        PrintWriter writer = new PrintWriter(new FileOutputStream(file, false));
+        writer.println(header);
+        return writer;
     }
 }
@@ -4,28 +4,50 @@ import aidecision.MajorityVoting;
 import aiheuristics.Corners;
 import aiheuristics.Heuristic;
 import aiheuristics.HeuristicList;
+import aisearch.ChanceSampling;
 import aisearch.DepthWeighting;
-import aisearch.SingleThreadSearch;
+import aisearch.EvaluationCache;
+import aisearch.OpeningTable;
+import aisearch.SearchProfiler;
 import aisearch.StateEvaluationType;
-import gamemodel.Direction;
-import gamemodel.GameBoard;
 import gamemodel.GameController;
+import gamemodel.MoveEngine;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.util.Scanner;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Run multiple games and compare results
  *
+ * Live metrics are registered over JMX; start with -Dmetrics.port=PORT to
+ * also serve them at http://localhost:PORT/metrics. Start with
+ * -Dsearch.profile=true to print a breakdown of the search work at the end.
+ * -Dsearch.chanceSampling=STRATIFIED|IMPORTANCE with
+ * -Dsearch.chanceSampleSize=N samples spawn positions on open boards, and
+ * -Dsearch.probabilityCutoff=P stops expanding boards less likely than P.
+ * -Dsearch.treeReuse=true keeps the search tree between moves.
+ * -Dsearch.evaluationCacheMB=N shares an N megabyte off-heap cache of
+ * heuristic values between all games. -Dsearch.openingTable=FILE plays the
+ * first moves from a table made by {@link OpeningTableGenerator}.
+ * -Dgame.moveEngine=SWAR moves packed boards a row at a time, and
+ * -Dgame.boardSize=N plays on N by N boards instead of 4 by 4.
+ *
+ * Besides the CSV files, every game is written to results.bin, a columnar
+ * file read with {@link ResultsReader}, and kept in a {@link ResultStore}
+ * (resultStore.bin, or the file named by -Dresults.store) so a later run of
+ * the same configuration and seeds reuses them. -Dgames.seed=N seeds the
+ * games the same way every run.
+ *
  * @author Lucas Burdell <lucasburdell@gmail.com>
  */
 public class MassParallelRunner {
 
+    static final int RESULTS_ROW_GROUP_SIZE = 65536;
+
     public static void main(String[] args) {
         Scanner input = new Scanner(System.in);
         System.out.print("Enter number of games to play: ");
@@ -36,160 +58,145 @@ public class MassParallelRunner {
         System.out.print("Enter progress report iteration:");
         int progressReportIteration = input.nextInt();
         int threadCount = Runtime.getRuntime().availableProcessors();
-        final int[] scoreResults = new int[gamesToPlay];
-        final GameBoard[] finalBoards = new GameBoard[gamesToPlay];
-
-        //searcher.setDebugMessagesEnabled(true);
-        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
-        Future[] futures = new Future[gamesToPlay];
-
-        GameController controller = new GameController();
-
-        SingleThreadSearch searcher = new SingleThreadSearch(controller);
-        searcher.setMaximumDepth(maxDepth);
-        searcher.setDepthWeightingType(DepthWeighting.NONE);
-        searcher.setEvaluationType(StateEvaluationType.NEXT_STATES);
-        searcher.setDepthScaling(true);
-        searcher.setConsiderFoursForPossibleStates(false);
+        long seed = Long.getLong("games.seed", System.currentTimeMillis());
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+
+        GameSimulation simulation = createSimulation(maxDepth);
+        Heuristic[] heuristics = simulation.getHeuristics();
+        String openingTablePath = System.getProperty("search.openingTable");
+        if (openingTablePath != null) {
+            OpeningTable openingTable = OpeningTable.map(new File(openingTablePath));
+            if (openingTable == null) {
+                System.out.println("No opening table at " + openingTablePath);
+            } else if (openingTable.getFingerprint() != simulation.getConfigurationFingerprint()) {
+                System.out.println("Opening table " + openingTablePath
+                        + " was made with a different configuration, ignoring it");
+            } else {
+                simulation.setOpeningTable(openingTable);
+            }
+        }
 
-        //searcher.setDebugMessagesEnabled(true);
-        //Heuristic[] heuristics = HeuristicList.getHeuristics();
-        Heuristic[] heuristics = new Heuristic[]{new Corners(1)};
-        MajorityVoting decider = new MajorityVoting(heuristics);
-        decider.setLearning(false);
-        //decider.setDebugMessagesEnabled(true);
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.setQueueDepthSource(() -> executor.getQueue().size());
+        metrics.start("MassParallelRunner");
+        MetricsHttpServer metricsServer = MetricsHttpServer.startIfConfigured(metrics);
+        simulation.setMetrics(metrics);
 
+        ScoreStatistics statistics = new ScoreStatistics();
+        File scoreFile = new File("scoreOutput.csv");
+        File boardFile = new File("boardOutput.txt");
+        long configId = simulation.getConfigurationFingerprint();
+        String configurationHash = simulation.getConfigurationHash();
         long programStartTime = System.currentTimeMillis();
-        for (int i = 0; i < gamesToPlay; i++) {
-            final int gameId = i;
-            futures[gameId] = executor.submit(() -> {
-
-                GameBoard currentBoard = controller.createStartingGameboard();
-
-                long moveCount = 0;
-                //long startTime = System.currentTimeMillis();
-                //System.out.println("start playing for " + gameId);
-                while (!controller.isGameOver(currentBoard)) {
-                    int[] votes = searcher.getVotesOnDirections(currentBoard, heuristics);
-                    Direction decision = decider.evaluateVotes(votes);
-                    currentBoard = controller.doGameMove(currentBoard, decision);
-                    //System.out.println("gameid " + gameId + " score: " + currentBoard.getScore());
-                    //System.out.println(currentBoard.getScore());
-                    //System.out.println(currentBoard);
-                    //System.out.println("Moved above board " + decision);
-                    if (moveCount % 20L == 0) {
-                        //System.out.println("moves made this game: " + moveCount);
-                    }
-                    moveCount++;
-
-                }
-                //long endTime = System.currentTimeMillis();
-                scoreResults[gameId] = currentBoard.getScore();
-                finalBoards[gameId] = currentBoard;
-//                System.out.println("final score: " + currentBoard.getScore());
-//                System.out.println("game " + gameId + " complete");
-                //System.out.println("game took: " + (endTime - startTime) / 1000.0 + " seconds");
-            });
-        }
-        for (int i = 0; i < futures.length; i++) {
-            Future future = futures[i];
-            try {
-                future.get();
-                if (i % progressReportIteration == 0) {
-                    System.out.println("completed " + i + " games");
-                }
-            } catch (InterruptedException | ExecutionException ex) {
-                ex.printStackTrace(System.err);
-            }
+        int failures = 0;
+        // the store first, so a file it refuses stops the run before any
+        // output is overwritten
+        try (ResultStore resultStore = new ResultStore(
+                new File(System.getProperty("results.store", "resultStore.bin")));
+                PrintWriter scoreWriter = new PrintWriter(scoreFile);
+                PrintWriter boardWriter = new PrintWriter(boardFile);
+                ResultsWriter resultsWriter = new ResultsWriter(new File("results.bin"), 0, RESULTS_ROW_GROUP_SIZE)) {
+            scoreWriter.println("gameid,gamescore");
+            boardWriter.println("gameid,board");
+            failures = pipeline.run(gamesToPlay,
+                    gameId -> {
+                        long gameSeed = GameSimulation.mixSeed(seed, gameId);
+                        GameResult stored = resultStore.get(configurationHash, gameId, gameSeed);
+                        if (stored != null) {
+                            return () -> stored;
+                        }
+                        return () -> simulation.play(gameId, gameSeed);
+                    },
+                    (result, gameId) -> {
+                        statistics.add(result);
+                        scoreWriter.println(gameId + "," + result.getScore());
+                        boardWriter.println(gameId + "," + result.getFinalBoard().toStorageString());
+                        try {
+                            resultsWriter.add(configId, result);
+                            resultStore.put(configurationHash, result);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                        if (statistics.getCount() % progressReportIteration == 0) {
+                            System.out.println("completed " + statistics.getCount() + " games ("
+                                    + String.format("%.1f", metrics.getMovesPerSecond()) + " moves/s)");
+                        }
+                    });
+            System.out.println("Result store: " + resultStore.getHits() + " games reused, "
+                    + resultStore.getMisses() + " played");
+        } catch (IOException | UncheckedIOException | InterruptedException ex) {
+            ex.printStackTrace(System.err);
         }
+        scoreFile.setWritable(true);
+        scoreFile.setReadable(true);
         executor.shutdown();
+        metrics.stop();
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
         long programEndTime = System.currentTimeMillis();
         System.out.println("----------------");
         System.out.println("OUTPUT");
-        System.out.println("Games played: " + gamesToPlay);
+        System.out.println("Games played: " + statistics.getCount());
+        System.out.println("Games failed: " + failures);
         System.out.println("maximum depth: " + maxDepth);
-        System.out.println("Eval type: " + searcher.getEvaluationType());
+        System.out.println("Eval type: " + simulation.getEvaluationType());
         System.out.println("Heuristics used: ");
         for (Heuristic heuristic : heuristics) {
             System.out.println("\t" + heuristic.getClass().getCanonicalName());
         }
         System.out.println("Total AI computation time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
-        System.out.println("Mean: " + getMean(scoreResults));
-        System.out.println("Standard Deviation: " + getStandardDeviation(scoreResults));
-        System.out.println("Max: " + getMaxNumber(scoreResults));
-        System.out.println("Min: " + getMinNumber(scoreResults));
-
-        File scoreFile = new File("scoreOutput.csv");
-        File boardFile = new File("boardOutput.txt");
-        try (PrintWriter writer = new PrintWriter(scoreFile)) {
-            writer.println("gameid,gamescore");
-            for (int i = 0; i < scoreResults.length; i++) {
-                int scoreResult = scoreResults[i];
-                writer.println(i + "," + scoreResult);
-            }
-
-            scoreFile.setWritable(true);
-            scoreFile.setReadable(true);
-            writer.close();
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace(System.err);
+        System.out.println("Mean: " + (long) statistics.getMean());
+        System.out.println("Standard Deviation: " + statistics.getStandardDeviation());
+        System.out.println("Max: " + statistics.getMax());
+        System.out.println("Min: " + statistics.getMin());
+        if (simulation.isProfilingEnabled()) {
+            System.out.println("Search profile:");
+            System.out.print(SearchProfiler.aggregate());
         }
-        try (PrintWriter writer = new PrintWriter(boardFile)) {
-            writer.println("gameid,board");
-            for (int i = 0; i < finalBoards.length; i++) {
-                GameBoard finalBoard = finalBoards[i];
-                writer.println(i + "," + finalBoard.toStorageString());
-            }
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace(System.err);
+        EvaluationCache cache = simulation.getEvaluationCache();
+        if (cache != null) {
+            System.out.println("Evaluation cache: " + cache.getHits() + " hits, "
+                    + cache.getMisses() + " misses (" + cache.getHitRate() * 100 + "%), "
+                    + cache.getEvictions() + " evictions");
         }
 
         System.out.println("Calculated weights:");
-        System.out.println(decider.getWeightsReport());
-    }
-
-    private static long getMean(int[] scoreResults) {
-        long output = 0;
-        for (int i = 0; i < scoreResults.length; i++) {
-            int scoreResult = scoreResults[i];
-            output += scoreResult;
-        }
-        return output / (long) scoreResults.length;
-    }
-
-    private static double getStandardDeviation(int[] scoreResults) {
-        long mean = getMean(scoreResults);
-        double[] standardResults = new double[scoreResults.length];
-        for (int i = 0; i < scoreResults.length; i++) {
-            standardResults[i] = Math.pow((scoreResults[i] - mean), 2);
-        }
-        double output = 0;
-        for (int i = 0; i < standardResults.length; i++) {
-            double standardResult = standardResults[i];
-            output += standardResult;
-        }
-        return Math.sqrt(output / standardResults.length);
-    }
-
-    private static int getMaxNumber(int[] array) {
-        int max = 0;
-        for (int i = 1; i < array.length; i++) {
-            int j = array[i];
-            if (j > array[max]) {
-                max = i;
-            }
-        }
-        return array[max];
+        System.out.println(new MajorityVoting(heuristics).getWeightsReport());
     }
 
-    private static int getMinNumber(int[] array) {
-        int min = 0;
-        for (int i = 1; i < array.length; i++) {
-            int j = array[i];
-            if (j < array[min]) {
-                min = i;
-            }
+    /**
+     * Creates the simulation the runner plays with; the search settings
+     * given as system properties are applied here.
+     *
+     * @param maxDepth
+     * @return the simulation
+     */
+    public static GameSimulation createSimulation(int maxDepth) {
+        //Heuristic[] heuristics = HeuristicList.getHeuristics();
+        Heuristic[] heuristics = new Heuristic[]{new Corners(1)};
+        GameSimulation simulation = new GameSimulation(heuristics);
+        simulation.setMaxDepth(maxDepth);
+        simulation.setDepthWeightingType(DepthWeighting.NONE);
+        simulation.setEvaluationType(StateEvaluationType.NEXT_STATES);
+        simulation.setDepthScaling(true);
+        simulation.setConsiderFoursForPossibleStates(false);
+        simulation.setProfilingEnabled(Boolean.getBoolean("search.profile"));
+        simulation.setChanceSampling(ChanceSampling.valueOf(
+                System.getProperty("search.chanceSampling", ChanceSampling.NONE.name())));
+        simulation.setChanceSampleSize(Integer.getInteger("search.chanceSampleSize", 4));
+        simulation.setProbabilityCutoff(Double.parseDouble(
+                System.getProperty("search.probabilityCutoff", "0")));
+        simulation.setTreeReuse(Boolean.getBoolean("search.treeReuse"));
+        simulation.setMoveEngine(MoveEngine.valueOf(
+                System.getProperty("game.moveEngine", MoveEngine.GRID.name())));
+        simulation.setBoardSize(Integer.getInteger("game.boardSize", GameController.ROW_SIZE));
+        long cacheMegabytes = Long.getLong("search.evaluationCacheMB", 0);
+        if (cacheMegabytes > 0) {
+            simulation.setEvaluationCache(new EvaluationCache(cacheMegabytes, heuristics.length));
         }
-        return array[min];
+        return simulation;
     }
 }
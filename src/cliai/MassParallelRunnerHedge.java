@@ -0,0 +1,96 @@
+package cliai;
+
+import aidecision.HedgeVoting;
+import aidecision.HedgeWeights;
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicList;
+import aisearch.DepthWeighting;
+import aisearch.StateEvaluationType;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Run multiple games while {@link HedgeVoting} learns the weights of the
+ * heuristics from how the games go, and report the weights. Heuristics
+ * left with little weight are candidates to drop.
+ *
+ * The learning rate is -Dhedge.learningRate (0.01) and the number of moves
+ * a decision is judged over is -Dhedge.horizon (5).
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class MassParallelRunnerHedge {
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter number of games to play: ");
+        int gamesToPlay = input.nextInt();
+        System.out.print("Enter max depth of search: ");
+        int maxDepth = input.nextInt();
+        System.out.print("Enter progress report iteration:");
+        int progressReportIteration = input.nextInt();
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        long seed = System.currentTimeMillis();
+        double learningRate = Double.parseDouble(System.getProperty("hedge.learningRate", "0.01"));
+        int horizon = Integer.getInteger("hedge.horizon", HedgeVoting.DEFAULT_HORIZON);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+
+        Heuristic[] heuristics = HeuristicList.getHeuristics();
+        HedgeWeights weights = new HedgeWeights(heuristics.length, learningRate);
+        GameSimulation simulation = new GameSimulation(heuristics);
+        simulation.setMaxDepth(maxDepth);
+        simulation.setDepthWeightingType(DepthWeighting.NONE);
+        simulation.setEvaluationType(StateEvaluationType.NEXT_STATES);
+        simulation.setDepthScaling(false);
+        simulation.setConsiderFoursForPossibleStates(false);
+        simulation.setDeciderFactory((deciderHeuristics, random) -> {
+            HedgeVoting decider = new HedgeVoting(weights, deciderHeuristics.length, horizon);
+            decider.setRandom(random);
+            decider.setLearning(true);
+            return decider;
+        });
+
+        ScoreStatistics statistics = new ScoreStatistics();
+        File scoreFile = new File("scoreOutput.csv");
+        long programStartTime = System.currentTimeMillis();
+        int failures = 0;
+        try (PrintWriter scoreWriter = new PrintWriter(scoreFile)) {
+            scoreWriter.println("gameid,gamescore");
+            failures = pipeline.run(gamesToPlay,
+                    gameId -> () -> simulation.play(gameId, GameSimulation.mixSeed(seed, gameId)),
+                    (result, gameId) -> {
+                        statistics.add(result);
+                        scoreWriter.println(gameId + "," + result.getScore());
+                        if (statistics.getCount() % progressReportIteration == 0) {
+                            System.out.println("completed " + statistics.getCount() + " games, mean "
+                                    + (long) statistics.getMean());
+                            System.out.print(weights.getWeightsReport(heuristics));
+                        }
+                    });
+        } catch (FileNotFoundException | InterruptedException ex) {
+            ex.printStackTrace(System.err);
+        }
+        executor.shutdown();
+        long programEndTime = System.currentTimeMillis();
+        System.out.println("----------------");
+        System.out.println("OUTPUT");
+        System.out.println("Games played: " + statistics.getCount());
+        System.out.println("Games failed: " + failures);
+        System.out.println("maximum depth: " + maxDepth);
+        System.out.println("Learning rate: " + learningRate + ", horizon: " + horizon + " moves");
+        System.out.println("Total AI computation time: " + (programEndTime - programStartTime) / 1000.0 + " seconds");
+        System.out.println("Mean: " + (long) statistics.getMean());
+        System.out.println("Standard Deviation: " + statistics.getStandardDeviation());
+        System.out.println("Max: " + statistics.getMax());
+        System.out.println("Min: " + statistics.getMin());
+        System.out.println("Decisions learned from: " + weights.getRounds());
+        System.out.println("Calculated weights:");
+        System.out.println(weights.getWeightsReport(heuristics));
+    }
+}
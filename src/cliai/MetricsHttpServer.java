@@ -0,0 +1,67 @@
+package cliai;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@link SimulationMetrics} at http://localhost:port/metrics in the
+ * Prometheus text format.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class MetricsHttpServer {
+
+    /**
+     * System property holding the port to serve metrics on; metrics are not
+     * served over HTTP when it is unset.
+     */
+    public static final String PORT_PROPERTY = "metrics.port";
+
+    private final HttpServer server;
+
+    public MetricsHttpServer(SimulationMetrics metrics, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+    }
+
+    /**
+     * Starts a server on the port given by the metrics.port system property.
+     *
+     * @param metrics
+     * @return the started server, or null if no port was configured
+     */
+    public static MetricsHttpServer startIfConfigured(SimulationMetrics metrics) {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null) {
+            return null;
+        }
+        try {
+            MetricsHttpServer server = new MetricsHttpServer(metrics, port);
+            server.start();
+            System.out.println("Serving metrics on http://localhost:" + port + "/metrics");
+            return server;
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,171 @@
+package cliai;
+
+import java.io.Serializable;
+
+/**
+ * The counters of a {@link SimulationMetrics} at one moment. Rates are worked
+ * out by comparing two snapshots, so a dashboard can sample at its own frame
+ * rate without the metrics sampler. Snapshots are serializable so the JMX
+ * bean can hand them to a dashboard in another process; times are then
+ * those of the simulation's JVM.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class MetricsSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The percentiles of {@link #getSearchLatencyPercentiles()}.
+     */
+    public static final double[] LATENCY_PERCENTILES = {.5, .9, .99};
+
+    private final long time;
+    private final long gamesCompleted;
+    private final long movesMade;
+    private final long nodesSearched;
+    private final long[] searchLatencyPercentiles;
+    private final long searchLatencyMax;
+    private final long[] scoreBucketLimits;
+    private final long[] scoreBucketCounts;
+    private final long votedMoves;
+    private final long[] voteAgreements;
+    private final int queueDepth;
+
+    public MetricsSnapshot(long time, long gamesCompleted, long movesMade, long nodesSearched,
+            long[] searchLatencyPercentiles, long searchLatencyMax, long[] scoreBucketLimits,
+            long[] scoreBucketCounts, long votedMoves, long[] voteAgreements, int queueDepth) {
+        this.time = time;
+        this.gamesCompleted = gamesCompleted;
+        this.movesMade = movesMade;
+        this.nodesSearched = nodesSearched;
+        this.searchLatencyPercentiles = searchLatencyPercentiles;
+        this.searchLatencyMax = searchLatencyMax;
+        this.scoreBucketLimits = scoreBucketLimits;
+        this.scoreBucketCounts = scoreBucketCounts;
+        this.votedMoves = votedMoves;
+        this.voteAgreements = voteAgreements;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * @param earlier a snapshot of the same metrics taken before this one
+     * @return the games finished per second between the two snapshots
+     */
+    public double getGamesPerSecond(MetricsSnapshot earlier) {
+        return getRate(gamesCompleted - earlier.gamesCompleted, earlier);
+    }
+
+    /**
+     * @param earlier a snapshot of the same metrics taken before this one
+     * @return the moves made per second between the two snapshots
+     */
+    public double getMovesPerSecond(MetricsSnapshot earlier) {
+        return getRate(movesMade - earlier.movesMade, earlier);
+    }
+
+    /**
+     * @param earlier a snapshot of the same metrics taken before this one
+     * @return the search nodes expanded per second between the two snapshots
+     */
+    public double getNodesPerSecond(MetricsSnapshot earlier) {
+        return getRate(nodesSearched - earlier.nodesSearched, earlier);
+    }
+
+    private double getRate(long delta, MetricsSnapshot earlier) {
+        double seconds = (time - earlier.time) / 1e9;
+        return seconds > 0 ? delta / seconds : 0;
+    }
+
+    /**
+     * @param heuristic index of the heuristic in the simulation
+     * @return the fraction of searched moves on which the heuristic voted for
+     * the move played
+     */
+    public double getVoteAgreement(int heuristic) {
+        if (votedMoves == 0 || heuristic >= voteAgreements.length) {
+            return 0;
+        }
+        return voteAgreements[heuristic] / (double) votedMoves;
+    }
+
+    /**
+     * @return the System.nanoTime() the snapshot was taken at
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the gamesCompleted
+     */
+    public long getGamesCompleted() {
+        return gamesCompleted;
+    }
+
+    /**
+     * @return the movesMade
+     */
+    public long getMovesMade() {
+        return movesMade;
+    }
+
+    /**
+     * @return the nodesSearched
+     */
+    public long getNodesSearched() {
+        return nodesSearched;
+    }
+
+    /**
+     * @return the search latency in nanoseconds at each of
+     * {@link #LATENCY_PERCENTILES}
+     */
+    public long[] getSearchLatencyPercentiles() {
+        return searchLatencyPercentiles.clone();
+    }
+
+    /**
+     * @return the longest search in nanoseconds
+     */
+    public long getSearchLatencyMax() {
+        return searchLatencyMax;
+    }
+
+    /**
+     * @return the highest score of each histogram bucket, from the lowest
+     * bucket with a game to the highest
+     */
+    public long[] getScoreBucketLimits() {
+        return scoreBucketLimits.clone();
+    }
+
+    /**
+     * @return the number of games in each bucket of
+     * {@link #getScoreBucketLimits()}
+     */
+    public long[] getScoreBucketCounts() {
+        return scoreBucketCounts.clone();
+    }
+
+    /**
+     * @return the number of moves chosen by a vote of the heuristics
+     */
+    public long getVotedMoves() {
+        return votedMoves;
+    }
+
+    /**
+     * @return the number of heuristics that have voted
+     */
+    public int getVotingHeuristicCount() {
+        return voteAgreements.length;
+    }
+
+    /**
+     * @return the queueDepth
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+}
@@ -0,0 +1,197 @@
+package cliai;
+
+import aidecision.AIDecider;
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicInput;
+import aisearch.OpeningTable;
+import aisearch.SingleThreadSearch;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.MoveSet;
+import gamemodel.PackedBoard;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Builds an {@link OpeningTable} for the configuration of
+ * {@link MassParallelRunner}: the decision for every position reachable in
+ * the first moves of a game when the configuration itself picks the moves.
+ * Run it with the same search system properties as the runner, or the runner
+ * will refuse the table.
+ *
+ * Positions are stored without the previous move, so configurations with a
+ * heuristic that reads it (TwoDirections) are refused.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class OpeningTableGenerator {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter number of opening moves: ");
+        int moveCount = input.nextInt();
+        System.out.print("Enter max depth of search: ");
+        int maxDepth = input.nextInt();
+        System.out.print("Enter output file: ");
+        File file = new File(input.next());
+        int threadCount = Runtime.getRuntime().availableProcessors();
+
+        GameSimulation simulation = MassParallelRunner.createSimulation(maxDepth);
+        if (simulation.getBoardSize() != PackedBoard.SIZE) {
+            System.out.println("Opening tables are only made for " + PackedBoard.SIZE + "x"
+                    + PackedBoard.SIZE + " boards");
+            return;
+        }
+        for (Heuristic heuristic : simulation.getHeuristics()) {
+            if (heuristic.dependsOn(HeuristicInput.PREVIOUS_MOVE)) {
+                System.out.println("Opening tables cannot be made for " + heuristic.getClass().getSimpleName()
+                        + ", which reads the previous move");
+                return;
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 4);
+        long startTime = System.currentTimeMillis();
+        Map<Long, Direction> decisions;
+        try {
+            decisions = generate(simulation, moveCount, pipeline);
+        } catch (InterruptedException ex) {
+            ex.printStackTrace(System.err);
+            return;
+        } finally {
+            executor.shutdown();
+        }
+
+        long[] keys = new long[decisions.size()];
+        int index = 0;
+        for (long key : decisions.keySet()) {
+            keys[index++] = key;
+        }
+        Arrays.sort(keys);
+        Direction[] directions = new Direction[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            directions[i] = decisions.get(keys[i]);
+        }
+        try {
+            OpeningTable.write(file, simulation.getConfigurationFingerprint(), moveCount, keys, directions);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return;
+        }
+        System.out.println("Wrote " + keys.length + " positions to " + file + " in "
+                + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+    }
+
+    /**
+     * Decides every position reachable in the first moves of a game.
+     *
+     * @param simulation
+     * @param moveCount number of opening moves to cover
+     * @param pipeline runs the searches of each move
+     * @return the decision for each packed board
+     * @throws InterruptedException
+     */
+    static Map<Long, Direction> generate(GameSimulation simulation, int moveCount, GamePipeline pipeline)
+            throws InterruptedException {
+        Map<Long, Direction> decisions = new HashMap<>();
+        Set<Long> positions = getStartingPositions();
+        for (int move = 0; move < moveCount && !positions.isEmpty(); move++) {
+            long[] level = new long[positions.size()];
+            int size = 0;
+            for (long position : positions) {
+                level[size++] = position;
+            }
+            Direction[] levelDecisions = new Direction[size];
+            final int moveNumber = move;
+            int failures = pipeline.run(size,
+                    i -> () -> decide(simulation, level[i], moveNumber),
+                    (decision, i) -> levelDecisions[i] = decision);
+            if (failures > 0) {
+                System.out.println(failures + " positions failed");
+            }
+
+            Set<Long> nextPositions = new HashSet<>();
+            GameController controller = new GameController();
+            MoveSet moves = new MoveSet(PackedBoard.SIZE);
+            for (int i = 0; i < size; i++) {
+                if (levelDecisions[i] == null) {
+                    continue; // no legal move, or the decider picked an illegal one
+                }
+                decisions.put(level[i], levelDecisions[i]);
+                if (move + 1 < moveCount) {
+                    addSpawns(controller, moves, level[i], levelDecisions[i], decisions, nextPositions);
+                }
+            }
+            System.out.println("move " + move + ": " + size + " positions, "
+                    + decisions.size() + " decisions in total");
+            positions = nextPositions;
+        }
+        return decisions;
+    }
+
+    // every board createStartingGameboard can make
+    private static Set<Long> getStartingPositions() {
+        Set<Long> positions = new HashSet<>();
+        int cells = PackedBoard.SIZE * PackedBoard.SIZE;
+        for (int first = 0; first < cells; first++) {
+            for (int second = first + 1; second < cells; second++) {
+                for (int firstValue = 1; firstValue <= 2; firstValue++) {
+                    for (int secondValue = 1; secondValue <= 2; secondValue++) {
+                        long board = PackedBoard.setTile(0, first % PackedBoard.SIZE, first / PackedBoard.SIZE, firstValue);
+                        board = PackedBoard.setTile(board, second % PackedBoard.SIZE, second / PackedBoard.SIZE, secondValue);
+                        positions.add(board);
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+
+    private static Direction decide(GameSimulation simulation, long position, int moveNumber) {
+        GameController controller = new GameController();
+        GameBoard board = new GameBoard(PackedBoard.unpack(position));
+        board.setPreviousMove(DIRECTIONS[0]);
+        int legalMoves = controller.getLegalMoves(board);
+        if (legalMoves == 0) {
+            return null;
+        }
+        // seeded by position so the table is the same on every run
+        SingleThreadSearch searcher = simulation.createSearcher(controller);
+        searcher.setRandom(new Random(GameSimulation.mixSeed(position, 1)));
+        AIDecider decider = simulation.getDeciderFactory().createDecider(
+                simulation.getHeuristics(), new Random(GameSimulation.mixSeed(position, 2)));
+        Direction decision = simulation.decide(board, moveNumber, searcher, decider);
+        return (legalMoves & (1 << decision.ordinal())) != 0 ? decision : null;
+    }
+
+    private static void addSpawns(GameController controller, MoveSet moves, long position,
+            Direction decision, Map<Long, Direction> decisions, Set<Long> nextPositions) {
+        controller.computeAllMoves(new GameBoard(PackedBoard.unpack(position)), moves);
+        long afterState = PackedBoard.pack(moves.getGrid(decision));
+        for (int x = 0; x < PackedBoard.SIZE; x++) {
+            for (int y = 0; y < PackedBoard.SIZE; y++) {
+                if (PackedBoard.getTile(afterState, x, y) != 0) {
+                    continue;
+                }
+                for (int value = 1; value <= 2; value++) {
+                    long next = PackedBoard.setTile(afterState, x, y, value);
+                    if (!decisions.containsKey(next)) {
+                        nextPositions.add(next);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package cliai;
+
+import aidecision.AIDecider;
+import aidecision.MajorityVoting;
+import aiheuristics.BatchEvaluator;
+import aiheuristics.Heuristic;
+import aiheuristics.LineTables;
+import aiheuristics.QuantizedNetwork;
+import aisearch.SingleThreadSearch;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import gamemodel.SwarMoveEngine;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fits a cheap evaluator, {@link LineTables} or a {@link QuantizedNetwork},
+ * to the moves of a deep search, so bulk simulations can play close to the
+ * deep search at depth 0 or 1.
+ *
+ * Positions come from games the teacher, the configuration of
+ * {@link MassParallelRunner} at the given depth, plays itself. Each position
+ * is labeled with the teacher's decision and the value it gave every
+ * direction, and appended to -Ddistill.positions (distillPositions.bin) as
+ * its game ends, so labeling can be stopped and picked up again. Positions
+ * labeled with another configuration are thrown away.
+ *
+ * The evaluator is then fitted by stochastic gradient descent on the
+ * softmax over the values of the legal afterstates, with the teacher's
+ * decision as the target, and written to -Ddistill.output (lineTables.bin or
+ * network.bin). The network is trained in floating point with
+ * -Ddistill.hiddenUnits (32) hidden units and quantized when done. Every
+ * tenth game is held out to measure agreement.
+ *
+ * <pre>
+ * int magic, int version, utf configuration hash,
+ * records: int game id, long packed board, byte legal moves,
+ *     byte decision, float[4] direction values
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class PolicyDistiller {
+
+    private static final int MAGIC = 0x4453544C; // "DSTL"
+    private static final int VERSION = 1;
+    private static final int RECORD_BYTES = 4 + 8 + 1 + 1 + 4 * 4;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int VALIDATION_GAME_INTERVAL = 10;
+    private static final float LEARNING_RATE = .01f;
+    private static final int SEARCH_CHECK_POSITIONS = 2000;
+    private static final float INITIAL_WEIGHT_DEVIATION = .1f;
+
+    public static void main(String[] args) {
+        Scanner input = new Scanner(System.in);
+        System.out.print("Enter number of positions to label: ");
+        int positionCount = input.nextInt();
+        System.out.print("Enter max depth of the teacher search: ");
+        int maxDepth = input.nextInt();
+        System.out.print("Enter student (0 = line tables, 1 = quantized network): ");
+        int studentType = input.nextInt();
+        System.out.print("Enter training epochs: ");
+        int epochs = input.nextInt();
+        File positionFile = new File(System.getProperty("distill.positions", "distillPositions.bin"));
+        File outputFile = new File(System.getProperty("distill.output",
+                studentType == 0 ? "lineTables.bin" : "network.bin"));
+        long seed = Long.getLong("games.seed", System.currentTimeMillis());
+
+        GameSimulation teacher = MassParallelRunner.createSimulation(maxDepth);
+        if (teacher.getBoardSize() != PackedBoard.SIZE) {
+            System.out.println("The students are only made for " + PackedBoard.SIZE + "x"
+                    + PackedBoard.SIZE + " boards");
+            return;
+        }
+
+        PositionSet positions;
+        try {
+            positions = label(teacher, positionFile, positionCount, seed);
+        } catch (IOException | UncheckedIOException | InterruptedException ex) {
+            ex.printStackTrace(System.err);
+            return;
+        }
+        if (positions.size == 0) {
+            System.out.println("No positions to learn from");
+            return;
+        }
+
+        Random random = new Random(seed);
+        try {
+            if (studentType == 0) {
+                LineTables student = new LineTables(1);
+                train(new TableStudent(student), positions, epochs, random);
+                report(student, positions);
+                student.save(outputFile);
+            } else {
+                NetworkStudent network = new NetworkStudent(Integer.getInteger("distill.hiddenUnits", 32), random);
+                train(network, positions, epochs, random);
+                QuantizedNetwork student = network.quantize();
+                report(student, positions);
+                student.save(outputFile);
+            }
+            System.out.println("Wrote " + outputFile);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    // loads the positions already labeled and plays games until there are
+    // enough
+    private static PositionSet label(GameSimulation teacher, File file, int positionCount, long seed)
+            throws IOException, InterruptedException {
+        String configurationHash = teacher.getConfigurationHash();
+        PositionSet positions = new PositionSet();
+        long validLength = file.exists() ? load(file, configurationHash, positions) : 0;
+        DataOutputStream output;
+        if (validLength > 0) {
+            try (RandomAccessFile truncator = new RandomAccessFile(file, "rw")) {
+                truncator.setLength(validLength);
+            }
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            System.out.println("Loaded " + positions.size + " labeled positions from " + file);
+        } else {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(configurationHash);
+        }
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        GamePipeline pipeline = new GamePipeline(executor, threadCount * 2);
+        long startTime = System.currentTimeMillis();
+        int labeledBefore = positions.size;
+        int nextGame = positions.getNextGameId();
+        try {
+            while (positions.size < positionCount) {
+                int firstGame = nextGame;
+                nextGame += threadCount;
+                pipeline.run(threadCount,
+                        i -> () -> playLabeledGame(teacher, firstGame + i,
+                                GameSimulation.mixSeed(seed, firstGame + i)),
+                        (game, i) -> {
+                            try {
+                                for (int j = 0; j < game.size; j++) {
+                                    positions.add(game, j);
+                                    writeRecord(output, game, j);
+                                }
+                                output.flush();
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException(ex);
+                            }
+                        });
+                System.out.println("labeled " + positions.size + " positions");
+            }
+        } finally {
+            executor.shutdown();
+            output.close();
+        }
+        if (positions.size > labeledBefore) {
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            System.out.println("Labeled " + (positions.size - labeledBefore) + " positions in " + seconds
+                    + " seconds (" + String.format("%.3f", seconds * 1000 / (positions.size - labeledBefore))
+                    + " ms each)");
+        }
+        positions.size = Math.min(positions.size, positionCount);
+        return positions;
+    }
+
+    // the length of the complete records, 0 for a file that is not a
+    // position file of this configuration
+    private static long load(File file, String configurationHash, PositionSet positions) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                System.out.println("Not a position file, starting a new one: " + file);
+                return 0;
+            }
+            if (!input.readUTF().equals(configurationHash)) {
+                System.out.println("Positions in " + file + " were labeled with a different configuration,"
+                        + " starting over");
+                return 0;
+            }
+            long length = 8 + 2 + configurationHash.length();
+            PositionSet record = new PositionSet();
+            try {
+                while (true) {
+                    record.size = 0;
+                    record.ensureCapacity(1);
+                    record.gameIds[0] = input.readInt();
+                    record.boards[0] = input.readLong();
+                    record.legalMoves[0] = input.readByte();
+                    record.decisions[0] = input.readByte();
+                    for (int d = 0; d < DIRECTIONS.length; d++) {
+                        record.values[d] = input.readFloat();
+                    }
+                    record.size = 1;
+                    positions.add(record, 0);
+                    length += RECORD_BYTES;
+                }
+            } catch (EOFException ex) {
+                // end of the file, or a record cut short
+            }
+            return length;
+        }
+    }
+
+    private static void writeRecord(DataOutputStream output, PositionSet positions, int i) throws IOException {
+        output.writeInt(positions.gameIds[i]);
+        output.writeLong(positions.boards[i]);
+        output.writeByte(positions.legalMoves[i]);
+        output.writeByte(positions.decisions[i]);
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            output.writeFloat(positions.values[i * DIRECTIONS.length + d]);
+        }
+    }
+
+    // plays a game with the teacher, keeping every position it searched
+    private static PositionSet playLabeledGame(GameSimulation teacher, int gameId, long seed) {
+        GameController controller = new GameController(teacher.getBoardSize());
+        controller.setRandom(new Random(seed));
+        controller.setMoveEngine(teacher.getMoveEngine());
+        SingleThreadSearch searcher = teacher.createSearcher(controller);
+        searcher.setRandom(new Random(GameSimulation.mixSeed(seed, 1)));
+        AIDecider decider = teacher.getDeciderFactory().createDecider(teacher.getHeuristics(),
+                new Random(GameSimulation.mixSeed(seed, 2)));
+        Heuristic[] heuristics = teacher.getHeuristics();
+
+        PositionSet game = new PositionSet();
+        GameBoard board = controller.createStartingGameboard();
+        long moveCount = 0;
+        while (!controller.isGameOver(board)) {
+            int legalMoves = controller.getLegalMoves(board);
+            Direction decision = teacher.decide(board, moveCount, searcher, decider);
+            if (PackedBoard.canPack(board.getGameGrid()) && (legalMoves & (1 << decision.ordinal())) != 0) {
+                long[][] sums = searcher.getLastDirectionSums();
+                int i = game.size;
+                game.ensureCapacity(i + 1);
+                game.gameIds[i] = gameId;
+                game.boards[i] = PackedBoard.pack(board);
+                game.legalMoves[i] = (byte) legalMoves;
+                game.decisions[i] = (byte) decision.ordinal();
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    double value = 0;
+                    for (int h = 0; h < heuristics.length; h++) {
+                        value += heuristics[h].getWeight() * sums[d][h];
+                    }
+                    game.values[i * DIRECTIONS.length + d] = (float) value;
+                }
+                game.size++;
+            }
+            board = controller.doGameMove(board, decision);
+            moveCount++;
+        }
+        return game;
+    }
+
+    private static boolean isValidation(PositionSet positions, int i) {
+        return positions.gameIds[i] % VALIDATION_GAME_INTERVAL == 0;
+    }
+
+    private static void train(Student student, PositionSet positions, int epochs, Random random) {
+        int[] order = new int[positions.size];
+        int trainCount = 0;
+        for (int i = 0; i < positions.size; i++) {
+            if (!isValidation(positions, i)) {
+                order[trainCount++] = i;
+            }
+        }
+        SwarMoveEngine engine = new SwarMoveEngine();
+        long[] afterStates = new long[DIRECTIONS.length];
+        float[] logits = new float[DIRECTIONS.length];
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (int i = trainCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            long agreements = 0;
+            double loss = 0;
+            for (int k = 0; k < trainCount; k++) {
+                int i = order[k];
+                int legal = getAfterStates(engine, positions.boards[i], positions.legalMoves[i], afterStates);
+                // softmax over the legal directions
+                float highest = Float.NEGATIVE_INFINITY;
+                int choice = -1;
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    if ((legal & (1 << d)) == 0) {
+                        continue;
+                    }
+                    logits[d] = student.forward(afterStates[d], d);
+                    if (logits[d] > highest) {
+                        highest = logits[d];
+                        choice = d;
+                    }
+                }
+                if (choice == positions.decisions[i]) {
+                    agreements++;
+                }
+                double total = 0;
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    if ((legal & (1 << d)) != 0) {
+                        logits[d] = (float) Math.exp(logits[d] - highest);
+                        total += logits[d];
+                    }
+                }
+                loss -= Math.log(logits[positions.decisions[i]] / total);
+                for (int d = 0; d < DIRECTIONS.length; d++) {
+                    if ((legal & (1 << d)) != 0) {
+                        student.backward(d, (float) (logits[d] / total) - (d == positions.decisions[i] ? 1 : 0));
+                    }
+                }
+            }
+            System.out.println("epoch " + (epoch + 1) + ": loss " + String.format("%.4f", loss / trainCount)
+                    + ", training agreement " + String.format("%.4f", agreements / (double) trainCount)
+                    + ", held out " + String.format("%.4f", getHeldOutAgreement(student, positions)));
+        }
+    }
+
+    private static double getHeldOutAgreement(Student student, PositionSet positions) {
+        SwarMoveEngine engine = new SwarMoveEngine();
+        long[] afterStates = new long[DIRECTIONS.length];
+        long count = 0;
+        long agreements = 0;
+        for (int i = 0; i < positions.size; i++) {
+            if (!isValidation(positions, i)) {
+                continue;
+            }
+            int legal = getAfterStates(engine, positions.boards[i], positions.legalMoves[i], afterStates);
+            float highest = Float.NEGATIVE_INFINITY;
+            int choice = -1;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                if ((legal & (1 << d)) != 0) {
+                    float value = student.forward(afterStates[d], d);
+                    if (value > highest) {
+                        highest = value;
+                        choice = d;
+                    }
+                }
+            }
+            count++;
+            agreements += choice == positions.decisions[i] ? 1 : 0;
+        }
+        return agreements / (double) Math.max(1, count);
+    }
+
+    // the legal moves of board, with the afterstate of each by direction
+    private static int getAfterStates(SwarMoveEngine engine, long board, int legalMoves, long[] afterStates) {
+        int legal = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if ((legalMoves & (1 << d)) == 0) {
+                continue;
+            }
+            afterStates[d] = engine.move(board, DIRECTIONS[d]);
+            if (engine.isMoved() && !engine.isOverflow()) {
+                legal |= 1 << d;
+            }
+        }
+        return legal;
+    }
+
+    // depth 0: the legal move with the highest afterstate value, valued in
+    // one batch
+    private static int chooseGreedy(BatchEvaluator student, SwarMoveEngine engine, long board, int legalMoves,
+            long[] afterStates, long[] values) {
+        int legal = getAfterStates(engine, board, legalMoves, afterStates);
+        int count = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if ((legal & (1 << d)) != 0) {
+                afterStates[count++] = afterStates[d];
+            }
+        }
+        student.evaluate(afterStates, count, values);
+        long highest = Long.MIN_VALUE;
+        int choice = -1;
+        int index = 0;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if ((legal & (1 << d)) != 0) {
+                long value = values[index++];
+                if (value > highest) {
+                    highest = value;
+                    choice = d;
+                }
+            }
+        }
+        return choice;
+    }
+
+    private static <S extends Heuristic & BatchEvaluator> void report(S student, PositionSet positions) {
+        SwarMoveEngine engine = new SwarMoveEngine();
+        long[] afterStates = new long[DIRECTIONS.length];
+        long[] values = new long[DIRECTIONS.length];
+        long trainCount = 0;
+        long trainAgreements = 0;
+        long validationCount = 0;
+        long validationAgreements = 0;
+        double regret = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < positions.size; i++) {
+            int choice = chooseGreedy(student, engine, positions.boards[i], positions.legalMoves[i],
+                    afterStates, values);
+            boolean agrees = choice == positions.decisions[i];
+            if (!isValidation(positions, i)) {
+                trainCount++;
+                trainAgreements += agrees ? 1 : 0;
+                continue;
+            }
+            validationCount++;
+            validationAgreements += agrees ? 1 : 0;
+            regret += getNormalizedRegret(positions, i, choice);
+        }
+        long greedyNanos = (System.nanoTime() - startTime) / positions.size;
+
+        // the student as a depth 1 search, on part of the held out positions
+        GameSimulation searchStudent = new GameSimulation(new Heuristic[]{student});
+        searchStudent.setMaxDepth(1);
+        searchStudent.setDepthScaling(false);
+        GameController controller = new GameController();
+        SingleThreadSearch searcher = searchStudent.createSearcher(controller);
+        searcher.setRandom(new Random(0));
+        MajorityVoting decider = new MajorityVoting(searchStudent.getHeuristics());
+        decider.setRandom(new Random(0));
+        decider.setLearning(false);
+        long searchCount = 0;
+        long searchAgreements = 0;
+        startTime = System.nanoTime();
+        for (int i = 0; i < positions.size && searchCount < SEARCH_CHECK_POSITIONS; i++) {
+            if (!isValidation(positions, i)) {
+                continue;
+            }
+            GameBoard board = new GameBoard(PackedBoard.unpack(positions.boards[i]));
+            Direction decision = searchStudent.decide(board, Long.MAX_VALUE, searcher, decider);
+            searchCount++;
+            searchAgreements += decision.ordinal() == positions.decisions[i] ? 1 : 0;
+        }
+        long searchNanos = searchCount == 0 ? 0 : (System.nanoTime() - startTime) / searchCount;
+
+        System.out.println("----------------");
+        System.out.println("OUTPUT");
+        System.out.println("Positions: " + trainCount + " training, " + validationCount + " held out");
+        System.out.println("Depth 0 agreement: "
+                + String.format("%.4f", trainAgreements / (double) Math.max(1, trainCount)) + " training, "
+                + String.format("%.4f", validationAgreements / (double) Math.max(1, validationCount))
+                + " held out (" + greedyNanos + " ns per decision)");
+        System.out.println("Depth 0 regret: " + String.format("%.4f", regret / Math.max(1, validationCount))
+                + " of the teacher's value range, held out");
+        System.out.println("Depth 1 agreement: "
+                + String.format("%.4f", searchAgreements / (double) Math.max(1, searchCount)) + " on " + searchCount + " held out positions (" + searchNanos + " ns per decision)");
+    }
+
+    // how much of the spread between the teacher's best and worst legal move
+    // the choice gives up
+    private static double getNormalizedRegret(PositionSet positions, int i, int choice) {
+        float best = Float.NEGATIVE_INFINITY;
+        float worst = Float.POSITIVE_INFINITY;
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            if ((positions.legalMoves[i] & (1 << d)) != 0) {
+                float value = positions.values[i * DIRECTIONS.length + d];
+                best = Math.max(best, value);
+                worst = Math.min(worst, value);
+            }
+        }
+        if (choice < 0 || best == worst) {
+            return choice < 0 ? 1 : 0;
+        }
+        return (best - positions.values[i * DIRECTIONS.length + choice]) / (double) (best - worst);
+    }
+
+    /**
+     * An evaluator being fitted. It values afterstates and then learns from
+     * the gradient of the loss with respect to each value.
+     */
+    private interface Student {
+
+        /**
+         * @param afterState a packed board
+         * @param slot where to keep what {@link #backward} needs, one per
+         * direction
+         * @return the value of the afterstate
+         */
+        float forward(long afterState, int slot);
+
+        /**
+         * @param slot the slot of the value
+         * @param gradient the gradient of the loss with respect to the value
+         */
+        void backward(int slot, float gradient);
+    }
+
+    private static final class TableStudent implements Student {
+
+        private final float[] values;
+        private final int[][] features = new int[DIRECTIONS.length][LineTables.FEATURE_COUNT];
+
+        TableStudent(LineTables tables) {
+            this.values = tables.getValues();
+        }
+
+        @Override
+        public float forward(long afterState, int slot) {
+            LineTables.getFeatures(afterState, features[slot]);
+            float value = 0;
+            for (int feature : features[slot]) {
+                value += values[feature];
+            }
+            return value;
+        }
+
+        @Override
+        public void backward(int slot, float gradient) {
+            for (int feature : features[slot]) {
+                values[feature] -= LEARNING_RATE * gradient;
+            }
+        }
+    }
+
+    // the network of QuantizedNetwork in floating point
+    private static final class NetworkStudent implements Student {
+
+        private final int hiddenCount;
+        private final float[] inputWeights;
+        private final float[] hiddenBiases;
+        private final float[] outputWeights;
+        private float outputBias = 0;
+        private final int[][] inputs = new int[DIRECTIONS.length][QuantizedNetwork.CELL_COUNT];
+        private final float[][] hidden;
+
+        NetworkStudent(int hiddenCount, Random random) {
+            this.hiddenCount = hiddenCount;
+            this.inputWeights = new float[QuantizedNetwork.INPUT_COUNT * hiddenCount];
+            this.hiddenBiases = new float[hiddenCount];
+            this.outputWeights = new float[hiddenCount];
+            this.hidden = new float[DIRECTIONS.length][hiddenCount];
+            for (int i = 0; i < inputWeights.length; i++) {
+                inputWeights[i] = (float) random.nextGaussian() * INITIAL_WEIGHT_DEVIATION;
+            }
+            for (int i = 0; i < hiddenCount; i++) {
+                outputWeights[i] = (float) random.nextGaussian() * INITIAL_WEIGHT_DEVIATION;
+            }
+        }
+
+        @Override
+        public float forward(long afterState, int slot) {
+            float[] layer = hidden[slot];
+            System.arraycopy(hiddenBiases, 0, layer, 0, hiddenCount);
+            for (int cell = 0; cell < QuantizedNetwork.CELL_COUNT; cell++) {
+                int input = QuantizedNetwork.getInput(afterState, cell);
+                inputs[slot][cell] = input;
+                int row = input * hiddenCount;
+                for (int i = 0; i < hiddenCount; i++) {
+                    layer[i] += inputWeights[row + i];
+                }
+            }
+            float output = outputBias;
+            for (int i = 0; i < hiddenCount; i++) {
+                output += outputWeights[i] * Math.max(layer[i], 0);
+            }
+            return output;
+        }
+
+        @Override
+        public void backward(int slot, float gradient) {
+            float[] layer = hidden[slot];
+            for (int i = 0; i < hiddenCount; i++) {
+                if (layer[i] <= 0) {
+                    continue;
+                }
+                float hiddenGradient = gradient * outputWeights[i];
+                outputWeights[i] -= LEARNING_RATE * gradient * layer[i];
+                hiddenBiases[i] -= LEARNING_RATE * hiddenGradient;
+                for (int input : inputs[slot]) {
+                    inputWeights[input * hiddenCount + i] -= LEARNING_RATE * hiddenGradient;
+                }
+            }
+            outputBias -= LEARNING_RATE * gradient;
+        }
+
+        QuantizedNetwork quantize() {
+            return QuantizedNetwork.quantize(1, inputWeights, hiddenBiases, outputWeights, outputBias);
+        }
+    }
+
+    /**
+     * Labeled positions in parallel arrays.
+     */
+    private static final class PositionSet {
+
+        private int size = 0;
+        private int[] gameIds = new int[256];
+        private long[] boards = new long[256];
+        private byte[] legalMoves = new byte[256];
+        private byte[] decisions = new byte[256];
+        // teacher values by position, then direction
+        private float[] values = new float[256 * DIRECTIONS.length];
+        private int nextGameId = 0;
+
+        void ensureCapacity(int capacity) {
+            if (capacity <= boards.length) {
+                return;
+            }
+            int length = Math.max(capacity, boards.length * 2);
+            gameIds = Arrays.copyOf(gameIds, length);
+            boards = Arrays.copyOf(boards, length);
+            legalMoves = Arrays.copyOf(legalMoves, length);
+            decisions = Arrays.copyOf(decisions, length);
+            values = Arrays.copyOf(values, length * DIRECTIONS.length);
+        }
+
+        void add(PositionSet other, int i) {
+            ensureCapacity(size + 1);
+            gameIds[size] = other.gameIds[i];
+            boards[size] = other.boards[i];
+            legalMoves[size] = other.legalMoves[i];
+            decisions[size] = other.decisions[i];
+            System.arraycopy(other.values, i * DIRECTIONS.length, values, size * DIRECTIONS.length,
+                    DIRECTIONS.length);
+            nextGameId = Math.max(nextGameId, other.gameIds[i] + 1);
+            size++;
+        }
+
+        int getNextGameId() {
+            return nextGameId;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package cliai;
+
+/**
+ * The columns of a results file, in the order they are stored in each row
+ * group (see {@link ResultsWriter}).
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public enum ResultColumn {
+
+    /**
+     * Identifies the configuration the game was played with, such as
+     * {@link GameSimulation#getConfigurationFingerprint()}.
+     */
+    CONFIG_ID,
+    GAME_ID,
+    SEED,
+    SCORE,
+    /**
+     * Exponent of the highest tile on the final board.
+     */
+    MAX_TILE,
+    MOVES,
+    /**
+     * CPU time spent on the game in nanoseconds.
+     */
+    CPU_TIME,
+    /**
+     * The final board; read with {@link ResultsReader#readBoards()}.
+     */
+    BOARD
+}
@@ -0,0 +1,221 @@
+package cliai;
+
+import gamemodel.GameBoard;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Results of games already played, kept on disk between runs so a sweep that
+ * repeats a configuration and seed reuses the game instead of playing it
+ * again. Games are keyed by {@link GameSimulation#getConfigurationHash()}
+ * and seed.
+ *
+ * The file is a log of records appended as games finish, loaded into memory
+ * when the store is opened. A record cut short by a crash is dropped. A
+ * file that is not a store of this version is refused, never overwritten.
+ *
+ * <pre>
+ * int magic, int version,
+ * records: byte[32] configuration hash, long seed, int score,
+ *     long move count, long cpu time, byte board size,
+ *     byte[board size * board size] tile exponents
+ * </pre>
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ResultStore implements Closeable {
+
+    private static final int MAGIC = 0x53544F52; // "STOR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int HASH_BYTES = 32;
+    // hash, seed, score, move count, cpu time and board size
+    private static final int RECORD_HEADER_BYTES = HASH_BYTES + 8 + 4 + 8 + 8 + 1;
+
+    private final Map<String, StoredGame> games = new HashMap<>();
+    private final DataOutputStream output;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Opens a store, loading the games already in it.
+     *
+     * @param file a store, or a missing or empty file to start one in
+     * @throws IOException if the file is not a store of this version
+     */
+    public ResultStore(File file) throws IOException {
+        long validLength = file.length() > 0 ? load(file) : 0;
+        if (validLength > 0) {
+            try (RandomAccessFile truncator = new RandomAccessFile(file, "rw")) {
+                truncator.setLength(validLength);
+            }
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } else {
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.flush();
+        }
+    }
+
+    // the length of the complete records
+    private long load(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (file.length() < HEADER_BYTES || input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " result store: " + file
+                        + "; move it aside or choose another file");
+            }
+            long length = HEADER_BYTES;
+            byte[] hash = new byte[HASH_BYTES];
+            try {
+                while (true) {
+                    input.readFully(hash);
+                    long seed = input.readLong();
+                    int score = input.readInt();
+                    long moveCount = input.readLong();
+                    long cpuTime = input.readLong();
+                    int size = input.readUnsignedByte();
+                    byte[] cells = new byte[size * size];
+                    input.readFully(cells);
+                    games.put(getKey(toHex(hash), seed), new StoredGame(score, moveCount, cpuTime, cells));
+                    length += RECORD_HEADER_BYTES + cells.length;
+                }
+            } catch (EOFException ex) {
+                // end of the log, or a record cut short
+            }
+            return length;
+        }
+    }
+
+    /**
+     * @param configurationHash
+     * @param gameId the id to give the result
+     * @param seed
+     * @return the stored result of the game, or null if it was never played
+     */
+    public synchronized GameResult get(String configurationHash, int gameId, long seed) {
+        StoredGame game = games.get(getKey(configurationHash, seed));
+        if (game == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        int size = (int) Math.round(Math.sqrt(game.cells.length));
+        int[][] grid = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                grid[x][y] = game.cells[x * size + y];
+            }
+        }
+        GameBoard board = new GameBoard(grid);
+        board.setScore(game.score);
+        return new GameResult(gameId, seed, board, game.moveCount, game.cpuTime);
+    }
+
+    /**
+     * Adds a finished game to the store and the file. Games already stored
+     * are not written again.
+     *
+     * @param configurationHash
+     * @param result
+     * @throws IOException
+     */
+    public synchronized void put(String configurationHash, GameResult result) throws IOException {
+        String key = getKey(configurationHash, result.getSeed());
+        if (games.containsKey(key)) {
+            return;
+        }
+        int[][] grid = result.getFinalBoard().getGameGrid();
+        byte[] cells = new byte[grid.length * grid.length];
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid.length; y++) {
+                cells[x * grid.length + y] = (byte) grid[x][y];
+            }
+        }
+        for (int i = 0; i < HASH_BYTES; i++) {
+            output.writeByte(Integer.parseInt(configurationHash.substring(2 * i, 2 * i + 2), 16));
+        }
+        output.writeLong(result.getSeed());
+        output.writeInt(result.getScore());
+        output.writeLong(result.getMoveCount());
+        output.writeLong(result.getCpuTime());
+        output.writeByte(grid.length);
+        output.write(cells);
+        games.put(key, new StoredGame(result.getScore(), result.getMoveCount(), result.getCpuTime(), cells));
+    }
+
+    /**
+     * Writes the games put so far to disk.
+     *
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        output.close();
+    }
+
+    private static String getKey(String configurationHash, long seed) {
+        return configurationHash + "/" + seed;
+    }
+
+    static String toHex(byte[] hash) {
+        StringBuilder output = new StringBuilder();
+        for (byte value : hash) {
+            output.append(String.format("%02x", value));
+        }
+        return output.toString();
+    }
+
+    /**
+     * @return the number of games in the store
+     */
+    public synchronized int getGameCount() {
+        return games.size();
+    }
+
+    /**
+     * @return the number of get calls that found a game
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of get calls that did not
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static final class StoredGame {
+
+        private final int score;
+        private final long moveCount;
+        private final long cpuTime;
+        // tile exponents, column by column
+        private final byte[] cells;
+
+        StoredGame(int score, long moveCount, long cpuTime, byte[] cells) {
+            this.score = score;
+            this.moveCount = moveCount;
+            this.cpuTime = cpuTime;
+            this.cells = cells;
+        }
+    }
+}
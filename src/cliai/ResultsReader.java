@@ -0,0 +1,248 @@
+package cliai;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the columns of a file written by {@link ResultsWriter}. Scanning a
+ * column reads only that column's chunks; the others are skipped by their
+ * length without being read.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ResultsReader implements Closeable {
+
+    private static final int CHUNK_HEADER_BYTES = 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES);
+    private final Inflater inflater = new Inflater();
+
+    public ResultsReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        ByteBuffer fileHeader = readFully(0, ResultsWriter.HEADER_BYTES);
+        if (fileHeader.getInt() != ResultsWriter.MAGIC || fileHeader.getInt() != ResultsWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a results file: " + file);
+        }
+    }
+
+    /**
+     * @return the number of rows in the file
+     * @throws IOException
+     */
+    public long getRowCount() throws IOException {
+        long rows = 0;
+        long position = ResultsWriter.HEADER_BYTES;
+        while (position < channel.size()) {
+            rows += readFully(position, 4).getInt();
+            position += 4;
+            for (ResultColumn column : ResultColumn.values()) {
+                position = skipChunk(position);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Hands every value of a numeric column to consumer, in row order.
+     *
+     * @param column any column but {@link ResultColumn#BOARD}
+     * @param consumer
+     * @throws IOException
+     */
+    public void scan(ResultColumn column, LongConsumer consumer) throws IOException {
+        if (column == ResultColumn.BOARD) {
+            throw new IllegalArgumentException("Boards are read with readBoards");
+        }
+        long position = ResultsWriter.HEADER_BYTES;
+        while (position < channel.size()) {
+            int rowCount = readFully(position, 4).getInt();
+            position += 4;
+            for (ResultColumn current : ResultColumn.values()) {
+                if (current == column) {
+                    byte encoding = readChunkHeader(position);
+                    ByteBuffer data = readChunkData(position);
+                    decodeNumeric(encoding, data, rowCount, consumer);
+                }
+                position = skipChunk(position);
+            }
+        }
+    }
+
+    /**
+     * @param column any column but {@link ResultColumn#BOARD}
+     * @return every value of the column, in row order
+     * @throws IOException
+     */
+    public long[] readColumn(ResultColumn column) throws IOException {
+        long[][] values = {new long[1024]};
+        int[] count = {0};
+        scan(column, value -> {
+            if (count[0] == values[0].length) {
+                values[0] = Arrays.copyOf(values[0], values[0].length * 2);
+            }
+            values[0][count[0]++] = value;
+        });
+        return Arrays.copyOf(values[0], count[0]);
+    }
+
+    /**
+     * @return the final board grid of every row, in row order
+     * @throws IOException
+     */
+    public List<int[][]> readBoards() throws IOException {
+        List<int[][]> grids = new ArrayList<>();
+        long position = ResultsWriter.HEADER_BYTES;
+        while (position < channel.size()) {
+            int rowCount = readFully(position, 4).getInt();
+            position += 4;
+            for (ResultColumn current : ResultColumn.values()) {
+                if (current == ResultColumn.BOARD) {
+                    boolean nibbles = readChunkHeader(position) == ResultsWriter.NIBBLE_BOARDS;
+                    ByteBuffer data = readChunkData(position);
+                    for (int row = 0; row < rowCount; row++) {
+                        grids.add(decodeBoard(data, nibbles));
+                    }
+                }
+                position = skipChunk(position);
+            }
+        }
+        return grids;
+    }
+
+    private static int[][] decodeBoard(ByteBuffer data, boolean nibbles) {
+        int size = (int) readVarLong(data);
+        int[][] grid = new int[size][size];
+        int cell = 0;
+        int pending = -1;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++, cell++) {
+                if (!nibbles) {
+                    grid[x][y] = data.get() & 0xFF;
+                } else if ((cell & 1) == 0) {
+                    pending = data.get() & 0xFF;
+                    grid[x][y] = pending & 0xF;
+                } else {
+                    grid[x][y] = pending >>> 4;
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static void decodeNumeric(byte encoding, ByteBuffer data, int rowCount, LongConsumer consumer)
+            throws IOException {
+        switch (encoding) {
+            case ResultsWriter.PLAIN:
+                for (int i = 0; i < rowCount; i++) {
+                    consumer.accept(readVarLong(data));
+                }
+                break;
+            case ResultsWriter.DELTA:
+                long value = 0;
+                for (int i = 0; i < rowCount; i++) {
+                    value += readVarLong(data);
+                    consumer.accept(value);
+                }
+                break;
+            case ResultsWriter.FIXED:
+                for (int i = 0; i < rowCount; i++) {
+                    consumer.accept(data.getLong());
+                }
+                break;
+            case ResultsWriter.DICTIONARY:
+                long[] dictionary = new long[(int) readVarLong(data)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readVarLong(data);
+                }
+                for (int i = 0; i < rowCount; i++) {
+                    consumer.accept(dictionary[data.get() & 0xFF]);
+                }
+                break;
+            default:
+                throw new IOException("Unknown column encoding: " + encoding);
+        }
+    }
+
+    private byte readChunkHeader(long position) throws IOException {
+        header.clear();
+        readFully(position, header);
+        return header.get(0);
+    }
+
+    // the decoded data of the chunk at position, after readChunkHeader
+    private ByteBuffer readChunkData(long position) throws IOException {
+        boolean deflated = header.get(1) != 0;
+        int rawLength = header.getInt(2);
+        int storedLength = header.getInt(6);
+        ByteBuffer stored = readFully(position + CHUNK_HEADER_BYTES, storedLength);
+        if (!deflated) {
+            return stored;
+        }
+        byte[] raw = new byte[rawLength];
+        inflater.reset();
+        inflater.setInput(stored.array(), 0, storedLength);
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                length += inflater.inflate(raw, length, rawLength - length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt column chunk", ex);
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    // the position after the chunk that starts at position
+    private long skipChunk(long position) throws IOException {
+        int storedLength = readFully(position + 6, 4).getInt();
+        return position + CHUNK_HEADER_BYTES + storedLength;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Truncated results file");
+            }
+            position += read;
+        }
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long zigzag = 0;
+        int shift = 0;
+        int value;
+        do {
+            value = data.get() & 0xFF;
+            zigzag |= (long) (value & 0x7F) << shift;
+            shift += 7;
+        } while ((value & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        inflater.end();
+    }
+}
@@ -0,0 +1,286 @@
+package cliai;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes game results column by column, so a reader can scan one column of
+ * millions of games without parsing the others.
+ *
+ * Rows are buffered and written as row groups. Each group stores its columns
+ * one after another, in the order of {@link ResultColumn}, and every column
+ * chunk starts with its length so a reader can skip it. A chunk is encoded in
+ * whichever of these is smallest for its values:
+ *
+ * <ul>
+ * <li>PLAIN: zigzag varints</li>
+ * <li>DELTA: the first value, then the difference from the previous value as
+ * zigzag varints, for columns that climb steadily like game ids</li>
+ * <li>DICTIONARY: the distinct values, then one byte per row indexing them,
+ * for columns with few values like config ids and max tiles</li>
+ * <li>FIXED: eight bytes per value, for random values like seeds</li>
+ * </ul>
+ *
+ * Boards are stored as their size and then their tile exponents, two to a
+ * byte when every exponent in the group fits in a nibble. Each chunk is then
+ * deflated if that makes it smaller. The file is
+ *
+ * <pre>
+ * int magic, int version,
+ * row groups: int row count,
+ *     per column: byte encoding, byte deflated, int raw length,
+ *     int stored length, byte[stored length] data
+ * </pre>
+ *
+ * Row groups are self-contained, so a file can be appended to, or cut back to
+ * the length it had after any {@link #flush()}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ResultsWriter implements Closeable {
+
+    static final int MAGIC = 0x52534C54; // "RSLT"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+
+    static final byte PLAIN = 0;
+    static final byte DELTA = 1;
+    static final byte DICTIONARY = 2;
+    static final byte FIXED = 3;
+    static final byte NIBBLE_BOARDS = 4;
+    static final byte BYTE_BOARDS = 5;
+
+    private static final int NUMERIC_COLUMNS = ResultColumn.BOARD.ordinal();
+    private static final int MAX_DICTIONARY_SIZE = 256;
+
+    private final DataOutputStream output;
+    private final int rowGroupSize;
+    private final long[][] columns;
+    private final int[][][] boards;
+    private int rowCount = 0;
+    private final Deflater deflater = new Deflater();
+
+    /**
+     * Opens a results file for writing.
+     *
+     * @param file
+     * @param resumeLength 0 to start a new file, or the length the file had
+     * after a flush to cut it back to and append after
+     * @param rowGroupSize the number of rows buffered before a group is
+     * written
+     * @throws IOException
+     */
+    public ResultsWriter(File file, long resumeLength, int rowGroupSize) throws IOException {
+        if (resumeLength > 0) {
+            try (RandomAccessFile truncator = new RandomAccessFile(file, "rw")) {
+                truncator.setLength(resumeLength);
+            }
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } else {
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+        }
+        this.rowGroupSize = rowGroupSize;
+        this.columns = new long[NUMERIC_COLUMNS][rowGroupSize];
+        this.boards = new int[rowGroupSize][][];
+    }
+
+    /**
+     * Adds the row of a game, writing the row group once it is full.
+     *
+     * @param configId
+     * @param result
+     * @throws IOException
+     */
+    public void add(long configId, GameResult result) throws IOException {
+        columns[ResultColumn.CONFIG_ID.ordinal()][rowCount] = configId;
+        columns[ResultColumn.GAME_ID.ordinal()][rowCount] = result.getGameId();
+        columns[ResultColumn.SEED.ordinal()][rowCount] = result.getSeed();
+        columns[ResultColumn.SCORE.ordinal()][rowCount] = result.getScore();
+        columns[ResultColumn.MAX_TILE.ordinal()][rowCount] = result.getHighestTile();
+        columns[ResultColumn.MOVES.ordinal()][rowCount] = result.getMoveCount();
+        columns[ResultColumn.CPU_TIME.ordinal()][rowCount] = result.getCpuTime();
+        boards[rowCount] = result.getFinalBoard().getGameGrid();
+        rowCount++;
+        if (rowCount == rowGroupSize) {
+            writeRowGroup();
+        }
+    }
+
+    /**
+     * Writes the buffered rows as a row group, even if it is not full, and
+     * flushes the file.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (rowCount > 0) {
+            writeRowGroup();
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            output.close();
+            deflater.end();
+        }
+    }
+
+    private void writeRowGroup() throws IOException {
+        output.writeInt(rowCount);
+        for (int column = 0; column < NUMERIC_COLUMNS; column++) {
+            writeNumericColumn(columns[column]);
+        }
+        writeBoardColumn();
+        Arrays.fill(boards, 0, rowCount, null);
+        rowCount = 0;
+    }
+
+    private void writeNumericColumn(long[] values) throws IOException {
+        ByteArrayOutputStream best = new ByteArrayOutputStream();
+        for (int i = 0; i < rowCount; i++) {
+            writeVarLong(best, values[i]);
+        }
+        byte bestEncoding = PLAIN;
+
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            writeVarLong(delta, values[i] - previous);
+            previous = values[i];
+        }
+        if (delta.size() < best.size()) {
+            best = delta;
+            bestEncoding = DELTA;
+        }
+
+        if (8 * rowCount < best.size()) {
+            best = new ByteArrayOutputStream();
+            DataOutputStream fixed = new DataOutputStream(best);
+            for (int i = 0; i < rowCount; i++) {
+                fixed.writeLong(values[i]);
+            }
+            bestEncoding = FIXED;
+        }
+
+        ByteArrayOutputStream dictionary = encodeDictionary(values);
+        if (dictionary != null && dictionary.size() < best.size()) {
+            best = dictionary;
+            bestEncoding = DICTIONARY;
+        }
+        writeChunk(bestEncoding, best.toByteArray());
+    }
+
+    // null if the values have too many distinct values for a byte index
+    private ByteArrayOutputStream encodeDictionary(long[] values) {
+        Map<Long, Integer> indices = new HashMap<>();
+        long[] dictionary = new long[MAX_DICTIONARY_SIZE];
+        for (int i = 0; i < rowCount; i++) {
+            if (!indices.containsKey(values[i])) {
+                if (indices.size() == MAX_DICTIONARY_SIZE) {
+                    return null;
+                }
+                dictionary[indices.size()] = values[i];
+                indices.put(values[i], indices.size());
+            }
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        writeVarLong(encoded, indices.size());
+        for (int i = 0; i < indices.size(); i++) {
+            writeVarLong(encoded, dictionary[i]);
+        }
+        for (int i = 0; i < rowCount; i++) {
+            encoded.write(indices.get(values[i]));
+        }
+        return encoded;
+    }
+
+    private void writeBoardColumn() throws IOException {
+        boolean nibbles = true;
+        for (int i = 0; i < rowCount && nibbles; i++) {
+            for (int[] column : boards[i]) {
+                for (int value : column) {
+                    if (value > 0xF) {
+                        nibbles = false;
+                    }
+                }
+            }
+        }
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        for (int i = 0; i < rowCount; i++) {
+            int[][] grid = boards[i];
+            writeVarLong(encoded, grid.length);
+            int pending = -1;
+            for (int[] column : grid) {
+                for (int value : column) {
+                    if (!nibbles) {
+                        encoded.write(value);
+                    } else if (pending < 0) {
+                        pending = value;
+                    } else {
+                        encoded.write(pending | (value << 4));
+                        pending = -1;
+                    }
+                }
+            }
+            if (pending >= 0) {
+                encoded.write(pending);
+            }
+        }
+        writeChunk(nibbles ? NIBBLE_BOARDS : BYTE_BOARDS, encoded.toByteArray());
+    }
+
+    private void writeChunk(byte encoding, byte[] data) throws IOException {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] deflated = new byte[data.length];
+        int deflatedLength = 0;
+        while (!deflater.finished() && deflatedLength < deflated.length) {
+            deflatedLength += deflater.deflate(deflated, deflatedLength, deflated.length - deflatedLength);
+        }
+        boolean useDeflated = deflater.finished() && deflatedLength < data.length;
+        output.writeByte(encoding);
+        output.writeByte(useDeflated ? 1 : 0);
+        output.writeInt(data.length);
+        if (useDeflated) {
+            output.writeInt(deflatedLength);
+            output.write(deflated, 0, deflatedLength);
+        } else {
+            output.writeInt(data.length);
+            output.write(data);
+        }
+    }
+
+    // zigzag varint, so small negative deltas stay short
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            output.write((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        output.write((int) zigzag);
+    }
+
+    /**
+     * @return the number of rows a full row group holds
+     */
+    public int getRowGroupSize() {
+        return rowGroupSize;
+    }
+}
@@ -0,0 +1,115 @@
+package cliai;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Running score statistics (Welford's algorithm), so results can be summarized
+ * without keeping every score around.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ScoreStatistics {
+
+    private long count = 0;
+    private double mean = 0;
+    private double squaredDeviations = 0;
+    private int max = Integer.MIN_VALUE;
+    private int min = Integer.MAX_VALUE;
+    private long cpuTime = 0;
+
+    public void add(int score, long gameCpuTime) {
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (score - mean);
+        if (score > max) {
+            max = score;
+        }
+        if (score < min) {
+            min = score;
+        }
+        cpuTime += gameCpuTime;
+    }
+
+    public void add(GameResult result) {
+        add(result.getScore(), result.getCpuTime());
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeDouble(mean);
+        output.writeDouble(squaredDeviations);
+        output.writeInt(max);
+        output.writeInt(min);
+        output.writeLong(cpuTime);
+    }
+
+    public static ScoreStatistics readFrom(DataInput input) throws IOException {
+        ScoreStatistics statistics = new ScoreStatistics();
+        statistics.count = input.readLong();
+        statistics.mean = input.readDouble();
+        statistics.squaredDeviations = input.readDouble();
+        statistics.max = input.readInt();
+        statistics.min = input.readInt();
+        statistics.cpuTime = input.readLong();
+        return statistics;
+    }
+
+    /**
+     * @return the number of scores added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * @return the population standard deviation
+     */
+    public double getStandardDeviation() {
+        return count == 0 ? 0 : Math.sqrt(squaredDeviations / count);
+    }
+
+    /**
+     * @return the sample variance
+     */
+    public double getSampleVariance() {
+        return count < 2 ? 0 : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * @return the standard error of the mean
+     */
+    public double getStandardError() {
+        return count == 0 ? Double.POSITIVE_INFINITY : Math.sqrt(getSampleVariance() / count);
+    }
+
+    /**
+     * @return the max
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the min
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return the total cpu time of all games in nanoseconds
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+}
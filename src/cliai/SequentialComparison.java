@@ -0,0 +1,185 @@
+package cliai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Keeps track of a set of candidate configurations being compared and drops
+ * the ones that are already decided, so no more games are spent on them.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SequentialComparison {
+
+    public static final int DEFAULT_MINIMUM_GAMES = 30;
+
+    public enum EliminationRule {
+        /**
+         * Drop a candidate once the leader's mean is higher by more than
+         * criticalValue standard errors of the difference (Welch z-test).
+         */
+        CONFIDENCE_RACE,
+        /**
+         * Drop the worse half of the remaining candidates every round.
+         */
+        SUCCESSIVE_HALVING
+    }
+
+    private final ScoreStatistics[] statistics;
+    private final boolean[] eliminated;
+    private final EliminationRule rule;
+    // the race looks at the data after every round, so the default is
+    // stricter than a single two-sided 99% test
+    private double criticalValue = 3.0;
+    // scores are heavy-tailed, so the normal approximation needs a fair
+    // number of games on both sides
+    private int minimumGames = DEFAULT_MINIMUM_GAMES;
+
+    public SequentialComparison(int candidateCount, EliminationRule rule) {
+        this.statistics = new ScoreStatistics[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            statistics[i] = new ScoreStatistics();
+        }
+        this.eliminated = new boolean[candidateCount];
+        this.rule = rule;
+    }
+
+    public void record(int candidate, GameResult result) {
+        statistics[candidate].add(result);
+    }
+
+    /**
+     * @return the indexes of the candidates still in the comparison
+     */
+    public int[] getActiveCandidates() {
+        int[] active = new int[statistics.length];
+        int count = 0;
+        for (int i = 0; i < statistics.length; i++) {
+            if (!eliminated[i]) {
+                active[count++] = i;
+            }
+        }
+        return Arrays.copyOf(active, count);
+    }
+
+    public boolean isDecided() {
+        return getActiveCandidates().length <= 1;
+    }
+
+    /**
+     * Applies the elimination rule to the active candidates.
+     *
+     * @return the candidates eliminated by this call
+     */
+    public int[] eliminate() {
+        int[] active = getActiveCandidates();
+        if (active.length <= 1) {
+            return new int[0];
+        }
+        ArrayList<Integer> dropped = new ArrayList<>();
+        switch (rule) {
+            case SUCCESSIVE_HALVING: {
+                Integer[] byMean = new Integer[active.length];
+                for (int i = 0; i < active.length; i++) {
+                    byMean[i] = active[i];
+                }
+                Arrays.sort(byMean, (a, b) -> Double.compare(
+                        statistics[b].getMean(), statistics[a].getMean()));
+                int keep = (byMean.length + 1) / 2;
+                for (int i = keep; i < byMean.length; i++) {
+                    dropped.add(byMean[i]);
+                }
+                break;
+            }
+            case CONFIDENCE_RACE:
+            default: {
+                int leader = getLeader();
+                ScoreStatistics best = statistics[leader];
+                if (best.getCount() < minimumGames) {
+                    break;
+                }
+                for (int candidate : active) {
+                    ScoreStatistics other = statistics[candidate];
+                    if (candidate == leader || other.getCount() < minimumGames) {
+                        continue;
+                    }
+                    double difference = best.getMean() - other.getMean();
+                    double standardError = Math.sqrt(
+                            best.getSampleVariance() / best.getCount()
+                            + other.getSampleVariance() / other.getCount());
+                    if (difference > criticalValue * standardError) {
+                        dropped.add(candidate);
+                    }
+                }
+            }
+        }
+        int[] output = new int[dropped.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = dropped.get(i);
+            eliminated[output[i]] = true;
+        }
+        return output;
+    }
+
+    /**
+     * @return the active candidate with the highest mean score
+     */
+    public int getLeader() {
+        int leader = -1;
+        for (int candidate : getActiveCandidates()) {
+            if (leader == -1 || statistics[candidate].getMean() > statistics[leader].getMean()) {
+                leader = candidate;
+            }
+        }
+        return leader;
+    }
+
+    public ScoreStatistics getStatistics(int candidate) {
+        return statistics[candidate];
+    }
+
+    public boolean isEliminated(int candidate) {
+        return eliminated[candidate];
+    }
+
+    /**
+     * @return the rule
+     */
+    public EliminationRule getRule() {
+        return rule;
+    }
+
+    /**
+     * @return the criticalValue
+     */
+    public double getCriticalValue() {
+        return criticalValue;
+    }
+
+    /**
+     * @param criticalValue the criticalValue to set
+     */
+    public void setCriticalValue(double criticalValue) {
+        this.criticalValue = criticalValue;
+    }
+
+    /**
+     * @return the minimumGames
+     */
+    public int getMinimumGames() {
+        return minimumGames;
+    }
+
+    /**
+     * @param minimumGames the games both candidates need before the
+     * confidence race compares them; at least 2, since the variance of
+     * fewer is 0
+     */
+    public void setMinimumGames(int minimumGames) {
+        if (minimumGames < 2) {
+            throw new IllegalArgumentException("The race needs at least 2 games per candidate, not "
+                    + minimumGames);
+        }
+        this.minimumGames = minimumGames;
+    }
+}
@@ -0,0 +1,363 @@
+package cliai;
+
+import gamemodel.Direction;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live counters for a running simulation. Game threads only touch striped
+ * adders and atomic histograms, so recording never blocks; rates are
+ * computed once a second by a background sampler, and {@link #snapshot()}
+ * reads everything without locking for dashboards that poll faster.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    // four buckets per power of two of nanoseconds
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int BUCKET_COUNT = 64 << SUB_BUCKET_BITS;
+    private static final int MAX_VOTING_HEURISTICS = 64;
+
+    private final LongAdder gamesCompleted = new LongAdder();
+    private final LongAdder movesMade = new LongAdder();
+    private final LongAdder nodesSearched = new LongAdder();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong latencyMax = new AtomicLong();
+    private final AtomicLongArray scoreBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder votedMoves = new LongAdder();
+    private final AtomicLongArray voteAgreements = new AtomicLongArray(MAX_VOTING_HEURISTICS);
+    private volatile int votingHeuristics = 0;
+    private volatile IntSupplier queueDepthSource = () -> 0;
+
+    private volatile double gamesPerSecond = 0;
+    private volatile double movesPerSecond = 0;
+    private volatile double nodesPerSecond = 0;
+    private long lastSampleTime = System.nanoTime();
+    private long lastGames = 0;
+    private long lastMoves = 0;
+    private long lastNodes = 0;
+    private ScheduledExecutorService sampler;
+    private ObjectName objectName;
+
+    public void recordMove(long searchNanos, long nodes) {
+        movesMade.increment();
+        nodesSearched.add(nodes);
+        latencyBuckets.incrementAndGet(getBucket(searchNanos));
+        long max = latencyMax.get();
+        while (searchNanos > max && !latencyMax.compareAndSet(max, searchNanos)) {
+            max = latencyMax.get();
+        }
+    }
+
+    /**
+     * Counts, for each heuristic, whether its vote was the move played.
+     *
+     * @param votes the direction ordinal each heuristic voted for
+     * @param decision the move played
+     */
+    public void recordVotes(int[] votes, Direction decision) {
+        int count = Math.min(votes.length, MAX_VOTING_HEURISTICS);
+        if (count > votingHeuristics) {
+            votingHeuristics = count;
+        }
+        votedMoves.increment();
+        for (int i = 0; i < count; i++) {
+            if (votes[i] == decision.ordinal()) {
+                voteAgreements.incrementAndGet(i);
+            }
+        }
+    }
+
+    public void recordGame(GameResult result) {
+        gamesCompleted.increment();
+        scoreBuckets.incrementAndGet(getBucket(result.getScore()));
+    }
+
+    /**
+     * Starts the once-a-second rate sampler and registers the JMX bean.
+     *
+     * @param name value of the name key of the JMX object name
+     */
+    public synchronized void start(String name) {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sampleRates, 1, 1, TimeUnit.SECONDS);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("cliai:type=SimulationMetrics,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ex) {
+                ex.printStackTrace(System.err);
+            }
+            objectName = null;
+        }
+    }
+
+    private void sampleRates() {
+        long now = System.nanoTime();
+        long games = gamesCompleted.sum();
+        long moves = movesMade.sum();
+        long nodes = nodesSearched.sum();
+        double seconds = (now - lastSampleTime) / 1e9;
+        if (seconds > 0) {
+            gamesPerSecond = (games - lastGames) / seconds;
+            movesPerSecond = (moves - lastMoves) / seconds;
+            nodesPerSecond = (nodes - lastNodes) / seconds;
+        }
+        lastSampleTime = now;
+        lastGames = games;
+        lastMoves = moves;
+        lastNodes = nodes;
+    }
+
+    private static int getBucket(long nanos) {
+        if (nanos < (1L << SUB_BUCKET_BITS)) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (exponent << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    // upper bound of the values that fall into a bucket
+    private static long getBucketLimit(int bucket) {
+        if (bucket < (1 << SUB_BUCKET_BITS)) {
+            return bucket;
+        }
+        int exponent = bucket >>> SUB_BUCKET_BITS;
+        long subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+        return ((1L << SUB_BUCKET_BITS) + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param percentile between 0 and 1
+     * @return the estimated search latency at that percentile in nanoseconds
+     */
+    public long getSearchLatencyPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = latencyBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target && counts[i] > 0) {
+                return Math.min(getBucketLimit(i), latencyMax.get());
+            }
+        }
+        return latencyMax.get();
+    }
+
+    /**
+     * Reads every counter without locking. Counters recorded while the
+     * snapshot is taken may or may not be in it, so the values can disagree
+     * by a move or two, but game threads are never held up.
+     *
+     * @return the current counters
+     */
+    public MetricsSnapshot snapshot() {
+        long[] latencyPercentiles = new long[MetricsSnapshot.LATENCY_PERCENTILES.length];
+        for (int i = 0; i < latencyPercentiles.length; i++) {
+            latencyPercentiles[i] = getSearchLatencyPercentile(MetricsSnapshot.LATENCY_PERCENTILES[i]);
+        }
+
+        long[] scoreCounts = new long[BUCKET_COUNT];
+        int first = BUCKET_COUNT;
+        int last = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            scoreCounts[i] = scoreBuckets.get(i);
+            if (scoreCounts[i] > 0) {
+                first = Math.min(first, i);
+                last = i;
+            }
+        }
+        int scoreBucketCount = Math.max(0, last - first + 1);
+        long[] scoreBucketLimits = new long[scoreBucketCount];
+        long[] scoreBucketCounts = new long[scoreBucketCount];
+        for (int i = 0; i < scoreBucketCount; i++) {
+            scoreBucketLimits[i] = getBucketLimit(first + i);
+            scoreBucketCounts[i] = scoreCounts[first + i];
+        }
+
+        long[] agreements = new long[votingHeuristics];
+        for (int i = 0; i < agreements.length; i++) {
+            agreements[i] = voteAgreements.get(i);
+        }
+
+        return new MetricsSnapshot(System.nanoTime(), gamesCompleted.sum(), movesMade.sum(),
+                nodesSearched.sum(), latencyPercentiles, latencyMax.get(), scoreBucketLimits,
+                scoreBucketCounts, votedMoves.sum(), agreements, getQueueDepth());
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format
+     */
+    public String toPrometheusText() {
+        StringBuilder output = new StringBuilder();
+        appendMetric(output, "sim_games_completed_total", "counter", "Games finished", getGamesCompleted());
+        appendMetric(output, "sim_moves_total", "counter", "Moves made", getMovesMade());
+        appendMetric(output, "sim_nodes_searched_total", "counter", "Search nodes expanded", getNodesSearched());
+        appendMetric(output, "sim_games_per_second", "gauge", "Games finished per second", getGamesPerSecond());
+        appendMetric(output, "sim_moves_per_second", "gauge", "Moves made per second", getMovesPerSecond());
+        appendMetric(output, "sim_nodes_per_second", "gauge", "Search nodes expanded per second", getNodesPerSecond());
+        output.append("# HELP sim_search_latency_seconds Search time per move\n");
+        output.append("# TYPE sim_search_latency_seconds summary\n");
+        double[] quantiles = new double[]{.5, .9, .99};
+        for (double quantile : quantiles) {
+            output.append("sim_search_latency_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(getSearchLatencyPercentile(quantile) / 1e9).append("\n");
+        }
+        output.append("sim_search_latency_seconds_count ").append(getMovesMade()).append("\n");
+        appendMetric(output, "sim_heap_used_bytes", "gauge", "Heap in use", getHeapUsedBytes());
+        appendMetric(output, "sim_heap_max_bytes", "gauge", "Maximum heap", getHeapMaxBytes());
+        appendMetric(output, "sim_gc_collections_total", "counter", "Garbage collections", getGcCollectionCount());
+        appendMetric(output, "sim_gc_time_seconds_total", "counter", "Time spent collecting garbage",
+                getGcCollectionTimeMillis() / 1000.0);
+        appendMetric(output, "sim_queue_depth", "gauge", "Games waiting for a thread", getQueueDepth());
+        return output.toString();
+    }
+
+    private static void appendMetric(StringBuilder output, String name, String type, String help, double value) {
+        output.append("# HELP ").append(name).append(" ").append(help).append("\n");
+        output.append("# TYPE ").append(name).append(" ").append(type).append("\n");
+        output.append(name).append(" ").append(value).append("\n");
+    }
+
+    /**
+     * @param queueDepthSource reports how many games are waiting to run
+     */
+    public void setQueueDepthSource(IntSupplier queueDepthSource) {
+        this.queueDepthSource = queueDepthSource;
+    }
+
+    @Override
+    public long getGamesCompleted() {
+        return gamesCompleted.sum();
+    }
+
+    @Override
+    public long getMovesMade() {
+        return movesMade.sum();
+    }
+
+    @Override
+    public long getNodesSearched() {
+        return nodesSearched.sum();
+    }
+
+    @Override
+    public double getGamesPerSecond() {
+        return gamesPerSecond;
+    }
+
+    @Override
+    public double getMovesPerSecond() {
+        return movesPerSecond;
+    }
+
+    @Override
+    public double getNodesPerSecond() {
+        return nodesPerSecond;
+    }
+
+    @Override
+    public double getSearchLatencyP50Millis() {
+        return getSearchLatencyPercentile(.5) / 1e6;
+    }
+
+    @Override
+    public double getSearchLatencyP90Millis() {
+        return getSearchLatencyPercentile(.9) / 1e6;
+    }
+
+    @Override
+    public double getSearchLatencyP99Millis() {
+        return getSearchLatencyPercentile(.99) / 1e6;
+    }
+
+    @Override
+    public double getSearchLatencyMaxMillis() {
+        return latencyMax.get() / 1e6;
+    }
+
+    @Override
+    public long getHeapUsedBytes() {
+        return getHeapUsage().getUsed();
+    }
+
+    @Override
+    public long getHeapMaxBytes() {
+        return getHeapUsage().getMax();
+    }
+
+    private static MemoryUsage getHeapUsage() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    @Override
+    public long getGcCollectionCount() {
+        long output = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            output += Math.max(0, collector.getCollectionCount());
+        }
+        return output;
+    }
+
+    @Override
+    public long getGcCollectionTimeMillis() {
+        long output = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            output += Math.max(0, collector.getCollectionTime());
+        }
+        return output;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepthSource.getAsInt();
+    }
+
+    @Override
+    public MetricsSnapshot getSnapshot() {
+        return snapshot();
+    }
+}
@@ -0,0 +1,44 @@
+package cliai;
+
+/**
+ * JMX view of {@link SimulationMetrics}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public interface SimulationMetricsMBean {
+
+    long getGamesCompleted();
+
+    long getMovesMade();
+
+    long getNodesSearched();
+
+    double getGamesPerSecond();
+
+    double getMovesPerSecond();
+
+    double getNodesPerSecond();
+
+    double getSearchLatencyP50Millis();
+
+    double getSearchLatencyP90Millis();
+
+    double getSearchLatencyP99Millis();
+
+    double getSearchLatencyMaxMillis();
+
+    long getHeapUsedBytes();
+
+    long getHeapMaxBytes();
+
+    long getGcCollectionCount();
+
+    long getGcCollectionTimeMillis();
+
+    int getQueueDepth();
+
+    /**
+     * @return every counter at one moment, for dashboards in another process
+     */
+    MetricsSnapshot getSnapshot();
+}
@@ -0,0 +1,225 @@
+package cliai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Progress of a heuristic-combination sweep, saved after every batch of games
+ * so a preempted sweep can pick up where it stopped.
+ *
+ * Games are seeded from the sweep seed, the combo and the game id, so the
+ * random state of the sweep is fully described by the seed and the cursor.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SweepCheckpoint {
+
+    private static final int MAGIC = 0x32303438; // "2048"
+    private static final int VERSION = 3;
+
+    private final long seed;
+    private final int gamesToPlay;
+    private final int maxDepth;
+    private final int[] comboSizes;
+
+    // cursor: every combo before (comboSizeIndex, comboIndex) is complete
+    private int comboSizeIndex = 0;
+    private int comboIndex = 0;
+
+    // partial results of the combo under the cursor
+    private int gamesCompleted = 0;
+    private ScoreStatistics statistics = new ScoreStatistics();
+    private long scoreFileLength = 0;
+    private long boardFileLength = 0;
+    // the results file holds every combo, so its length is not reset
+    private long resultsFileLength = 0;
+
+    public SweepCheckpoint(long seed, int gamesToPlay, int maxDepth, int[] comboSizes) {
+        this.seed = seed;
+        this.gamesToPlay = gamesToPlay;
+        this.maxDepth = maxDepth;
+        this.comboSizes = comboSizes.clone();
+    }
+
+    /**
+     * @param file
+     * @return the checkpoint stored in file, or null if there is none
+     */
+    public static SweepCheckpoint load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a sweep checkpoint: " + file);
+            }
+            long seed = input.readLong();
+            int gamesToPlay = input.readInt();
+            int maxDepth = input.readInt();
+            int[] comboSizes = new int[input.readInt()];
+            for (int i = 0; i < comboSizes.length; i++) {
+                comboSizes[i] = input.readInt();
+            }
+            SweepCheckpoint checkpoint = new SweepCheckpoint(seed, gamesToPlay, maxDepth, comboSizes);
+            checkpoint.comboSizeIndex = input.readInt();
+            checkpoint.comboIndex = input.readInt();
+            checkpoint.gamesCompleted = input.readInt();
+            checkpoint.statistics = ScoreStatistics.readFrom(input);
+            checkpoint.scoreFileLength = input.readLong();
+            checkpoint.boardFileLength = input.readLong();
+            checkpoint.resultsFileLength = input.readLong();
+            return checkpoint;
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it over the old one,
+     * so a crash while saving never leaves a half-written checkpoint behind.
+     *
+     * @param file
+     */
+    public void save(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(seed);
+            output.writeInt(gamesToPlay);
+            output.writeInt(maxDepth);
+            output.writeInt(comboSizes.length);
+            for (int comboSize : comboSizes) {
+                output.writeInt(comboSize);
+            }
+            output.writeInt(comboSizeIndex);
+            output.writeInt(comboIndex);
+            output.writeInt(gamesCompleted);
+            statistics.writeTo(output);
+            output.writeLong(scoreFileLength);
+            output.writeLong(boardFileLength);
+            output.writeLong(resultsFileLength);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+
+    /**
+     * @param gamesToPlay
+     * @param maxDepth
+     * @param comboSizes
+     * @return true if this checkpoint was written by a sweep with the same
+     * settings
+     */
+    public boolean matches(int gamesToPlay, int maxDepth, int[] comboSizes) {
+        return this.gamesToPlay == gamesToPlay
+                && this.maxDepth == maxDepth
+                && Arrays.equals(this.comboSizes, comboSizes);
+    }
+
+    /**
+     * Records a finished batch of the combo under the cursor. The results of
+     * the batch are expected to be in {@link #getStatistics()} already.
+     *
+     * @param batchGames number of games in the batch
+     * @param scoreFileLength length of the score file after the batch
+     * @param boardFileLength length of the board file after the batch
+     * @param resultsFileLength length of the results file after the batch
+     */
+    public void recordBatch(int batchGames, long scoreFileLength, long boardFileLength, long resultsFileLength) {
+        gamesCompleted += batchGames;
+        this.scoreFileLength = scoreFileLength;
+        this.boardFileLength = boardFileLength;
+        this.resultsFileLength = resultsFileLength;
+    }
+
+    /**
+     * Moves the cursor past a finished combo.
+     *
+     * @param comboSizeIndex
+     * @param comboIndex index of the next combo to play
+     */
+    public void advance(int comboSizeIndex, int comboIndex) {
+        this.comboSizeIndex = comboSizeIndex;
+        this.comboIndex = comboIndex;
+        this.gamesCompleted = 0;
+        this.statistics = new ScoreStatistics();
+        this.scoreFileLength = 0;
+        this.boardFileLength = 0;
+    }
+
+    /**
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the comboSizeIndex
+     */
+    public int getComboSizeIndex() {
+        return comboSizeIndex;
+    }
+
+    /**
+     * @return the comboIndex
+     */
+    public int getComboIndex() {
+        return comboIndex;
+    }
+
+    /**
+     * @return the gamesCompleted
+     */
+    public int getGamesCompleted() {
+        return gamesCompleted;
+    }
+
+    /**
+     * @return the running statistics of the games of the current combo
+     */
+    public ScoreStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the scoreFileLength
+     */
+    public long getScoreFileLength() {
+        return scoreFileLength;
+    }
+
+    /**
+     * @return the boardFileLength
+     */
+    public long getBoardFileLength() {
+        return boardFileLength;
+    }
+
+    /**
+     * @return the length of the results file after the last recorded batch
+     */
+    public long getResultsFileLength() {
+        return resultsFileLength;
+    }
+}
@@ -1,34 +1,64 @@
 package cligame;
 
+import aidecision.AIDecider;
+import aidecision.MajorityVoting;
+import aiheuristics.BestList;
+import aiheuristics.Heuristic;
+import aisearch.DepthWeighting;
+import aisearch.Ponderer;
+import aisearch.SingleThreadSearch;
+import aisearch.StateEvaluationType;
 import gamemodel.Direction;
 import gamemodel.GameBoard;
 import gamemodel.GameController;
 import java.util.Scanner;
 
 /**
+ * A game in the console. The AI ponders every position while the player
+ * thinks, so asking it for a hint is answered at once.
  *
  * @author Lucas Burdell <lucasburdell@gmail.com>
  */
 public class Runner {
 
-    public static void main(String[] args) {
+    private static final int HINT_DEPTH = 2;
+
+    public static void main(String[] args) throws InterruptedException {
         Scanner scanner = new Scanner(System.in);
         GameController controller = new GameController();
         GameBoard board = controller.createStartingGameboard();
+        Heuristic[] heuristics = BestList.getHeuristics();
+        AIDecider decider = new MajorityVoting(heuristics);
+        int threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        Ponderer ponderer = new Ponderer(Runner::createSearcher, heuristics, threadCount);
 
         while (!controller.isGameOver(board)) {
+            ponderer.ponder(board);
             System.out.println(board);
             System.out.println();
             System.out.println("Current score: " + board.getScore());
-            System.out.print("Input a move (0 = up, 1 = down, 2 = left, 3 = right): ");
+            System.out.print("Input a move (0 = up, 1 = down, 2 = left, 3 = right, 4 = hint): ");
             int move = scanner.nextInt();
             Direction[] directions = Direction.values();
-            if (move > -1 && move < directions.length) {
+            if (move == directions.length) {
+                Direction hint = decider.evaluateVotes(ponderer.getVotes(board));
+                System.out.println("Hint: move " + hint);
+                System.out.println();
+            } else if (move > -1 && move < directions.length) {
                 board = controller.doGameMove(board, directions[move]);
                 //board = controller.moveGrid(board, directions[move]).getKey();
             }
         }
+        ponderer.shutdown();
         System.out.println("Game over!");
 
     }
+
+    private static SingleThreadSearch createSearcher() {
+        SingleThreadSearch searcher = new SingleThreadSearch(new GameController(), HINT_DEPTH);
+        searcher.setEvaluationType(StateEvaluationType.NEXT_STATES);
+        searcher.setDepthWeightingType(DepthWeighting.NONE);
+        searcher.setDepthScaling(true);
+        return searcher;
+    }
 }
@@ -0,0 +1,240 @@
+package gamemodel;
+
+/**
+ * Many 4x4 games held as packed boards in primitive arrays and advanced in
+ * lockstep: every step computes the moves of all running games, lets a
+ * policy pick a direction for each, and applies them with a tile spawn.
+ * Nothing is allocated per game or per move, and each step walks the arrays
+ * in order.
+ *
+ * Games that end are taken off the list of running games, so later steps
+ * only touch the games still being played. Each game draws its spawns from
+ * its own SplitMix64 stream. The stream starts from the batch seed and the
+ * game index put through the SplitMix64 finalizer (as
+ * cliai.GameSimulation.mixSeed does), so neighbouring games do not share a
+ * shifted stream, and a game plays out the same whatever batch size it is
+ * run in.
+ *
+ * Moves that merge two 32768 tiles do not fit a packed board and count as
+ * illegal, so a game that can only make such a move ends there.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class BoardBatch {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int CELLS = PackedBoard.SIZE * PackedBoard.SIZE;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final int capacity;
+    private final SwarMoveEngine engine = new SwarMoveEngine();
+    private final long[] boards;
+    private final int[] scores;
+    private final int[] moveCounts;
+    private final long[] randomStates;
+    // afterstate and score gained of every direction, by direction then game
+    private final long[][] afterStates;
+    private final int[][] scoreDeltas;
+    // bit d is set if direction d is legal
+    private final byte[] legalMoves;
+    // indices of the games still being played
+    private final int[] running;
+    private int runningCount = 0;
+
+    public BoardBatch(int capacity) {
+        this.capacity = capacity;
+        this.boards = new long[capacity];
+        this.scores = new int[capacity];
+        this.moveCounts = new int[capacity];
+        this.randomStates = new long[capacity];
+        this.afterStates = new long[DIRECTIONS.length][capacity];
+        this.scoreDeltas = new int[DIRECTIONS.length][capacity];
+        this.legalMoves = new byte[capacity];
+        this.running = new int[capacity];
+    }
+
+    /**
+     * Starts a new game in every slot, each with the starting tiles of
+     * {@link GameController#createStartingGameboard()}.
+     *
+     * @param seed
+     */
+    public void start(long seed) {
+        for (int game = 0; game < capacity; game++) {
+            randomStates[game] = mix(seed + (game + 1) * GOLDEN_GAMMA);
+            boards[game] = 0;
+            scores[game] = 0;
+            moveCounts[game] = 0;
+            for (int i = 0; i < GameController.NUMBER_OF_STARTING_TILES; i++) {
+                boards[game] = spawnTile(game, boards[game]);
+            }
+            running[game] = game;
+        }
+        runningCount = capacity;
+    }
+
+    /**
+     * Computes the afterstates of all four directions for every running game,
+     * and ends the games that have no legal move left.
+     *
+     * @return the number of games still running
+     */
+    public int computeMoves() {
+        int kept = 0;
+        for (int i = 0; i < runningCount; i++) {
+            int game = running[i];
+            long board = boards[game];
+            int legal = 0;
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                long afterState = engine.move(board, DIRECTIONS[d]);
+                if (engine.isMoved()) {
+                    legal |= 1 << d;
+                    afterStates[d][game] = afterState;
+                    scoreDeltas[d][game] = engine.getScoreDelta();
+                } else {
+                    afterStates[d][game] = board;
+                    scoreDeltas[d][game] = 0;
+                }
+            }
+            legalMoves[game] = (byte) legal;
+            if (legal != 0) {
+                running[kept++] = game;
+            }
+        }
+        runningCount = kept;
+        return runningCount;
+    }
+
+    /**
+     * Plays a move in every running game and spawns a tile. A game whose
+     * decision is not legal plays its first legal direction instead.
+     *
+     * @param decisions direction ordinal for each game, by game index
+     */
+    public void applyMoves(byte[] decisions) {
+        for (int i = 0; i < runningCount; i++) {
+            int game = running[i];
+            int legal = legalMoves[game];
+            int direction = decisions[game];
+            if ((legal & (1 << direction)) == 0) {
+                direction = Integer.numberOfTrailingZeros(legal);
+            }
+            boards[game] = spawnTile(game, afterStates[direction][game]);
+            scores[game] += scoreDeltas[direction][game];
+            moveCounts[game]++;
+        }
+    }
+
+    // places a 2 (or a 4, one time in ten) on a random empty cell
+    private long spawnTile(int game, long board) {
+        long occupied = board | (board >>> 1);
+        occupied |= occupied >>> 2;
+        long empty = ~occupied & 0x1111111111111111L;
+        int target = (int) ((nextRandom(game) >>> 33) * Long.bitCount(empty) >>> 31);
+        for (int i = 0; i < target; i++) {
+            empty &= empty - 1;
+        }
+        // same odds and the same inverted constant as placeRandomTile
+        long value = (nextRandom(game) >>> 11) * 0x1.0p-53 < GameController.CHANCE_OF_A_FOUR ? 1 : 2;
+        return board | (value << Long.numberOfTrailingZeros(empty));
+    }
+
+    // package-private for tests
+    long nextRandom(int game) {
+        return mix(randomStates[game] += GOLDEN_GAMMA);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the number of game slots
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of games still running after the last
+     * {@link #computeMoves()}
+     */
+    public int getRunningCount() {
+        return runningCount;
+    }
+
+    /**
+     * @param i position in the list of running games, below
+     * {@link #getRunningCount()}
+     * @return the index of the game
+     */
+    public int getRunningGame(int i) {
+        return running[i];
+    }
+
+    /**
+     * @param game
+     * @return the packed board of the game
+     */
+    public long getBoard(int game) {
+        return boards[game];
+    }
+
+    /**
+     * @param game
+     * @param direction
+     * @return the board after moving the game in direction, unchanged if the
+     * move is not legal
+     */
+    public long getAfterState(int game, Direction direction) {
+        return afterStates[direction.ordinal()][game];
+    }
+
+    /**
+     * @param game
+     * @param direction
+     * @return the score the move in direction gains
+     */
+    public int getScoreDelta(int game, Direction direction) {
+        return scoreDeltas[direction.ordinal()][game];
+    }
+
+    /**
+     * @param game
+     * @return bit d set if direction d is legal
+     */
+    public int getLegalMoves(int game) {
+        return legalMoves[game];
+    }
+
+    /**
+     * @param game
+     * @return the score of the game
+     */
+    public int getScore(int game) {
+        return scores[game];
+    }
+
+    /**
+     * @param game
+     * @return the number of moves played in the game
+     */
+    public int getMoveCount(int game) {
+        return moveCounts[game];
+    }
+
+    /**
+     * @param game
+     * @return the exponent of the largest tile of the game
+     */
+    public int getHighestTile(int game) {
+        long board = boards[game];
+        int highest = 0;
+        for (int i = 0; i < CELLS; i++, board >>>= 4) {
+            highest = Math.max(highest, (int) board & 0xF);
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,227 @@
+package gamemodel;
+
+/**
+ * The eight rotations and reflections of a square board. A board and its
+ * image under any of them are strategically the same position: moving the
+ * original in some direction gives the image of moving the image in the
+ * mapped direction ({@link #apply(Direction)}).
+ *
+ * Caches, opening tables and position sets can store a position once under
+ * its canonical form ({@link #canonicalize(long)}). Only values that are
+ * themselves symmetric may be shared this way; a direction found for the
+ * canonical board maps back with {@code symmetry.inverse().apply(direction)}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public enum BoardSymmetry {
+    IDENTITY,
+    ROTATE_90, // clockwise
+    ROTATE_180,
+    ROTATE_270,
+    MIRROR_ROWS, // left and right swap
+    MIRROR_COLUMNS, // top and bottom swap
+    TRANSPOSE, // reflect across the top-left to bottom-right diagonal
+    ANTI_TRANSPOSE; // reflect across the top-right to bottom-left diagonal
+
+    private static final BoardSymmetry[] SYMMETRIES = values();
+
+    public BoardSymmetry inverse() {
+        switch (this) {
+            case ROTATE_90:
+                return ROTATE_270;
+            case ROTATE_270:
+                return ROTATE_90;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * @param x column of a cell on a board with rows of length size
+     * @param y row of the cell
+     * @param size
+     * @return the {x, y} position the cell moves to
+     */
+    public int[] apply(int x, int y, int size) {
+        int last = size - 1;
+        switch (this) {
+            case IDENTITY:
+                return new int[]{x, y};
+            case ROTATE_90:
+                return new int[]{last - y, x};
+            case ROTATE_180:
+                return new int[]{last - x, last - y};
+            case ROTATE_270:
+                return new int[]{y, last - x};
+            case MIRROR_ROWS:
+                return new int[]{last - x, y};
+            case MIRROR_COLUMNS:
+                return new int[]{x, last - y};
+            case TRANSPOSE:
+                return new int[]{y, x};
+            case ANTI_TRANSPOSE:
+                return new int[]{last - y, last - x};
+            default:
+                throw new AssertionError(name());
+        }
+    }
+
+    /**
+     * @param grid a square game grid of any size, indexed grid[x][y]
+     * @return a new grid holding the image of grid
+     */
+    public int[][] apply(int[][] grid) {
+        int size = grid.length;
+        int[][] output = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int[] position = apply(x, y, size);
+                output[position[0]][position[1]] = grid[x][y];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * @param board a board packed by {@link PackedBoard}
+     * @return the packed image of board
+     */
+    public long apply(long board) {
+        switch (this) {
+            case IDENTITY:
+                return board;
+            case ROTATE_90:
+                return PackedBoard.mirrorRows(PackedBoard.transpose(board));
+            case ROTATE_180:
+                return PackedBoard.mirrorRows(PackedBoard.mirrorColumns(board));
+            case ROTATE_270:
+                return PackedBoard.transpose(PackedBoard.mirrorRows(board));
+            case MIRROR_ROWS:
+                return PackedBoard.mirrorRows(board);
+            case MIRROR_COLUMNS:
+                return PackedBoard.mirrorColumns(board);
+            case TRANSPOSE:
+                return PackedBoard.transpose(board);
+            case ANTI_TRANSPOSE:
+                return PackedBoard.mirrorRows(PackedBoard.mirrorColumns(PackedBoard.transpose(board)));
+            default:
+                throw new AssertionError(name());
+        }
+    }
+
+    /**
+     * @param direction a move on the original board
+     * @return the equivalent move on the image of the board
+     */
+    public Direction apply(Direction direction) {
+        switch (this) {
+            case IDENTITY:
+                return direction;
+            case ROTATE_90:
+                return rotate(direction);
+            case ROTATE_180:
+                return rotate(rotate(direction));
+            case ROTATE_270:
+                return rotate(rotate(rotate(direction)));
+            case MIRROR_ROWS:
+                return direction == Direction.LEFT ? Direction.RIGHT
+                        : direction == Direction.RIGHT ? Direction.LEFT : direction;
+            case MIRROR_COLUMNS:
+                return direction == Direction.UP ? Direction.DOWN
+                        : direction == Direction.DOWN ? Direction.UP : direction;
+            case TRANSPOSE:
+                switch (direction) {
+                    case UP:
+                        return Direction.LEFT;
+                    case LEFT:
+                        return Direction.UP;
+                    case DOWN:
+                        return Direction.RIGHT;
+                    default:
+                        return Direction.DOWN;
+                }
+            case ANTI_TRANSPOSE:
+                switch (direction) {
+                    case UP:
+                        return Direction.RIGHT;
+                    case RIGHT:
+                        return Direction.UP;
+                    case DOWN:
+                        return Direction.LEFT;
+                    default:
+                        return Direction.DOWN;
+                }
+            default:
+                throw new AssertionError(name());
+        }
+    }
+
+    // clockwise quarter turn
+    private static Direction rotate(Direction direction) {
+        switch (direction) {
+            case UP:
+                return Direction.RIGHT;
+            case RIGHT:
+                return Direction.DOWN;
+            case DOWN:
+                return Direction.LEFT;
+            default:
+                return Direction.UP;
+        }
+    }
+
+    /**
+     * @param board a packed board
+     * @return the symmetry that maps board to its canonical form, the
+     * smallest (unsigned) of its eight images
+     */
+    public static BoardSymmetry canonicalize(long board) {
+        BoardSymmetry best = IDENTITY;
+        long bestBoard = board;
+        for (int i = 1; i < SYMMETRIES.length; i++) {
+            long image = SYMMETRIES[i].apply(board);
+            if (Long.compareUnsigned(image, bestBoard) < 0) {
+                bestBoard = image;
+                best = SYMMETRIES[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param board a packed board
+     * @return the canonical form of board, equal for all eight of its images
+     */
+    public static long canonicalForm(long board) {
+        return canonicalize(board).apply(board);
+    }
+
+    /**
+     * @param grid a square game grid of any size
+     * @return the symmetry that maps grid to its canonical form, the
+     * lexicographically smallest of its images
+     */
+    public static BoardSymmetry canonicalize(int[][] grid) {
+        BoardSymmetry best = IDENTITY;
+        int[][] bestGrid = grid;
+        for (int i = 1; i < SYMMETRIES.length; i++) {
+            int[][] image = SYMMETRIES[i].apply(grid);
+            if (compare(image, bestGrid) < 0) {
+                bestGrid = image;
+                best = SYMMETRIES[i];
+            }
+        }
+        return best;
+    }
+
+    private static int compare(int[][] a, int[][] b) {
+        for (int x = 0; x < a.length; x++) {
+            for (int y = 0; y < a.length; y++) {
+                if (a[x][y] != b[x][y]) {
+                    return Integer.compare(a[x][y], b[x][y]);
+                }
+            }
+        }
+        return 0;
+    }
+}
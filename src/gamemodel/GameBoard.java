@@ -63,6 +63,10 @@ public class GameBoard {
     private boolean moved = false;
     private Direction previousMove = null;
     private int numberOfMerges = 0;
+    // how many boards this one stands for when the search samples spawns
+    private double searchWeight = 1;
+    // chance of reaching this board from the root of a search
+    private double searchProbability = 1;
 
     /**
      * @return the gameGrid
@@ -136,12 +140,17 @@ public class GameBoard {
     
     public GameBoard(String storage) {
         String[] numbers = storage.split(",");
-        this.gameGrid = new int[GameController.ROW_SIZE][GameController.ROW_SIZE];
-        this.mergeGrid = new boolean[GameController.ROW_SIZE][GameController.ROW_SIZE];
+        // the size follows from the number of tiles
+        int gridSize = (int) Math.round(Math.sqrt(numbers.length));
+        if (gridSize * gridSize != numbers.length) {
+            throw new IllegalArgumentException("Not a square board: " + storage);
+        }
+        this.gameGrid = new int[gridSize][gridSize];
+        this.mergeGrid = new boolean[gridSize][gridSize];
         int stringIndex = 0;
-        for (int row = 0; row < GameController.ROW_SIZE; row++) {
-            for (int col = 0; col < GameController.ROW_SIZE; col++) {
-                gameGrid[row][col] = Byte.parseByte(numbers[stringIndex]);
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                gameGrid[row][col] = Byte.parseByte(numbers[stringIndex++]);
             }
         }
         incCreations();
@@ -233,6 +242,34 @@ public class GameBoard {
     public void setPreviousMove(Direction previousMove) {
         this.previousMove = previousMove;
     }
+
+    /**
+     * @return the searchWeight
+     */
+    public double getSearchWeight() {
+        return searchWeight;
+    }
+
+    /**
+     * @param searchWeight the searchWeight to set
+     */
+    public void setSearchWeight(double searchWeight) {
+        this.searchWeight = searchWeight;
+    }
+
+    /**
+     * @return the searchProbability
+     */
+    public double getSearchProbability() {
+        return searchProbability;
+    }
+
+    /**
+     * @param searchProbability the searchProbability to set
+     */
+    public void setSearchProbability(double searchProbability) {
+        this.searchProbability = searchProbability;
+    }
     
     
 }
@@ -13,12 +13,40 @@ public class GameController {
 
     private Random random = new Random();
     private boolean debugMessagesEnabled = false;
+    private MoveEngine moveEngine = MoveEngine.GRID;
+    // created on first use; an engine is not thread safe, neither is this
+    private SwarMoveEngine swarMoveEngine = null;
 
     public static final int NUMBER_OF_STARTING_TILES = 2;
     public static final double CHANCE_OF_A_FOUR = .9;
+    // size of the classic board, used when no size is given
     public static final int ROW_SIZE = 4;
     public static final int GRID_SIZE = ROW_SIZE * ROW_SIZE;
 
+    // size of the boards this controller starts; moves work on any size
+    private final int rowSize;
+
+    public GameController() {
+        this(ROW_SIZE);
+    }
+
+    /**
+     * @param rowSize the width and height of the boards this controller
+     * starts
+     */
+    public GameController(int rowSize) {
+        if (rowSize < 2) {
+            throw new IllegalArgumentException("Board size must be at least 2: " + rowSize);
+        }
+        this.rowSize = rowSize;
+    }
+
+    /**
+     * @return the rowSize
+     */
+    public int getRowSize() {
+        return rowSize;
+    }
 
 
     /**
@@ -105,6 +133,7 @@ public class GameController {
 
     private final TileMove getFarthestTile(GameBoard board, int positionX, int positionY, Direction direction) {
         int[][] grid = board.getGameGrid();
+        int size = grid.length;
         int posX = positionX;
         int posY = positionY;
         switch (direction) {
@@ -120,13 +149,13 @@ public class GameController {
             //return new int[]{posX, 0};
             case DOWN:
                 //println("getting farthest down from " + posX + ","+ posY);
-                for (int y = posY + 1; y < ROW_SIZE; y++) {
+                for (int y = posY + 1; y < size; y++) {
                     if (grid[posX][y] != 0) {
                         //return new int[]{posX, i};
                         return new TileMove(new int[]{posX, (int)(y - 1)}, new int[]{posX,(int) y});
                     }
                 }
-                return new TileMove(new int[]{posX, ROW_SIZE - 1}, new int[]{posX, ROW_SIZE - 1});
+                return new TileMove(new int[]{posX, size - 1}, new int[]{posX, size - 1});
             case LEFT:
                 //println("getting farthest left from " + posX + ","+ posY);
                 for (int x = posX - 1; x > -1; x--) {
@@ -138,14 +167,14 @@ public class GameController {
                 return new TileMove(new int[]{0, posY}, new int[]{0, posY});
             case RIGHT:
                 //println("getting farthest right from " + posX + ","+ posY);
-                for (int x = posX + 1; x < ROW_SIZE; x++) {
+                for (int x = posX + 1; x < size; x++) {
                     if (grid[x][posY] != 0) {
                         //return new int[]{i, posY};
                         return new TileMove(new int[]{(int) (x - 1), posY}, new int[]{(int) x, posY});
                     }
                 }
                 //return new int[]{GRID_SIZE, posY};
-                return new TileMove(new int[]{ROW_SIZE - 1, posY}, new int[]{ROW_SIZE - 1, posY});
+                return new TileMove(new int[]{size - 1, posY}, new int[]{size - 1, posY});
             default:
                 throw new RuntimeException("Unexpected direction: " + direction);
         }
@@ -200,25 +229,29 @@ public class GameController {
     }
 
     public final GameBoard moveGrid(GameBoard board, Direction direction) {
+        if (moveEngine == MoveEngine.SWAR && moveGridPacked(board, direction)) {
+            return board;
+        }
         // if positive vector move backwards
         //GameBoard newBoard = new GameBoard(board);
         GameBoard newBoard = board;
+        int size = board.getGameGrid().length;
         if (direction == Direction.RIGHT) {
-            for (int x = ROW_SIZE - 1; x > -1; x--) {
-                for (int y = 0; y < ROW_SIZE; y++) {
+            for (int x = size - 1; x > -1; x--) {
+                for (int y = 0; y < size; y++) {
                     doMerge(newBoard, x, y, direction);
                 }
             }
         } else if (direction == Direction.DOWN) {
-            for (int x = 0; x < ROW_SIZE; x++) {
-                for (int y = ROW_SIZE - 1; y > -1; y--) {
+            for (int x = 0; x < size; x++) {
+                for (int y = size - 1; y > -1; y--) {
                     doMerge(newBoard, x, y, direction);
                 }
             }
         } else {
-            for (int x = 0; x < ROW_SIZE; x++) {
+            for (int x = 0; x < size; x++) {
                 //println("Moving row " + x + " for " + direction);
-                for (int y = 0; y < ROW_SIZE; y++) {
+                for (int y = 0; y < size; y++) {
                     doMerge(newBoard, x, y, direction);
                     //println("Moving column " + y + " for " + direction);
                 }
@@ -228,8 +261,85 @@ public class GameController {
         return newBoard;
     }
 
+    private SwarMoveEngine getSwarMoveEngine(int size) {
+        if (swarMoveEngine == null || swarMoveEngine.getSize() != size) {
+            swarMoveEngine = new SwarMoveEngine(size);
+        }
+        return swarMoveEngine;
+    }
+
+    // moves board in place with the SWAR engine, returns false if the board
+    // has to be moved on the grid instead
+    private boolean moveGridPacked(GameBoard board, Direction direction) {
+        int[][] grid = board.getGameGrid();
+        SwarMoveEngine engine = getSwarMoveEngine(grid.length);
+        boolean moved;
+        if (PackedBoard.canPack(grid)) {
+            long packed = PackedBoard.pack(grid);
+            long result = engine.move(packed, direction);
+            if (engine.isOverflow()) {
+                return false;
+            }
+            moved = result != packed;
+            if (moved) {
+                PackedBoard.unpack(result, grid);
+            }
+        } else if (engine.move(grid, direction, grid)) {
+            moved = engine.isMoved();
+        } else {
+            return false;
+        }
+        if (moved) {
+            board.setScore(board.getScore() + engine.getScoreDelta());
+            board.setNumberOfMerges(board.getNumberOfMerges() + engine.getMergeCount());
+            board.setMoved(true);
+        }
+        board.setPreviousMove(direction);
+        return true;
+    }
+
+    // fills moves with the SWAR engine, returns false if the board has to be
+    // moved on the grid instead
+    private boolean computeAllMovesPacked(GameBoard board, MoveSet moves) {
+        int[][] grid = board.getGameGrid();
+        SwarMoveEngine engine = getSwarMoveEngine(grid.length);
+        if (!PackedBoard.canPack(grid)) {
+            moves.clear();
+            return engine.computeAllMoves(grid, moves);
+        }
+        long packed = PackedBoard.pack(grid);
+        moves.clear();
+        for (Direction direction : Direction.values()) {
+            long result = engine.move(packed, direction);
+            if (engine.isOverflow()) {
+                return false;
+            }
+            PackedBoard.unpack(result, moves.getWritableGrid(direction));
+            moves.addMerges(direction, engine.getScoreDelta(), engine.getMergeCount());
+            if (result != packed) {
+                moves.setLegal(direction);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the moveEngine
+     */
+    public MoveEngine getMoveEngine() {
+        return moveEngine;
+    }
+
+    /**
+     * @param moveEngine the moveEngine to set; SWAR falls back to GRID for
+     * boards wider than 16 tiles or that merge two 32768 tiles
+     */
+    public void setMoveEngine(MoveEngine moveEngine) {
+        this.moveEngine = moveEngine;
+    }
+
     public GameBoard createStartingGameboard() {
-        GameBoard board = new GameBoard(ROW_SIZE);
+        GameBoard board = new GameBoard(rowSize);
         for (int i = 0; i < NUMBER_OF_STARTING_TILES; i++) {
             board = placeRandomTile(board);
         }
@@ -241,9 +351,10 @@ public class GameController {
 
     public boolean isMatchesAvailable(GameBoard board) {
         int[][] grid = board.getGameGrid();
+        int size = grid.length;
         Direction[] directions = Direction.values();
-        for (int x = 0; x < ROW_SIZE; x++) {
-            for (int y = 0; y < ROW_SIZE; y++) {
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
                 for (Direction direction : directions) {
                     int otherX = x;
                     int otherY = y;
@@ -263,10 +374,10 @@ public class GameController {
                         default:
                             throw new AssertionError(direction.name());
                     }
-                    if (otherX >= ROW_SIZE || otherX < 0) {
+                    if (otherX >= size || otherX < 0) {
                         continue;
                     }
-                    if (otherY >= ROW_SIZE || otherY < 0) {
+                    if (otherY >= size || otherY < 0) {
                         continue;
                     }
                     if (grid[x][y] == grid[otherX][otherY]) {
@@ -280,8 +391,9 @@ public class GameController {
 
     public boolean isEmptySpace(GameBoard board) {
         int[][] grid = board.getGameGrid();
-        for (int x = 0; x < ROW_SIZE; x++) {
-            for (int y = 0; y < ROW_SIZE; y++) {
+        int size = grid.length;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
                 if (grid[x][y] == 0) {
                     return true;
                 }
@@ -291,6 +403,149 @@ public class GameController {
     }
 
     public boolean isGameOver(GameBoard board) {
-        return !(isEmptySpace(board) || isMatchesAvailable(board));
+        return getLegalMoves(board) == 0;
+    }
+
+    /**
+     * Computes the result of all four moves in one pass over the board,
+     * without changing it.
+     *
+     * @param board
+     * @return a new MoveSet holding the four afterstates
+     */
+    public MoveSet computeAllMoves(GameBoard board) {
+        MoveSet moves = new MoveSet(board.getGameGrid().length);
+        computeAllMoves(board, moves);
+        return moves;
+    }
+
+    /**
+     * Computes the result of all four moves in one pass over the board,
+     * without changing it. Every row is slid left and right and every column
+     * up and down, with the same merge rules as
+     * {@link #moveGrid(GameBoard, Direction)}.
+     *
+     * @param board
+     * @param moves receives the afterstates; must be of the board's size
+     */
+    public void computeAllMoves(GameBoard board, MoveSet moves) {
+        if (moveEngine == MoveEngine.SWAR && computeAllMovesPacked(board, moves)) {
+            return;
+        }
+        int[][] grid = board.getGameGrid();
+        int size = grid.length;
+        int[] line = new int[size];
+        int[] output = new int[size];
+        moves.clear();
+
+        int[][] left = moves.getWritableGrid(Direction.LEFT);
+        int[][] right = moves.getWritableGrid(Direction.RIGHT);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                line[x] = grid[x][y];
+            }
+            if (slideLine(line, output, moves, Direction.LEFT)) {
+                moves.setLegal(Direction.LEFT);
+            }
+            for (int x = 0; x < size; x++) {
+                left[x][y] = output[x];
+                line[x] = grid[size - 1 - x][y];
+            }
+            if (slideLine(line, output, moves, Direction.RIGHT)) {
+                moves.setLegal(Direction.RIGHT);
+            }
+            for (int x = 0; x < size; x++) {
+                right[size - 1 - x][y] = output[x];
+            }
+        }
+
+        int[][] up = moves.getWritableGrid(Direction.UP);
+        int[][] down = moves.getWritableGrid(Direction.DOWN);
+        for (int x = 0; x < size; x++) {
+            // a column is already a line towards the top
+            if (slideLine(grid[x], up[x], moves, Direction.UP)) {
+                moves.setLegal(Direction.UP);
+            }
+            for (int y = 0; y < size; y++) {
+                line[y] = grid[x][size - 1 - y];
+            }
+            if (slideLine(line, output, moves, Direction.DOWN)) {
+                moves.setLegal(Direction.DOWN);
+            }
+            for (int y = 0; y < size; y++) {
+                down[x][size - 1 - y] = output[y];
+            }
+        }
+    }
+
+    // slides the tiles of line towards index 0 into output, returns true if
+    // anything moved
+    private static boolean slideLine(int[] line, int[] output, MoveSet moves, Direction direction) {
+        int size = line.length;
+        int write = 0;
+        int mergeable = 0; // value of output[write - 1] if it has not merged yet
+        int scoreDelta = 0;
+        int merges = 0;
+        for (int read = 0; read < size; read++) {
+            int value = line[read];
+            if (value == 0) {
+                continue;
+            }
+            if (value == mergeable) {
+                output[write - 1] = value + 1;
+                scoreDelta += 1 << (value + 1);
+                merges++;
+                mergeable = 0;
+            } else {
+                output[write++] = value;
+                mergeable = value;
+            }
+        }
+        for (int i = write; i < size; i++) {
+            output[i] = 0;
+        }
+        if (merges != 0) {
+            moves.addMerges(direction, scoreDelta, merges);
+            return true;
+        }
+        for (int i = 0; i < write; i++) {
+            if (output[i] != line[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param board
+     * @return a mask with bit direction.ordinal() set for every direction that
+     * would change the board
+     */
+    public int getLegalMoves(GameBoard board) {
+        int[][] grid = board.getGameGrid();
+        int size = grid.length;
+        int mask = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int value = grid[x][y];
+                if (value == 0) {
+                    continue;
+                }
+                // a tile can move towards an empty or equal neighbour
+                if (y > 0 && (grid[x][y - 1] == 0 || grid[x][y - 1] == value)) {
+                    mask |= 1 << Direction.UP.ordinal();
+                }
+                if (y < size - 1 && (grid[x][y + 1] == 0 || grid[x][y + 1] == value)) {
+                    mask |= 1 << Direction.DOWN.ordinal();
+                }
+                if (x > 0 && (grid[x - 1][y] == 0 || grid[x - 1][y] == value)) {
+                    mask |= 1 << Direction.LEFT.ordinal();
+                }
+                if (x < size - 1 && (grid[x + 1][y] == 0 || grid[x + 1][y] == value)) {
+                    mask |= 1 << Direction.RIGHT.ordinal();
+                }
+            }
+        }
+        return mask;
     }
 }
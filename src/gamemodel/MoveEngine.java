@@ -0,0 +1,11 @@
+package gamemodel;
+
+/**
+ * How {@link GameController} makes moves.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public enum MoveEngine {
+    GRID, // tile by tile on the game grid
+    SWAR // whole rows at once on a packed board, see SwarMoveEngine
+}
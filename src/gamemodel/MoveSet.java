@@ -0,0 +1,123 @@
+package gamemodel;
+
+/**
+ * The outcome of every move from one board, filled in by
+ * {@link GameController#computeAllMoves(GameBoard, MoveSet)}: the grid after
+ * each direction, the score gained, the number of merges, and a mask with
+ * bit {@code direction.ordinal()} set for each direction that changes the
+ * board.
+ *
+ * A MoveSet can be reused for many boards of the same size to avoid
+ * allocating in the search loop.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class MoveSet {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int size;
+    // [direction][x][y]
+    private final int[][][] grids;
+    private final int[] scoreDeltas = new int[DIRECTIONS.length];
+    private final int[] mergeCounts = new int[DIRECTIONS.length];
+    private int legalMoves = 0;
+
+    public MoveSet(int size) {
+        this.size = size;
+        this.grids = new int[DIRECTIONS.length][size][size];
+    }
+
+    void clear() {
+        for (int i = 0; i < DIRECTIONS.length; i++) {
+            scoreDeltas[i] = 0;
+            mergeCounts[i] = 0;
+        }
+        legalMoves = 0;
+    }
+
+    void addMerges(Direction direction, int scoreDelta, int merges) {
+        scoreDeltas[direction.ordinal()] += scoreDelta;
+        mergeCounts[direction.ordinal()] += merges;
+    }
+
+    void setLegal(Direction direction) {
+        legalMoves |= 1 << direction.ordinal();
+    }
+
+    int[][] getWritableGrid(Direction direction) {
+        return grids[direction.ordinal()];
+    }
+
+    /**
+     * Creates the board reached by moving board in direction, as
+     * {@link GameController#moveGrid(GameBoard, Direction)} on a copy of
+     * board would.
+     *
+     * @param board the board this MoveSet was computed from
+     * @param direction
+     * @return a new board
+     */
+    public GameBoard createAfterstate(GameBoard board, Direction direction) {
+        int[][] source = grids[direction.ordinal()];
+        int[][] grid = new int[size][];
+        for (int x = 0; x < size; x++) {
+            grid[x] = source[x].clone();
+        }
+        GameBoard afterState = new GameBoard(grid);
+        afterState.setScore(board.getScore() + scoreDeltas[direction.ordinal()]);
+        afterState.setNumberOfMerges(mergeCounts[direction.ordinal()]);
+        afterState.setMoved(isLegal(direction));
+        afterState.setPreviousMove(direction);
+        afterState.setSearchWeight(board.getSearchWeight());
+        afterState.setSearchProbability(board.getSearchProbability());
+        return afterState;
+    }
+
+    /**
+     * @return the size of the boards this MoveSet holds
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param direction
+     * @return the grid after moving in direction; do not modify
+     */
+    public int[][] getGrid(Direction direction) {
+        return grids[direction.ordinal()];
+    }
+
+    /**
+     * @param direction
+     * @return the score gained by moving in direction
+     */
+    public int getScoreDelta(Direction direction) {
+        return scoreDeltas[direction.ordinal()];
+    }
+
+    /**
+     * @param direction
+     * @return the number of merges made by moving in direction
+     */
+    public int getMergeCount(Direction direction) {
+        return mergeCounts[direction.ordinal()];
+    }
+
+    /**
+     * @return the legal move mask, bit direction.ordinal() set when the move
+     * changes the board
+     */
+    public int getLegalMoves() {
+        return legalMoves;
+    }
+
+    public boolean isLegal(Direction direction) {
+        return (legalMoves & (1 << direction.ordinal())) != 0;
+    }
+
+    public boolean hasLegalMove() {
+        return legalMoves != 0;
+    }
+}
@@ -0,0 +1,160 @@
+package gamemodel;
+
+/**
+ * Packs a 4x4 board into a long, one 4-bit tile exponent per cell.
+ *
+ * Cell (x, y) of the game grid (grid[x][y]) is stored at bit 16 * y + 4 * x,
+ * so each row of the board is one 16-bit lane with its leftmost tile in the
+ * lowest nibble. Exponents above 15 (a 65536 tile) do not fit; use
+ * {@link #canPack(int[][])} before packing boards that might hold them.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class PackedBoard {
+
+    public static final int SIZE = 4;
+    public static final int MAX_EXPONENT = 15;
+
+    private static final long ROW_MASK = 0xFFFFL;
+
+    private PackedBoard() {
+    }
+
+    public static boolean canPack(int[][] grid) {
+        if (grid.length != SIZE) {
+            return false;
+        }
+        for (int[] column : grid) {
+            if (column.length != SIZE) {
+                return false;
+            }
+            for (int value : column) {
+                if (value < 0 || value > MAX_EXPONENT) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static long pack(int[][] grid) {
+        long board = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                board |= ((long) grid[x][y]) << getShift(x, y);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Packs a 4x4 grid, reading tiles past 32768 as 32768, for evaluators
+     * that see every such tile the same.
+     *
+     * @param grid
+     * @return the packed board
+     */
+    public static long packClamped(int[][] grid) {
+        if (grid.length != SIZE) {
+            throw new IllegalArgumentException("Only " + SIZE + "x" + SIZE + " boards can be packed");
+        }
+        long board = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                board |= ((long) Math.min(grid[x][y], MAX_EXPONENT)) << getShift(x, y);
+            }
+        }
+        return board;
+    }
+
+    public static long pack(GameBoard board) {
+        return pack(board.getGameGrid());
+    }
+
+    public static int[][] unpack(long board) {
+        int[][] grid = new int[SIZE][SIZE];
+        unpack(board, grid);
+        return grid;
+    }
+
+    /**
+     * Unpacks into an existing 4x4 grid.
+     *
+     * @param board
+     * @param grid
+     */
+    public static void unpack(long board, int[][] grid) {
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                grid[x][y] = getTile(board, x, y);
+            }
+        }
+    }
+
+    public static int getTile(long board, int x, int y) {
+        return (int) (board >>> getShift(x, y)) & 0xF;
+    }
+
+    public static long setTile(long board, int x, int y, int value) {
+        int shift = getShift(x, y);
+        return (board & ~(0xFL << shift)) | (((long) value) << shift);
+    }
+
+    private static int getShift(int x, int y) {
+        return (y << 4) + (x << 2);
+    }
+
+    /**
+     * @param board
+     * @return the number of empty cells
+     */
+    public static int countEmpty(long board) {
+        // fold every nibble onto its lowest bit: set if the nibble is non-zero
+        long occupied = board | (board >>> 1);
+        occupied |= occupied >>> 2;
+        return 16 - Long.bitCount(occupied & 0x1111111111111111L);
+    }
+
+    /**
+     * Swaps rows and columns: cell (x, y) moves to (y, x).
+     *
+     * @param board
+     * @return the transposed board
+     */
+    public static long transpose(long board) {
+        long a1 = board & 0xF0F00F0FF0F00F0FL;
+        long a2 = board & 0x0000F0F00000F0F0L;
+        long a3 = board & 0x0F0F00000F0F0000L;
+        long a = a1 | (a2 << 12) | (a3 >>> 12);
+        long b1 = a & 0xFF00FF0000FF00FFL;
+        long b2 = a & 0x00FF00FF00000000L;
+        long b3 = a & 0x00000000FF00FF00L;
+        return b1 | (b2 >>> 24) | (b3 << 24);
+    }
+
+    /**
+     * Reverses every row: cell (x, y) moves to (3 - x, y).
+     *
+     * @param board
+     * @return the mirrored board
+     */
+    public static long mirrorRows(long board) {
+        return ((board & 0xF000F000F000F000L) >>> 12)
+                | ((board & 0x0F000F000F000F00L) >>> 4)
+                | ((board & 0x00F000F000F000F0L) << 4)
+                | ((board & 0x000F000F000F000FL) << 12);
+    }
+
+    /**
+     * Reverses the order of the rows: cell (x, y) moves to (x, 3 - y).
+     *
+     * @param board
+     * @return the mirrored board
+     */
+    public static long mirrorColumns(long board) {
+        return (board >>> 48)
+                | ((board >>> 16) & (ROW_MASK << 16))
+                | ((board << 16) & (ROW_MASK << 32))
+                | (board << 48);
+    }
+}
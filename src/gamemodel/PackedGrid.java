@@ -0,0 +1,176 @@
+package gamemodel;
+
+import java.util.Arrays;
+
+/**
+ * Packs the lines of a square board of any size up to 16 into longs, one
+ * 4-bit tile exponent per cell. Each line is a lane of 4 * size bits with the
+ * tile nearest the wall it moves towards in the lowest nibble, and as many
+ * lanes as fit share a long: a 3x3 board takes one long, a 5x5 board two and
+ * a 6x6 board three.
+ *
+ * The lines are the rows or the columns of the board depending on the
+ * direction they are packed for, so every move becomes a slide of all lanes
+ * towards their lowest nibble (see {@link SwarMoveEngine}). Packed for
+ * {@link Direction#LEFT}, a 4x4 board is laid out like a {@link PackedBoard}.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class PackedGrid {
+
+    public static final int MAX_SIZE = 16;
+
+    private final int size;
+    private final int linesPerWord;
+    private final int wordCount;
+    // word and bit offset of each line
+    private final int[] lineWords;
+    private final int[] lineShifts;
+
+    public PackedGrid(int size) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 1 and " + MAX_SIZE + ": " + size);
+        }
+        this.size = size;
+        this.linesPerWord = Math.min(size, Long.SIZE / (4 * size));
+        this.wordCount = (size + linesPerWord - 1) / linesPerWord;
+        this.lineWords = new int[size];
+        this.lineShifts = new int[size];
+        for (int line = 0; line < size; line++) {
+            lineWords[line] = line / linesPerWord;
+            lineShifts[line] = (line % linesPerWord) * size * 4;
+        }
+    }
+
+    /**
+     * @param grid
+     * @return true if grid is square, at most {@link #MAX_SIZE} wide and
+     * every exponent fits in a nibble
+     */
+    public static boolean canPack(int[][] grid) {
+        if (grid.length > MAX_SIZE) {
+            return false;
+        }
+        for (int[] column : grid) {
+            if (column.length != grid.length) {
+                return false;
+            }
+            for (int value : column) {
+                if (value < 0 || value > PackedBoard.MAX_EXPONENT) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs the lines of grid that a move in direction slides.
+     *
+     * @param grid a grid of this size
+     * @param direction
+     * @param words receives {@link #getWordCount()} longs
+     */
+    public void pack(int[][] grid, Direction direction, long[] words) {
+        Arrays.fill(words, 0, wordCount, 0);
+        for (int line = 0; line < size; line++) {
+            words[lineWords[line]] |= packLine(grid, direction, line) << lineShifts[line];
+        }
+    }
+
+    /**
+     * Unpacks lines packed for direction back into a grid.
+     *
+     * @param words
+     * @param direction the direction the lines were packed for
+     * @param grid a grid of this size
+     */
+    public void unpack(long[] words, Direction direction, int[][] grid) {
+        int last = size - 1;
+        switch (direction) {
+            case LEFT:
+            case RIGHT:
+                // rows are spread over the columns of the grid, so fill one
+                // column at a time
+                for (int i = 0; i < size; i++) {
+                    int[] column = grid[direction == Direction.LEFT ? i : last - i];
+                    for (int line = 0; line < size; line++) {
+                        column[line] = (int) (words[lineWords[line]] >>> (lineShifts[line] + 4 * i)) & 0xF;
+                    }
+                }
+                break;
+            case UP:
+                for (int line = 0; line < size; line++) {
+                    long lane = words[lineWords[line]] >>> lineShifts[line];
+                    int[] column = grid[line];
+                    for (int i = 0; i < size; i++, lane >>>= 4) {
+                        column[i] = (int) lane & 0xF;
+                    }
+                }
+                break;
+            case DOWN:
+                for (int line = 0; line < size; line++) {
+                    long lane = words[lineWords[line]] >>> lineShifts[line];
+                    int[] column = grid[line];
+                    for (int i = 0; i < size; i++, lane >>>= 4) {
+                        column[last - i] = (int) lane & 0xF;
+                    }
+                }
+                break;
+            default:
+                throw new RuntimeException("Unexpected direction: " + direction);
+        }
+    }
+
+    private long packLine(int[][] grid, Direction direction, int line) {
+        int last = size - 1;
+        long lane = 0;
+        switch (direction) {
+            case LEFT:
+                for (int i = last; i >= 0; i--) {
+                    lane = (lane << 4) | grid[i][line];
+                }
+                return lane;
+            case RIGHT:
+                for (int i = last; i >= 0; i--) {
+                    lane = (lane << 4) | grid[last - i][line];
+                }
+                return lane;
+            case UP:
+                int[] column = grid[line];
+                for (int i = last; i >= 0; i--) {
+                    lane = (lane << 4) | column[i];
+                }
+                return lane;
+            case DOWN:
+                int[] reversedColumn = grid[line];
+                for (int i = last; i >= 0; i--) {
+                    lane = (lane << 4) | reversedColumn[last - i];
+                }
+                return lane;
+            default:
+                throw new RuntimeException("Unexpected direction: " + direction);
+        }
+    }
+
+    /**
+     * @return the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of lines that share one long
+     */
+    public int getLinesPerWord() {
+        return linesPerWord;
+    }
+
+    /**
+     * @return the number of longs a packed board takes
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+}
@@ -0,0 +1,285 @@
+package gamemodel;
+
+/**
+ * Moves a {@link PackedBoard} with SIMD-within-a-register arithmetic: the
+ * four rows are the four 16-bit lanes of the long, and every step of a move
+ * (compacting tiles, finding equal neighbours, merging) is done for all rows
+ * at once with shifts and masks, without branching on tile values or
+ * touching lookup tables.
+ *
+ * Left moves slide each lane towards its lowest nibble; the other directions
+ * mirror and transpose the board around a left move. The score gained and
+ * the number of merges of the last move are kept in the engine, so an engine
+ * must not be shared between threads.
+ *
+ * Boards of other sizes are moved through {@link PackedGrid}, which packs the
+ * lines of the move as lanes of 4 * size bits so the same slide applies.
+ *
+ * A merge of two 32768 tiles does not fit in a nibble; such moves set
+ * {@link #isOverflow()} and must be made on the grid instead.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public final class SwarMoveEngine {
+
+    private final PackedGrid packedGrid;
+    private final long[] words;
+    private final long[] columnWords;
+    // lowest bit of every nibble
+    private final long nibbleLowBits;
+    // nibbles 1 to size - 1 of every lane, the ones that can slide down
+    private final long upperNibbles;
+    // all four bits of the first nibble of every lane
+    private final long firstNibbles;
+    // nibble i of every lane, for i up to size - 2
+    private final long[] nibbles;
+
+    private int scoreDelta;
+    private int mergeCount;
+    private boolean overflow;
+    private boolean moved;
+
+    public SwarMoveEngine() {
+        this(PackedBoard.SIZE);
+    }
+
+    /**
+     * @param size the size of the boards this engine moves
+     */
+    public SwarMoveEngine(int size) {
+        this.packedGrid = new PackedGrid(size);
+        this.words = new long[packedGrid.getWordCount()];
+        this.columnWords = new long[packedGrid.getWordCount()];
+        this.nibbles = new long[Math.max(0, size - 1)];
+        long lowBits = 0;
+        long upper = 0;
+        for (int lane = 0; lane < packedGrid.getLinesPerWord(); lane++) {
+            for (int i = 0; i < size; i++) {
+                long bit = 1L << (4 * (lane * size + i));
+                lowBits |= bit;
+                if (i > 0) {
+                    upper |= bit;
+                }
+                if (i < nibbles.length) {
+                    nibbles[i] |= bit;
+                }
+            }
+        }
+        this.nibbleLowBits = lowBits;
+        this.upperNibbles = upper;
+        this.firstNibbles = (lowBits & ~upper) * 0xF;
+    }
+
+    /**
+     * @param board a packed board, for engines of size 4
+     * @param direction
+     * @return the packed board after the move, meaningless if
+     * {@link #isOverflow()}
+     */
+    public long move(long board, Direction direction) {
+        switch (direction) {
+            case LEFT:
+                return moveLeft(board);
+            case RIGHT:
+                return PackedBoard.mirrorRows(moveLeft(PackedBoard.mirrorRows(board)));
+            case UP:
+                return PackedBoard.transpose(moveLeft(PackedBoard.transpose(board)));
+            case DOWN:
+                return PackedBoard.transpose(PackedBoard.mirrorRows(
+                        moveLeft(PackedBoard.mirrorRows(PackedBoard.transpose(board)))));
+            default:
+                throw new RuntimeException("Unexpected direction: " + direction);
+        }
+    }
+
+    /**
+     * Moves a grid of this engine's size.
+     *
+     * @param grid
+     * @param direction
+     * @param output receives the grid after the move; may be grid itself
+     * @return false if grid cannot be packed or the move overflows, in which
+     * case output is unchanged
+     */
+    public boolean move(int[][] grid, Direction direction, int[][] output) {
+        scoreDelta = 0;
+        mergeCount = 0;
+        overflow = false;
+        moved = false;
+        if (grid.length != packedGrid.getSize() || !PackedGrid.canPack(grid)) {
+            return false;
+        }
+        packedGrid.pack(grid, direction, words);
+        for (int i = 0; i < words.length; i++) {
+            long result = slide(words[i]);
+            if (overflow) {
+                return false;
+            }
+            moved |= result != words[i];
+            words[i] = result;
+        }
+        packedGrid.unpack(words, direction, output);
+        return true;
+    }
+
+    /**
+     * Computes all four moves of a grid of this engine's size. The rows and
+     * the columns are packed once; right and down moves mirror the lanes in
+     * the register instead of packing again.
+     *
+     * @param grid
+     * @param moves receives the afterstates
+     * @return false if grid cannot be packed or a move overflows
+     */
+    boolean computeAllMoves(int[][] grid, MoveSet moves) {
+        if (grid.length != packedGrid.getSize() || !PackedGrid.canPack(grid)) {
+            return false;
+        }
+        packedGrid.pack(grid, Direction.LEFT, columnWords);
+        if (!moveAll(grid, columnWords, Direction.LEFT, Direction.RIGHT, moves)) {
+            return false;
+        }
+        packedGrid.pack(grid, Direction.UP, columnWords);
+        return moveAll(grid, columnWords, Direction.UP, Direction.DOWN, moves);
+    }
+
+    // slides lines packed for direction, then the same lines mirrored for
+    // the opposite direction
+    private boolean moveAll(int[][] grid, long[] lines, Direction direction, Direction opposite, MoveSet moves) {
+        for (int pass = 0; pass < 2; pass++) {
+            Direction current = pass == 0 ? direction : opposite;
+            scoreDelta = 0;
+            mergeCount = 0;
+            overflow = false;
+            moved = false;
+            for (int i = 0; i < words.length; i++) {
+                long line = pass == 0 ? lines[i] : mirrorLanes(lines[i]);
+                long result = slide(line);
+                if (overflow) {
+                    return false;
+                }
+                moved |= result != line;
+                words[i] = result;
+            }
+            int[][] output = moves.getWritableGrid(current);
+            if (moved) {
+                packedGrid.unpack(words, current, output);
+                moves.addMerges(current, scoreDelta, mergeCount);
+                moves.setLegal(current);
+            } else {
+                // copying the rows is cheaper than unpacking across them
+                for (int x = 0; x < grid.length; x++) {
+                    System.arraycopy(grid[x], 0, output[x], 0, grid.length);
+                }
+            }
+        }
+        return true;
+    }
+
+    // reverses the nibbles of every lane
+    private long mirrorLanes(long word) {
+        int size = packedGrid.getSize();
+        long mirrored = 0;
+        for (int i = 0; i < size; i++) {
+            mirrored |= ((word >>> (4 * i)) & firstNibbles) << (4 * (size - 1 - i));
+        }
+        return mirrored;
+    }
+
+    // low bit of every non-empty nibble
+    private long occupied(long board) {
+        long folded = board | (board >>> 1);
+        folded |= folded >>> 2;
+        return folded & nibbleLowBits;
+    }
+
+    // slides every tile down into empty nibbles; a tile moves at most size - 1
+    private long compact(long board) {
+        for (int step = 0; step < nibbles.length; step++) {
+            long occupied = occupied(board);
+            long empty = ~occupied & nibbleLowBits;
+            long moving = (occupied & (empty << 4) & upperNibbles) * 0xF;
+            if (moving == 0) {
+                break;
+            }
+            board = (board & ~moving) | ((board & moving) >>> 4);
+        }
+        return board;
+    }
+
+    private long moveLeft(long board) {
+        scoreDelta = 0;
+        mergeCount = 0;
+        overflow = false;
+        long result = slide(board);
+        moved = !overflow && result != board;
+        return result;
+    }
+
+    // slides every lane of board towards its lowest nibble, adding to the
+    // score and merge count of the current move
+    private long slide(long board) {
+        long compacted = compact(board);
+
+        // nibble i equals nibble i + 1 of the same lane and is not empty
+        long equal = ~occupied(compacted ^ (compacted >>> 4)) & occupied(compacted);
+        // the tile closest to the wall merges first, and a tile merges once
+        long merges = 0;
+        long previous = 0;
+        for (long nibble : nibbles) {
+            previous = equal & nibble & ~(previous << 4);
+            merges |= previous;
+        }
+        if (merges == 0) {
+            return compacted;
+        }
+
+        for (long bits = merges; bits != 0; bits &= bits - 1) {
+            int value = (int) (compacted >>> Long.numberOfTrailingZeros(bits)) & 0xF;
+            if (value == PackedBoard.MAX_EXPONENT) {
+                overflow = true;
+                return board;
+            }
+            scoreDelta += 1 << (value + 1);
+        }
+        mergeCount += Long.bitCount(merges);
+        long merged = (compacted + merges) & ~((merges << 4) * 0xF);
+        return compact(merged);
+    }
+
+    /**
+     * @return the size of the boards this engine moves
+     */
+    public int getSize() {
+        return packedGrid.getSize();
+    }
+
+    /**
+     * @return the score gained by the last move
+     */
+    public int getScoreDelta() {
+        return scoreDelta;
+    }
+
+    /**
+     * @return the number of merges made by the last move
+     */
+    public int getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * @return true if the last move merged two 32768 tiles and has to be made
+     * on the grid
+     */
+    public boolean isOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @return true if the last move changed the board
+     */
+    public boolean isMoved() {
+        return moved;
+    }
+}
@@ -15,11 +15,15 @@ public class HeuristicSearchUI extends Application {
     
     @Override
     public void start(Stage stage) throws Exception {
-        Parent root = FXMLLoader.load(getClass().getResource("HeuristicSearchUIFXML.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("HeuristicSearchUIFXML.fxml"));
+        Parent root = loader.load();
+        HeuristicSearchUIController controller = loader.getController();
         
         Scene scene = new Scene(root);
         
+        stage.setTitle("Simulation dashboard");
         stage.setScene(scene);
+        stage.setOnHidden(event -> controller.stop());
         stage.show();
     }
 
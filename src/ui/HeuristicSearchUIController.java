@@ -1,22 +1,376 @@
 package ui;
 
+import aiheuristics.Heuristic;
+import cliai.GamePipeline;
+import cliai.GameSimulation;
+import cliai.MassParallelRunner;
+import cliai.MetricsSnapshot;
+import cliai.SimulationMetrics;
+import cliai.SimulationMetricsMBean;
+import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.util.Duration;
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
 
 /**
  * FXML Controller class
  *
- * @author lucas.burdell
+ * Live dashboard of a mass simulation. The simulation threads only record
+ * into the {@link SimulationMetrics}; the dashboard reads a lock-free
+ * {@link MetricsSnapshot} at a fixed frame rate, so drawing never holds up a
+ * game. Rates are taken over the last second of snapshots.
+ *
+ * Start runs a simulation in this JVM. Attach instead follows a run started
+ * from one of the CLI runners through its JMX bean. The runner has to accept
+ * JMX connections, for example with
+ * -Dcom.sun.management.jmxremote.port=9010
+ * -Dcom.sun.management.jmxremote.host=127.0.0.1
+ * -Dcom.sun.management.jmxremote.authenticate=false
+ * -Dcom.sun.management.jmxremote.ssl=false
+ * which lets anyone who can reach the port read and change the JVM, so keep
+ * it on loopback or turn authentication on. Remote snapshots are fetched on
+ * a background thread so a slow connection never stalls the FX thread.
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
  */
 public class HeuristicSearchUIController implements Initializable {
 
+    private static final int FRAMES_PER_SECOND = 10;
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+    private static final double HISTORY_SECONDS = 60;
+
+    @FXML
+    private TextField gamesField;
+    @FXML
+    private TextField depthField;
+    @FXML
+    private Button startButton;
+    @FXML
+    private TextField addressField;
+    @FXML
+    private Button attachButton;
+    @FXML
+    private Label statusLabel;
+    @FXML
+    private LineChart<Number, Number> throughputChart;
+    @FXML
+    private LineChart<Number, Number> latencyChart;
+    @FXML
+    private BarChart<String, Number> scoreChart;
+    @FXML
+    private BarChart<String, Number> agreementChart;
+
+    private final XYChart.Series<Number, Number> gamesSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> movesSeries = new XYChart.Series<>();
+    private final XYChart.Series<String, Number> scoreSeries = new XYChart.Series<>();
+    private final XYChart.Series<String, Number> agreementSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number>[] latencySeries = createLatencySeries();
+
+    // snapshots of the last second, oldest first
+    private final ArrayDeque<MetricsSnapshot> recentSnapshots = new ArrayDeque<>();
+    private Timeline timeline;
+    private Supplier<MetricsSnapshot> snapshotSource = null;
+    private long gamesToPlay = 0;
+    // time of the first snapshot drawn, in the clock of the simulation's JVM
+    private long attachTime = 0;
+    private boolean attachTimeSet = false;
+    private volatile ExecutorService simulationExecutor = null;
+    private ScheduledExecutorService remotePoller = null;
+    private JMXConnector connector = null;
+    private volatile MetricsSnapshot remoteSnapshot = null;
+
     /**
      * Initializes the controller class.
      */
     @Override
     public void initialize(URL url, ResourceBundle rb) {
-        // TODO
-    }    
-    
+        gamesSeries.setName("games x 100");
+        movesSeries.setName("moves");
+        throughputChart.getData().add(movesSeries);
+        throughputChart.getData().add(gamesSeries);
+        for (XYChart.Series<Number, Number> series : latencySeries) {
+            latencyChart.getData().add(series);
+        }
+        scoreChart.getData().add(scoreSeries);
+        agreementChart.getData().add(agreementSeries);
+
+        timeline = new Timeline(new KeyFrame(Duration.millis(1000.0 / FRAMES_PER_SECOND), event -> drawFrame()));
+        timeline.setCycleCount(Animation.INDEFINITE);
+        timeline.play();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static XYChart.Series<Number, Number>[] createLatencySeries() {
+        XYChart.Series<Number, Number>[] output = new XYChart.Series[MetricsSnapshot.LATENCY_PERCENTILES.length];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = new XYChart.Series<>();
+            output[i].setName("p" + Math.round(MetricsSnapshot.LATENCY_PERCENTILES[i] * 100));
+        }
+        return output;
+    }
+
+    /**
+     * Shows the metrics of a simulation, replacing any shown before.
+     *
+     * @param metrics the metrics the simulation records into
+     * @param heuristics the heuristics of the simulation, in voting order
+     * @param gamesToPlay the games the run will play, or 0 if not known
+     */
+    public void attach(SimulationMetrics metrics, Heuristic[] heuristics, long gamesToPlay) {
+        detachRemote();
+        clear();
+        this.snapshotSource = metrics::snapshot;
+        this.gamesToPlay = gamesToPlay;
+        for (Heuristic heuristic : heuristics) {
+            agreementSeries.getData().add(new XYChart.Data<>(heuristic.getClass().getSimpleName(), 0));
+        }
+    }
+
+    private void clear() {
+        attachTimeSet = false;
+        recentSnapshots.clear();
+        gamesSeries.getData().clear();
+        movesSeries.getData().clear();
+        for (XYChart.Series<Number, Number> series : latencySeries) {
+            series.getData().clear();
+        }
+        scoreSeries.getData().clear();
+        agreementSeries.getData().clear();
+    }
+
+    /**
+     * Stops drawing, the simulation started here and any JMX connection.
+     * Called when the window closes, so no worker keeps the JVM alive.
+     */
+    public void stop() {
+        timeline.stop();
+        ExecutorService executor = simulationExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        detachRemote();
+    }
+
+    private void detachRemote() {
+        if (remotePoller != null) {
+            remotePoller.shutdownNow();
+            remotePoller = null;
+        }
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (IOException ex) {
+                // already gone
+            }
+            connector = null;
+        }
+        remoteSnapshot = null;
+    }
+
+    private void drawFrame() {
+        if (snapshotSource == null) {
+            return;
+        }
+        MetricsSnapshot snapshot = snapshotSource.get();
+        if (snapshot == null) {
+            return;
+        }
+        if (!attachTimeSet) {
+            attachTime = snapshot.getTime();
+            attachTimeSet = true;
+        }
+        recentSnapshots.addLast(snapshot);
+        while (snapshot.getTime() - recentSnapshots.peekFirst().getTime() > RATE_WINDOW_NANOS) {
+            recentSnapshots.removeFirst();
+        }
+        MetricsSnapshot earlier = recentSnapshots.peekFirst();
+        double seconds = (snapshot.getTime() - attachTime) / 1e9;
+
+        // games are far fewer than moves, so they are scaled to share an axis
+        addPoint(gamesSeries, seconds, snapshot.getGamesPerSecond(earlier) * 100);
+        addPoint(movesSeries, seconds, snapshot.getMovesPerSecond(earlier));
+        long[] latencies = snapshot.getSearchLatencyPercentiles();
+        for (int i = 0; i < latencies.length; i++) {
+            addPoint(latencySeries[i], seconds, latencies[i] / 1e6);
+        }
+        drawScores(snapshot);
+        // a run attached over JMX does not say what its heuristics are
+        for (int i = agreementSeries.getData().size(); i < snapshot.getVotingHeuristicCount(); i++) {
+            agreementSeries.getData().add(new XYChart.Data<>("heuristic " + i, 0));
+        }
+        for (int i = 0; i < agreementSeries.getData().size(); i++) {
+            agreementSeries.getData().get(i).setYValue(snapshot.getVoteAgreement(i));
+        }
+
+        statusLabel.setText(snapshot.getGamesCompleted()
+                + (gamesToPlay > 0 ? " of " + gamesToPlay : "") + " games, "
+                + snapshot.getMovesMade() + " moves, "
+                + String.format("%.1f", snapshot.getGamesPerSecond(earlier)) + " games/s, "
+                + String.format("%.0f", snapshot.getMovesPerSecond(earlier)) + " moves/s, "
+                + "max search " + String.format("%.2f", snapshot.getSearchLatencyMax() / 1e6) + " ms");
+    }
+
+    private static void addPoint(XYChart.Series<Number, Number> series, double seconds, double value) {
+        ObservableList<XYChart.Data<Number, Number>> data = series.getData();
+        data.add(new XYChart.Data<>(seconds, value));
+        int stale = 0;
+        while (stale < data.size() && seconds - data.get(stale).getXValue().doubleValue() > HISTORY_SECONDS) {
+            stale++;
+        }
+        if (stale > 0) {
+            data.remove(0, stale);
+        }
+    }
+
+    // bars are only rebuilt when the range of buckets grows
+    private void drawScores(MetricsSnapshot snapshot) {
+        long[] limits = snapshot.getScoreBucketLimits();
+        long[] counts = snapshot.getScoreBucketCounts();
+        ObservableList<XYChart.Data<String, Number>> data = scoreSeries.getData();
+        boolean sameBuckets = data.size() == limits.length
+                && (limits.length == 0 || data.get(0).getXValue().equals(Long.toString(limits[0])));
+        if (!sameBuckets) {
+            data.clear();
+            for (int i = 0; i < limits.length; i++) {
+                data.add(new XYChart.Data<>(Long.toString(limits[i]), counts[i]));
+            }
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            data.get(i).setYValue(counts[i]);
+        }
+    }
+
+    @FXML
+    private void handleStart() {
+        int gameCount;
+        int maxDepth;
+        try {
+            gameCount = Integer.parseInt(gamesField.getText().trim());
+            maxDepth = Integer.parseInt(depthField.getText().trim());
+        } catch (NumberFormatException ex) {
+            statusLabel.setText("Games and max depth must be numbers");
+            return;
+        }
+        startButton.setDisable(true);
+        attachButton.setDisable(true);
+
+        GameSimulation simulation = MassParallelRunner.createSimulation(maxDepth);
+        SimulationMetrics runMetrics = new SimulationMetrics();
+        simulation.setMetrics(runMetrics);
+        attach(runMetrics, simulation.getHeuristics(), gameCount);
+
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        // daemon workers, so a game still being played never keeps the JVM
+        // alive once the window is closed
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-game");
+            thread.setDaemon(true);
+            return thread;
+        });
+        simulationExecutor = executor;
+        Thread runner = new Thread(() -> {
+            long seed = Long.getLong("games.seed", System.currentTimeMillis());
+            try {
+                new GamePipeline(executor, threadCount * 2).run(gameCount,
+                        gameId -> () -> simulation.play(gameId, GameSimulation.mixSeed(seed, gameId)),
+                        (result, gameId) -> {
+                        });
+            } catch (InterruptedException | RejectedExecutionException ex) {
+                // the window was closed
+            } finally {
+                executor.shutdown();
+                simulationExecutor = null;
+                Platform.runLater(() -> {
+                    startButton.setDisable(false);
+                    attachButton.setDisable(false);
+                });
+            }
+        }, "dashboard-simulation");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    @FXML
+    private void handleAttach() {
+        String address = addressField.getText().trim();
+        attachButton.setDisable(true);
+        statusLabel.setText("Connecting to " + address);
+        Thread connecting = new Thread(() -> {
+            try {
+                JMXConnector newConnector = JMXConnectorFactory.connect(
+                        new JMXServiceURL("service:jmx:rmi:///jndi/rmi://" + address + "/jmxrmi"));
+                MBeanServerConnection connection = newConnector.getMBeanServerConnection();
+                Set<ObjectName> names = connection.queryNames(
+                        new ObjectName("cliai:type=SimulationMetrics,*"), null);
+                if (names.isEmpty()) {
+                    newConnector.close();
+                    throw new IOException("No simulation is running at " + address);
+                }
+                SimulationMetricsMBean remote = JMX.newMBeanProxy(connection, names.iterator().next(),
+                        SimulationMetricsMBean.class);
+                Platform.runLater(() -> attachRemote(newConnector, remote, address));
+            } catch (IOException | JMException ex) {
+                Platform.runLater(() -> {
+                    statusLabel.setText("Could not attach: " + ex.getMessage());
+                    attachButton.setDisable(false);
+                });
+            }
+        }, "dashboard-connect");
+        connecting.setDaemon(true);
+        connecting.start();
+    }
+
+    private void attachRemote(JMXConnector newConnector, SimulationMetricsMBean remote, String address) {
+        detachRemote();
+        clear();
+        connector = newConnector;
+        gamesToPlay = 0;
+        snapshotSource = () -> remoteSnapshot;
+        remotePoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-jmx");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService poller = remotePoller;
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                remoteSnapshot = remote.getSnapshot();
+            } catch (RuntimeException ex) {
+                // the proxy wraps connection failures in unchecked exceptions
+                poller.shutdown();
+                remoteSnapshot = null;
+                Platform.runLater(() -> statusLabel.setText("Lost " + address + ": " + ex.getMessage()));
+            }
+        }, 0, 1000 / FRAMES_PER_SECOND, TimeUnit.MILLISECONDS);
+        attachButton.setDisable(false);
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package aidecision;
+
+import gamemodel.Direction;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class HedgeVotingTest {
+
+    private HedgeWeights weights;
+
+    public HedgeVotingTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        weights = new HedgeWeights(3, .5);
+    }
+
+    @After
+    public void tearDown() {
+        weights = null;
+    }
+
+    /**
+     * Test of evaluateVotes method, of class HedgeVoting.
+     */
+    @Test
+    public void testEvaluateVotesNoLearning() {
+        System.out.println("evaluateVotesNoLearning");
+        HedgeVoting instance = new HedgeVoting(weights, 3, 2);
+        instance.setLearning(false);
+        assertEquals(Direction.values()[1], instance.evaluateVotes(new int[]{1, 1, 0}));
+        instance.recordOutcome(0, true);
+        assertEquals(0, weights.getRounds());
+        assertArrayEquals(new double[]{1 / 3.0, 1 / 3.0, 1 / 3.0}, weights.getWeights(), 1e-12);
+    }
+
+    /**
+     * Test of recordOutcome method, of class HedgeVoting.
+     */
+    @Test
+    public void testRecordOutcomeGameOver() {
+        System.out.println("recordOutcomeGameOver");
+        HedgeVoting instance = new HedgeVoting(weights, 3, 2);
+        instance.setLearning(true);
+        assertEquals(Direction.values()[0], instance.evaluateVotes(new int[]{0, 0, 1}));
+        instance.recordOutcome(0, true);
+        assertEquals(1, weights.getRounds());
+        double[] result = weights.getWeights();
+        assertEquals(result[0], result[1], 1e-12);
+        assertTrue(result[2] > result[0]);
+    }
+
+    /**
+     * Test of recordOutcome method, of class HedgeVoting.
+     */
+    @Test
+    public void testRecordOutcomeScoreGained() {
+        System.out.println("recordOutcomeScoreGained");
+        HedgeVoting instance = new HedgeVoting(weights, 3, 2);
+        instance.setLearning(true);
+        // the first decision sets the mean gain, the second gains more
+        instance.evaluateVotes(new int[]{0, 0, 1});
+        instance.recordOutcome(4, false);
+        instance.recordOutcome(4, false);
+        instance.evaluateVotes(new int[]{2, 2, 1});
+        instance.recordOutcome(16, false);
+        instance.recordOutcome(16, false);
+        instance.recordOutcome(0, true);
+        double[] result = weights.getWeights();
+        assertEquals(2, weights.getRounds());
+        assertEquals(result[0], result[1], 1e-12);
+        assertTrue(result[0] > result[2]);
+    }
+
+    /**
+     * Test of the constructor of class HedgeVoting with no horizon.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorRejectsZeroHorizon() {
+        System.out.println("constructorRejectsZeroHorizon");
+        new HedgeVoting(weights, 3, 0);
+    }
+}
@@ -0,0 +1,119 @@
+package aiheuristics;
+
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class LineTablesTest {
+    private final GameController controller = new GameController();
+    private LineTables instance;
+    private long board;
+    
+    public LineTablesTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        Random random = new Random(7);
+        float[] values = new float[LineTables.TABLE_COUNT * LineTables.TABLE_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100);
+        }
+        instance = new LineTables(1, values);
+        board = 0;
+        for (int cell = 0; cell < 16; cell++) {
+            board = PackedBoard.setTile(board, cell % 4, cell / 4, random.nextInt(12));
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    /**
+     * Test of evaluate method, of class LineTables.
+     */
+    @Test
+    public void testEvaluateSumsFeatures() {
+        System.out.println("evaluateSumsFeatures");
+        int[] features = new int[LineTables.FEATURE_COUNT];
+        LineTables.getFeatures(board, features);
+        float expResult = 0;
+        for (int feature : features) {
+            expResult += instance.getValues()[feature];
+        }
+        assertEquals(expResult, instance.evaluate(board), 0);
+    }
+
+    /**
+     * Test of evaluate method, of class LineTables.
+     */
+    @Test
+    public void testEvaluateSymmetric() {
+        System.out.println("evaluateSymmetric");
+        float expResult = instance.evaluate(board);
+        assertEquals(expResult, instance.evaluate(PackedBoard.transpose(board)), 0);
+        assertEquals(expResult, instance.evaluate(PackedBoard.mirrorRows(board)), 0);
+        assertEquals(expResult, instance.evaluate(PackedBoard.mirrorColumns(board)), 0);
+    }
+
+    /**
+     * Test of getValueOfState method, of class LineTables.
+     */
+    @Test
+    public void testGetValueOfState() {
+        System.out.println("getValueOfState");
+        GameBoard state = new GameBoard(PackedBoard.unpack(board));
+        long expResult = Math.round(instance.evaluate(board) * 1000.0);
+        assertEquals(expResult, instance.getValueOfState(controller, state, 0));
+    }
+
+    /**
+     * Test of supportsBoardSize method, of class LineTables.
+     */
+    @Test
+    public void testSupportsBoardSize() {
+        System.out.println("supportsBoardSize");
+        assertTrue(instance.supportsBoardSize(PackedBoard.SIZE));
+        assertFalse(instance.supportsBoardSize(5));
+    }
+
+    /**
+     * Test of save and load methods, of class LineTables.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        System.out.println("saveAndLoad");
+        File file = File.createTempFile("lineTables", ".bin");
+        try {
+            instance.save(file);
+            LineTables result = LineTables.load(file, 2);
+            assertArrayEquals(instance.getValues(), result.getValues(), 0);
+            assertEquals(2, result.getWeight(), 0);
+        } finally {
+            file.delete();
+        }
+    }
+    
+}
@@ -0,0 +1,134 @@
+package aiheuristics;
+
+import gamemodel.PackedBoard;
+import java.io.File;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class QuantizedNetworkTest {
+    private static final int HIDDEN_COUNT = 8;
+    private float[] inputWeights;
+    private float[] hiddenBiases;
+    private float[] outputWeights;
+    private float outputBias;
+    private QuantizedNetwork instance;
+    private long[] boards;
+    
+    public QuantizedNetworkTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        Random random = new Random(7);
+        inputWeights = new float[QuantizedNetwork.INPUT_COUNT * HIDDEN_COUNT];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (float) random.nextGaussian();
+        }
+        hiddenBiases = new float[HIDDEN_COUNT];
+        outputWeights = new float[HIDDEN_COUNT];
+        for (int i = 0; i < HIDDEN_COUNT; i++) {
+            hiddenBiases[i] = (float) random.nextGaussian();
+            outputWeights[i] = (float) random.nextGaussian();
+        }
+        outputBias = 3;
+        instance = QuantizedNetwork.quantize(1, inputWeights, hiddenBiases, outputWeights, outputBias);
+        boards = new long[20];
+        for (int i = 0; i < boards.length; i++) {
+            for (int cell = 0; cell < 16; cell++) {
+                boards[i] = PackedBoard.setTile(boards[i], cell % 4, cell / 4, random.nextInt(12));
+            }
+        }
+    }
+    
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private float evaluateFloat(long board) {
+        float output = outputBias;
+        for (int i = 0; i < HIDDEN_COUNT; i++) {
+            float hidden = hiddenBiases[i];
+            for (int cell = 0; cell < QuantizedNetwork.CELL_COUNT; cell++) {
+                hidden += inputWeights[QuantizedNetwork.getInput(board, cell) * HIDDEN_COUNT + i];
+            }
+            output += outputWeights[i] * Math.max(hidden, 0);
+        }
+        return output;
+    }
+
+    /**
+     * Test of evaluate method, of class QuantizedNetwork.
+     */
+    @Test
+    public void testEvaluateCloseToFloat() {
+        System.out.println("evaluateCloseToFloat");
+        for (long board : boards) {
+            double expResult = evaluateFloat(board);
+            double result = instance.evaluate(board) * instance.getValueScale();
+            assertEquals(expResult, result, Math.max(1, Math.abs(expResult) * .05));
+        }
+    }
+
+    /**
+     * Test of evaluate method, of class QuantizedNetwork.
+     */
+    @Test
+    public void testEvaluateBatch() {
+        System.out.println("evaluateBatch");
+        long[] values = new long[boards.length];
+        instance.evaluate(boards, boards.length, values);
+        for (int i = 0; i < boards.length; i++) {
+            assertEquals(instance.evaluate(boards[i]), values[i]);
+        }
+    }
+
+    /**
+     * Test of supportsBoardSize method, of class QuantizedNetwork.
+     */
+    @Test
+    public void testSupportsBoardSize() {
+        System.out.println("supportsBoardSize");
+        assertTrue(instance.supportsBoardSize(PackedBoard.SIZE));
+        assertFalse(instance.supportsBoardSize(5));
+    }
+
+    /**
+     * Test of save and load methods, of class QuantizedNetwork.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        System.out.println("saveAndLoad");
+        File file = File.createTempFile("network", ".bin");
+        try {
+            instance.save(file);
+            QuantizedNetwork result = QuantizedNetwork.load(file, 2);
+            assertEquals(HIDDEN_COUNT, result.getHiddenCount());
+            assertEquals(instance.getValueScale(), result.getValueScale(), 0);
+            assertEquals(2, result.getWeight(), 0);
+            for (long board : boards) {
+                assertEquals(instance.evaluate(board), result.evaluate(board));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+    
+}
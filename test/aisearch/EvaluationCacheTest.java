@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package aisearch;
+
+import aiheuristics.Corners;
+import aiheuristics.EmptySpaces;
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicList;
+import aiheuristics.LineTables;
+import aiheuristics.MonotonicityInRows;
+import aiheuristics.QuantizedNetwork;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class EvaluationCacheTest {
+
+    private static final int DEPTH = 1;
+
+    private GameController controller;
+    private List<GameBoard> boards;
+
+    public EvaluationCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        controller = new GameController();
+        controller.setRandom(new Random(35));
+        Random random = new Random(35);
+        boards = new ArrayList<>();
+        GameBoard board = controller.createStartingGameboard();
+        while (boards.size() < 5 && !controller.isGameOver(board)) {
+            boards.add(board);
+            board = controller.doGameMove(board, Direction.values()[random.nextInt(4)]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    // the direction sums of a search of every board, in order
+    private long[][][] search(Heuristic[] heuristics, EvaluationCache cache) {
+        SingleThreadSearch searcher = new SingleThreadSearch(controller, DEPTH);
+        searcher.setRandom(new Random(1));
+        searcher.setDepthWeightingType(DepthWeighting.NONE);
+        searcher.setEvaluationType(StateEvaluationType.NEXT_STATES);
+        searcher.setDepthScaling(false);
+        searcher.setEvaluationCache(cache);
+        long[][][] sums = new long[boards.size()][][];
+        for (int i = 0; i < boards.size(); i++) {
+            searcher.getVotesOnDirections(boards.get(i), heuristics);
+            long[][] last = searcher.getLastDirectionSums();
+            sums[i] = new long[last.length][];
+            for (int direction = 0; direction < last.length; direction++) {
+                sums[i][direction] = last[direction].clone();
+            }
+        }
+        return sums;
+    }
+
+    private static void assertSameSums(long[][][] expected, long[][][] result) {
+        assertEquals(expected.length, result.length);
+        for (int i = 0; i < expected.length; i++) {
+            for (int direction = 0; direction < expected[i].length; direction++) {
+                assertArrayEquals(expected[i][direction], result[i][direction]);
+            }
+        }
+    }
+
+    /**
+     * Test of get and put methods, of class EvaluationCache.
+     */
+    @Test
+    public void testGetAndPut() {
+        System.out.println("getAndPut");
+        EvaluationCache instance = new EvaluationCache(1, 4);
+        long board = PackedBoard.pack(boards.get(boards.size() - 1).getGameGrid());
+        long[] values = {5, -3, 1L << 40, 0};
+        long[] result = new long[4];
+        assertFalse(instance.get(board, 0, result, 4));
+        instance.put(board, 0, values, 4);
+        assertTrue(instance.get(board, 0, result, 4));
+        assertArrayEquals(values, result);
+        assertFalse(instance.get(board, 1, result, 4));
+        assertFalse(instance.get(board ^ 1, 0, result, 4));
+        // more values than an entry holds are never cached
+        instance.put(board, 2, new long[5], 5);
+        assertFalse(instance.get(board, 2, new long[5], 5));
+    }
+
+    /**
+     * Test of the EvaluationCache class: a search reading cached values
+     * scores every direction as a search computing them.
+     */
+    @Test
+    public void testCachedValuesMatchComputed() {
+        System.out.println("cachedValuesMatchComputed");
+        Heuristic[] heuristics = HeuristicList.getHeuristics();
+        long[][][] expected = search(heuristics, null);
+        // a single bucket of WAYS slots, so entries are evicted and replaced
+        // along the way
+        EvaluationCache instance = new EvaluationCache(0, heuristics.length);
+        assertEquals(EvaluationCache.WAYS, instance.getCapacity());
+        assertSameSums(expected, search(heuristics, instance));
+        long hits = instance.getHits();
+        assertSameSums(expected, search(heuristics, instance));
+        assertTrue(instance.getHits() > hits);
+        assertTrue(instance.getEvictions() > 0);
+    }
+
+    /**
+     * Test of the EvaluationCache class: a search with other heuristics does
+     * not read the values stored for the first ones.
+     */
+    @Test
+    public void testChangedHeuristicsNotStale() {
+        System.out.println("changedHeuristicsNotStale");
+        Heuristic[] first = {new EmptySpaces(1), new Corners(1), new MonotonicityInRows(1)};
+        Heuristic[] changed = {new Corners(1), new EmptySpaces(1), new MonotonicityInRows(1)};
+        Heuristic[] reweighted = {new EmptySpaces(3), new Corners(0.5), new MonotonicityInRows(2)};
+        assertTrue(EvaluationCache.getHeuristicSetId(first) != EvaluationCache.getHeuristicSetId(changed));
+        assertEquals(EvaluationCache.getHeuristicSetId(first), EvaluationCache.getHeuristicSetId(reweighted));
+
+        EvaluationCache instance = new EvaluationCache(4, 3);
+        search(first, instance);
+        long hits = instance.getHits();
+        assertSameSums(search(changed, null), search(changed, instance));
+        assertSameSums(search(reweighted, null), search(reweighted, instance));
+        assertTrue(instance.getHits() > hits);
+    }
+
+    private static LineTables createTables(long seed) {
+        Random random = new Random(seed);
+        float[] values = new float[LineTables.TABLE_COUNT * LineTables.TABLE_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return new LineTables(1, values);
+    }
+
+    /**
+     * Test of the EvaluationCache class: learned heuristics of one class but
+     * different tables do not read each other's values.
+     */
+    @Test
+    public void testLearnedHeuristicsNotShared() {
+        System.out.println("learnedHeuristicsNotShared");
+        Heuristic[] first = {createTables(1)};
+        Heuristic[] retrained = {createTables(2)};
+        assertTrue(EvaluationCache.getHeuristicSetId(first) != EvaluationCache.getHeuristicSetId(retrained));
+        assertEquals(EvaluationCache.getHeuristicSetId(first),
+                EvaluationCache.getHeuristicSetId(new Heuristic[]{createTables(1)}));
+
+        float[] inputWeights = new float[QuantizedNetwork.INPUT_COUNT];
+        inputWeights[3] = 1;
+        Heuristic[] network = {QuantizedNetwork.quantize(1, inputWeights, new float[1], new float[]{1}, 0)};
+        Heuristic[] otherNetwork = {QuantizedNetwork.quantize(1, inputWeights, new float[1], new float[]{-1}, 0)};
+        assertTrue(EvaluationCache.getHeuristicSetId(network) != EvaluationCache.getHeuristicSetId(otherNetwork));
+
+        EvaluationCache instance = new EvaluationCache(4, 1);
+        search(first, instance);
+        assertSameSums(search(retrained, null), search(retrained, instance));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package aisearch;
+
+import aiheuristics.EmptySpaces;
+import aiheuristics.Heuristic;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class PondererTest {
+
+    private GameController controller;
+    private Heuristic[] heuristics;
+    // "thread:board" for every search, in order
+    private List<String> searches;
+    private Ponderer ponderer;
+
+    public PondererTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        controller = new GameController();
+        controller.setRandom(new Random(41));
+        heuristics = new Heuristic[]{new EmptySpaces(1)};
+        searches = new CopyOnWriteArrayList<>();
+        ponderer = new Ponderer(() -> new RecordingSearch(searches), heuristics, 2);
+    }
+
+    @After
+    public void tearDown() {
+        ponderer.shutdown();
+    }
+
+    // votes that tell which board was searched, instead of a real search
+    private static final class RecordingSearch extends SingleThreadSearch {
+
+        private final List<String> searches;
+
+        RecordingSearch(List<String> searches) {
+            super(new GameController(), 1);
+            this.searches = searches;
+        }
+
+        @Override
+        public int[] getVotesOnDirections(GameBoard currentBoard, Heuristic[] heuristics) {
+            searches.add(Thread.currentThread().getName() + ":" + describe(currentBoard));
+            return votesFor(currentBoard);
+        }
+    }
+
+    private static String describe(GameBoard board) {
+        return Arrays.deepToString(board.getGameGrid()) + " " + board.getScore();
+    }
+
+    private static int[] votesFor(GameBoard board) {
+        return new int[]{Arrays.deepHashCode(board.getGameGrid()), board.getScore(), 0, 0};
+    }
+
+    private int countSearches(GameBoard board) {
+        int count = 0;
+        for (String search : searches) {
+            if (search.endsWith(":" + describe(board))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void waitUntilReady(GameBoard board) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!ponderer.isReady(board)) {
+            assertTrue("not pondered in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    // a legal move of board
+    private Direction legalMove(GameBoard board) {
+        for (Direction direction : Direction.values()) {
+            if ((controller.getLegalMoves(board) & (1 << direction.ordinal())) != 0) {
+                return direction;
+            }
+        }
+        throw new AssertionError("no legal move");
+    }
+
+    /**
+     * Test of getVotes method, of class Ponderer, for positions the game
+     * reached: the votes are the ones searched while the player thought,
+     * and nothing is searched again.
+     */
+    @Test
+    public void testHit() throws InterruptedException {
+        System.out.println("hit");
+        ponderer.setConsiderFours(true);
+        GameBoard board = controller.createStartingGameboard();
+        for (int move = 0; move < 5; move++) {
+            ponderer.ponder(board);
+            GameBoard reached = controller.doGameMove(new GameBoard(board), legalMove(board));
+            waitUntilReady(reached);
+            ponderer.ponder(reached);
+            assertArrayEquals(votesFor(reached), ponderer.getVotes(reached));
+            assertEquals(1, countSearches(reached));
+            for (String search : searches) {
+                assertTrue(search, search.startsWith("ponderer-"));
+            }
+            board = reached;
+        }
+        assertEquals(5, ponderer.getHits());
+        assertEquals(0, ponderer.getMisses());
+    }
+
+    /**
+     * Test of ponder method, of class Ponderer, when the game went another
+     * way: the other positions are dropped and asking for one searches it
+     * again instead of returning an old result.
+     */
+    @Test
+    public void testDrop() throws InterruptedException {
+        System.out.println("drop");
+        GameBoard board = controller.createStartingGameboard();
+        Direction[] directions = Direction.values();
+        int legal = controller.getLegalMoves(board);
+        Direction played = null;
+        Direction other = null;
+        for (Direction direction : directions) {
+            if ((legal & (1 << direction.ordinal())) != 0) {
+                if (played == null) {
+                    played = direction;
+                } else if (other == null) {
+                    other = direction;
+                }
+            }
+        }
+        assertNotNull(other);
+        ponderer.ponder(board);
+        GameBoard reached = controller.doGameMove(new GameBoard(board), played);
+        // a 2 spawned after the move that was not played
+        // copied the way placeRandomTile copies it
+        GameBoard guess = new GameBoard(controller.moveGrid(new GameBoard(board), other));
+        Integer[] position = guess.getEmptyPositions().get(0);
+        guess.getGameGrid()[position[0]][position[1]] = 1;
+        waitUntilReady(guess);
+        int searchesOfGuess = countSearches(guess);
+
+        ponderer.ponder(reached);
+        assertFalse(ponderer.isReady(guess));
+        String thread = Thread.currentThread().getName();
+        assertArrayEquals(votesFor(guess), ponderer.getVotes(guess));
+        assertEquals(searchesOfGuess + 1, countSearches(guess));
+        assertTrue(searches.contains(thread + ":" + describe(guess)));
+        assertEquals(0, ponderer.getHits());
+        assertEquals(1, ponderer.getMisses());
+
+        // only reached and the positions one move from it are kept
+        int expected = 1;
+        for (Direction direction : directions) {
+            GameBoard afterState = controller.moveGrid(new GameBoard(reached), direction);
+            if (afterState.isMoved()) {
+                expected += afterState.getEmptyPositions().size();
+            }
+        }
+        assertEquals(expected, ponderer.getPositionCount());
+    }
+}
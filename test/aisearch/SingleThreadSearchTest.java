@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package aisearch;
+
+import aiheuristics.Corners;
+import aiheuristics.EmptySpaces;
+import aiheuristics.Heuristic;
+import aiheuristics.HeuristicInput;
+import aiheuristics.MonotonicityInRows;
+import aiheuristics.TwoDirections;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SingleThreadSearchTest {
+
+    private static final int MOVES = 8;
+
+    private GameController controller;
+    private Heuristic[] heuristics;
+
+    public SingleThreadSearchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        controller = new GameController();
+        controller.setRandom(new Random(40));
+        heuristics = new Heuristic[]{new EmptySpaces(1), new Corners(1), new MonotonicityInRows(1)};
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    // counts its evaluations and declares the inputs it is given
+    private static final class CountingHeuristic extends Heuristic {
+
+        private final Heuristic heuristic;
+        private final Set<HeuristicInput> inputs;
+        private long evaluations = 0;
+
+        CountingHeuristic(Heuristic heuristic, Set<HeuristicInput> inputs) {
+            super(heuristic.getWeight());
+            this.heuristic = heuristic;
+            this.inputs = inputs;
+        }
+
+        @Override
+        public long getValueOfState(GameController controller, GameBoard state, int currentDirection) {
+            evaluations++;
+            return heuristic.getValueOfState(controller, state, currentDirection);
+        }
+
+        @Override
+        public Set<HeuristicInput> getInputs() {
+            return inputs;
+        }
+    }
+
+    // the boards of a game played with random legal moves
+    private List<GameBoard> playBoards(int count) {
+        Random random = new Random(40);
+        List<GameBoard> boards = new ArrayList<>();
+        GameBoard board = controller.createStartingGameboard();
+        while (boards.size() < count && !controller.isGameOver(board)) {
+            boards.add(new GameBoard(board));
+            board = controller.doGameMove(board, randomMove(controller, board, random));
+        }
+        return boards;
+    }
+
+    private SingleThreadSearch createSearch(int depth, StateEvaluationType evaluationType,
+            DepthWeighting depthWeighting) {
+        SingleThreadSearch searcher = new SingleThreadSearch(controller, depth);
+        searcher.setRandom(new Random(1));
+        searcher.setDepthWeightingType(depthWeighting);
+        searcher.setEvaluationType(evaluationType);
+        searcher.setDepthScaling(false);
+        return searcher;
+    }
+
+    private static void assertSameSums(long[][] expected, long[][] result) {
+        assertEquals(expected.length, result.length);
+        for (int direction = 0; direction < expected.length; direction++) {
+            assertArrayEquals(expected[direction], result[direction]);
+        }
+    }
+
+    // a random legal move of board
+    private static Direction randomMove(GameController controller, GameBoard board, Random random) {
+        int legal = controller.getLegalMoves(board);
+        Direction direction;
+        do {
+            direction = Direction.values()[random.nextInt(Direction.values().length)];
+        } while ((legal & (1 << direction.ordinal())) == 0);
+        return direction;
+    }
+
+    /**
+     * Searching from the subtree the game reached gives the same sums as
+     * searching the same board from scratch.
+     */
+    @Test
+    public void testTreeReuse() {
+        System.out.println("treeReuse");
+        for (StateEvaluationType evaluationType : StateEvaluationType.values()) {
+            for (DepthWeighting depthWeighting : DepthWeighting.values()) {
+                SingleThreadSearch reused = createSearch(1, evaluationType, depthWeighting);
+                reused.setTreeReuse(true);
+                Random random = new Random(40);
+                GameBoard board = controller.createStartingGameboard();
+                for (int move = 0; move < MOVES && !controller.isGameOver(board); move++) {
+                    SingleThreadSearch fresh = createSearch(1, evaluationType, depthWeighting);
+                    fresh.setTreeReuse(true);
+                    fresh.getVotesOnDirections(board, heuristics);
+                    reused.getVotesOnDirections(board, heuristics);
+                    assertSameSums(fresh.getLastDirectionSums(), reused.getLastDirectionSums());
+                    board = controller.doGameMove(board, randomMove(controller, board, random));
+                }
+                // afterstates alone never hold the tile that spawned
+                if (evaluationType != StateEvaluationType.AFTERSTATES) {
+                    assertTrue(evaluationType + " " + depthWeighting, reused.getNodesReused() > 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Heuristics that do not read the direction are evaluated once per
+     * state and counted for every direction, which gives the same sums as
+     * evaluating them per direction.
+     */
+    @Test
+    public void testDirectionIndependentEvaluation() {
+        System.out.println("directionIndependentEvaluation");
+        Heuristic[] shared = new Heuristic[heuristics.length + 1];
+        Heuristic[] perDirection = new Heuristic[heuristics.length + 1];
+        for (int i = 0; i < heuristics.length; i++) {
+            shared[i] = new CountingHeuristic(heuristics[i], heuristics[i].getInputs());
+            perDirection[i] = new CountingHeuristic(heuristics[i], EnumSet.allOf(HeuristicInput.class));
+        }
+        // read the direction in both sets
+        shared[heuristics.length] = new TwoDirections(1);
+        perDirection[heuristics.length] = new TwoDirections(1);
+        List<GameBoard> boards = playBoards(MOVES);
+        for (StateEvaluationType evaluationType : new StateEvaluationType[]{
+            StateEvaluationType.NEXT_STATES, StateEvaluationType.BOTH}) {
+            for (DepthWeighting depthWeighting : DepthWeighting.values()) {
+                SingleThreadSearch sharedSearch = createSearch(1, evaluationType, depthWeighting);
+                SingleThreadSearch perDirectionSearch = createSearch(1, evaluationType, depthWeighting);
+                for (GameBoard board : boards) {
+                    sharedSearch.getVotesOnDirections(board, shared);
+                    perDirectionSearch.getVotesOnDirections(board, perDirection);
+                    assertSameSums(perDirectionSearch.getLastDirectionSums(), sharedSearch.getLastDirectionSums());
+                }
+            }
+        }
+        for (int i = 0; i < heuristics.length; i++) {
+            assertTrue(((CountingHeuristic) shared[i]).evaluations
+                    < ((CountingHeuristic) perDirection[i]).evaluations);
+        }
+    }
+
+    /**
+     * A sample at least as large as the empty cells takes every cell, so
+     * it gives exactly the exhaustive sums.
+     */
+    @Test
+    public void testChanceSamplingOfEveryCell() {
+        System.out.println("chanceSamplingOfEveryCell");
+        List<GameBoard> boards = playBoards(MOVES);
+        for (ChanceSampling chanceSampling : new ChanceSampling[]{
+            ChanceSampling.STRATIFIED, ChanceSampling.IMPORTANCE}) {
+            SingleThreadSearch exhaustive = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            SingleThreadSearch sampled = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            sampled.setChanceSampling(chanceSampling);
+            sampled.setChanceSampleSize(16);
+            for (GameBoard board : boards) {
+                exhaustive.getVotesOnDirections(board, heuristics);
+                sampled.getVotesOnDirections(board, heuristics);
+                assertSameSums(exhaustive.getLastDirectionSums(), sampled.getLastDirectionSums());
+            }
+        }
+    }
+
+    /**
+     * Searches sampling with the same seed give the same votes.
+     */
+    @Test
+    public void testChanceSamplingSeed() {
+        System.out.println("chanceSamplingSeed");
+        List<GameBoard> boards = playBoards(MOVES);
+        for (ChanceSampling chanceSampling : new ChanceSampling[]{
+            ChanceSampling.STRATIFIED, ChanceSampling.IMPORTANCE}) {
+            SingleThreadSearch exhaustive = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            SingleThreadSearch first = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            SingleThreadSearch second = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            boolean sampledDifferently = false;
+            for (SingleThreadSearch searcher : new SingleThreadSearch[]{first, second}) {
+                searcher.setChanceSampling(chanceSampling);
+                searcher.setChanceSampleSize(3);
+                searcher.setRandom(new Random(32));
+            }
+            for (GameBoard board : boards) {
+                exhaustive.getVotesOnDirections(board, heuristics);
+                assertArrayEquals(first.getVotesOnDirections(board, heuristics),
+                        second.getVotesOnDirections(board, heuristics));
+                assertSameSums(first.getLastDirectionSums(), second.getLastDirectionSums());
+                for (int direction = 0; direction < Direction.values().length; direction++) {
+                    sampledDifferently |= !Arrays.equals(exhaustive.getLastDirectionSums()[direction],
+                            first.getLastDirectionSums()[direction]);
+                }
+            }
+            // or the test would pass without sampling
+            assertTrue(chanceSampling.toString(), sampledDifferently);
+        }
+    }
+
+    /**
+     * A cutoff of 0 expands everything, like a search without one.
+     */
+    @Test
+    public void testProbabilityCutoffOfZero() {
+        System.out.println("probabilityCutoffOfZero");
+        List<GameBoard> boards = playBoards(MOVES);
+        for (boolean treeReuse : new boolean[]{false, true}) {
+            SingleThreadSearch baseline = createSearch(1, StateEvaluationType.BOTH, DepthWeighting.LINEAR);
+            SingleThreadSearch cutoff = createSearch(1, StateEvaluationType.BOTH, DepthWeighting.LINEAR);
+            baseline.setTreeReuse(treeReuse);
+            cutoff.setTreeReuse(treeReuse);
+            cutoff.setProbabilityCutoff(0);
+            for (GameBoard board : boards) {
+                baseline.getVotesOnDirections(board, heuristics);
+                cutoff.getVotesOnDirections(board, heuristics);
+                assertSameSums(baseline.getLastDirectionSums(), cutoff.getLastDirectionSums());
+            }
+            assertEquals(0, cutoff.getNodesPruned());
+            assertEquals(baseline.getNodesSearched(), cutoff.getNodesSearched());
+        }
+    }
+
+    /**
+     * A positive cutoff leaves unlikely spawns, the fours, unexpanded.
+     */
+    @Test
+    public void testProbabilityCutoff() {
+        System.out.println("probabilityCutoff");
+        List<GameBoard> boards = playBoards(MOVES);
+        for (boolean treeReuse : new boolean[]{false, true}) {
+            SingleThreadSearch baseline = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            SingleThreadSearch cutoff = createSearch(1, StateEvaluationType.NEXT_STATES, DepthWeighting.NONE);
+            baseline.setTreeReuse(treeReuse);
+            cutoff.setTreeReuse(treeReuse);
+            baseline.setConsiderFoursForPossibleStates(true);
+            cutoff.setConsiderFoursForPossibleStates(true);
+            // below the chance of a two on an empty board, above that of a four
+            cutoff.setProbabilityCutoff(0.03);
+            for (GameBoard board : boards) {
+                baseline.getVotesOnDirections(board, heuristics);
+                cutoff.getVotesOnDirections(board, heuristics);
+            }
+            assertTrue(cutoff.getNodesPruned() > 0);
+            assertTrue(cutoff.getNodesSearched() < baseline.getNodesSearched());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import gamemodel.GameBoard;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class DistributedProtocolTest {
+
+    public DistributedProtocolTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static GameResult createResult(int gameId, int size) {
+        int[][] grid = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                grid[x][y] = (x * size + y) % 18;
+            }
+        }
+        GameBoard board = new GameBoard(grid);
+        board.setScore(123456 + gameId);
+        return new GameResult(gameId, -7L * gameId, board, 4000L + gameId, 987654321L * gameId);
+    }
+
+    private static void assertSameResult(GameResult expected, GameResult result) {
+        assertEquals(expected.getGameId(), result.getGameId());
+        assertEquals(expected.getSeed(), result.getSeed());
+        assertEquals(expected.getScore(), result.getScore());
+        assertEquals(expected.getMoveCount(), result.getMoveCount());
+        assertEquals(expected.getCpuTime(), result.getCpuTime());
+        int[][] expectedGrid = expected.getFinalBoard().getGameGrid();
+        int[][] grid = result.getFinalBoard().getGameGrid();
+        assertEquals(expectedGrid.length, grid.length);
+        for (int x = 0; x < grid.length; x++) {
+            assertArrayEquals(expectedGrid[x], grid[x]);
+        }
+    }
+
+    /**
+     * Test of writeResult and readResult methods, of class
+     * DistributedProtocol.
+     */
+    @Test
+    public void testWriteAndReadResult() throws Exception {
+        System.out.println("writeAndReadResult");
+        GameResult[] expected = {createResult(0, 4), createResult(41, 4), createResult(7, 5)};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            for (GameResult result : expected) {
+                DistributedProtocol.writeResult(output, result);
+            }
+        }
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (GameResult result : expected) {
+            assertSameResult(result, DistributedProtocol.readResult(input));
+        }
+        assertEquals(0, input.available());
+    }
+}
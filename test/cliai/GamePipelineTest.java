@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GamePipelineTest {
+
+    private ExecutorService executor;
+
+    public GamePipelineTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test of run method, of class GamePipeline.
+     */
+    @Test
+    public void testRunCountsFailures() throws Exception {
+        System.out.println("runCountsFailures");
+        GamePipeline instance = new GamePipeline(executor, 3);
+        int[] consumed = new int[1];
+        int failures = instance.run(20, index -> () -> {
+            if (index % 5 == 0) {
+                throw new IllegalStateException("game " + index);
+            }
+            return index;
+        }, (result, index) -> {
+            assertEquals(index, (int) result);
+            consumed[0]++;
+        });
+        assertEquals(4, failures);
+        assertEquals(16, consumed[0]);
+    }
+
+    /**
+     * Test of run method, of class GamePipeline, with a consumer that throws.
+     */
+    @Test
+    public void testRunCancelsWhenConsumerThrows() throws Exception {
+        System.out.println("runCancelsWhenConsumerThrows");
+        GamePipeline instance = new GamePipeline(executor, 4);
+        CountDownLatch started = new CountDownLatch(3);
+        CountDownLatch interrupted = new CountDownLatch(3);
+        AtomicInteger submitted = new AtomicInteger();
+        try {
+            instance.run(100, index -> {
+                submitted.incrementAndGet();
+                return () -> {
+                    if (index == 0) {
+                        return index;
+                    }
+                    started.countDown();
+                    try {
+                        Thread.sleep(60000);
+                    } catch (InterruptedException ex) {
+                        interrupted.countDown();
+                    }
+                    return index;
+                };
+            }, (result, index) -> {
+                try {
+                    started.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("output failed");
+            });
+            fail("the consumer's exception was swallowed");
+        } catch (IllegalStateException ex) {
+            assertEquals("output failed", ex.getMessage());
+        }
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(4, submitted.get());
+    }
+}
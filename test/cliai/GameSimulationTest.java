@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import aidecision.HedgeVoting;
+import aidecision.HedgeWeights;
+import aidecision.MajorityVoting;
+import aiheuristics.Corners;
+import aiheuristics.EmptySpaces;
+import aiheuristics.Heuristic;
+import aiheuristics.LineTables;
+import aiheuristics.QuantizedNetwork;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class GameSimulationTest {
+
+    public GameSimulationTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private static GameSimulation createHedgeSimulation(double learningRate, int horizon, boolean learning) {
+        Heuristic[] heuristics = {new EmptySpaces(1), new Corners(1)};
+        HedgeWeights weights = new HedgeWeights(heuristics.length, learningRate);
+        GameSimulation simulation = new GameSimulation(heuristics);
+        simulation.setDeciderFactory((deciderHeuristics, random) -> {
+            HedgeVoting decider = new HedgeVoting(weights, deciderHeuristics.length, horizon);
+            decider.setLearning(learning);
+            return decider;
+        });
+        return simulation;
+    }
+
+    private static GameSimulation createMajoritySimulation(Heuristic[] heuristics, boolean learning) {
+        GameSimulation simulation = new GameSimulation(heuristics);
+        simulation.setDeciderFactory((deciderHeuristics, random) -> {
+            MajorityVoting decider = new MajorityVoting(deciderHeuristics);
+            decider.setLearning(learning);
+            return decider;
+        });
+        return simulation;
+    }
+
+    private static QuantizedNetwork createNetwork(float outputBias) {
+        float[] inputWeights = new float[QuantizedNetwork.INPUT_COUNT * 2];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (i % 7) - 3;
+        }
+        return QuantizedNetwork.quantize(1, inputWeights, new float[]{1, -1}, new float[]{2, 3}, outputBias);
+    }
+
+    /**
+     * Test of getConfigurationHash method, of class GameSimulation, with
+     * decider settings.
+     */
+    @Test
+    public void testConfigurationHashDecider() {
+        System.out.println("configurationHashDecider");
+        String expResult = createHedgeSimulation(0.01, 5, true).getConfigurationHash();
+        assertEquals(expResult, createHedgeSimulation(0.01, 5, true).getConfigurationHash());
+        assertFalse(expResult.equals(createHedgeSimulation(0.02, 5, true).getConfigurationHash()));
+        assertFalse(expResult.equals(createHedgeSimulation(0.01, 6, true).getConfigurationHash()));
+        assertFalse(expResult.equals(createHedgeSimulation(0.01, 5, false).getConfigurationHash()));
+
+        Heuristic[] heuristics = {new EmptySpaces(1), new Corners(1)};
+        assertFalse(createMajoritySimulation(heuristics, false).getConfigurationHash()
+                .equals(createMajoritySimulation(heuristics, true).getConfigurationHash()));
+    }
+
+    /**
+     * Test of getConfigurationHash method, of class GameSimulation, with
+     * learned heuristics.
+     */
+    @Test
+    public void testConfigurationHashLearnedHeuristics() {
+        System.out.println("configurationHashLearnedHeuristics");
+        LineTables tables = new LineTables(1);
+        String expResult = createMajoritySimulation(new Heuristic[]{tables}, false).getConfigurationHash();
+        assertEquals(expResult, createMajoritySimulation(new Heuristic[]{new LineTables(1)}, false)
+                .getConfigurationHash());
+        tables.getValues()[12345] = 0.5f;
+        assertFalse(expResult.equals(createMajoritySimulation(new Heuristic[]{tables}, false)
+                .getConfigurationHash()));
+
+        String networkHash = createMajoritySimulation(new Heuristic[]{createNetwork(1)}, false)
+                .getConfigurationHash();
+        assertEquals(networkHash, createMajoritySimulation(new Heuristic[]{createNetwork(1)}, false)
+                .getConfigurationHash());
+        assertFalse(networkHash.equals(createMajoritySimulation(new Heuristic[]{createNetwork(-1)}, false)
+                .getConfigurationHash()));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import aidecision.AIDecider;
+import aiheuristics.Heuristic;
+import aiheuristics.MonotonicityInRows;
+import aisearch.OpeningTable;
+import aisearch.SingleThreadSearch;
+import gamemodel.BoardSymmetry;
+import gamemodel.Direction;
+import gamemodel.GameBoard;
+import gamemodel.GameController;
+import gamemodel.PackedBoard;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class OpeningTableGeneratorTest {
+
+    private ExecutorService executor;
+    private File file;
+
+    public OpeningTableGeneratorTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        file = File.createTempFile("openings", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        file.delete();
+    }
+
+    // every board with a 2 or 4 on two cells
+    private static long[] getStartingBoards() {
+        int cells = PackedBoard.SIZE * PackedBoard.SIZE;
+        long[] boards = new long[cells * (cells - 1) / 2 * 4];
+        int count = 0;
+        for (int first = 0; first < cells; first++) {
+            for (int second = first + 1; second < cells; second++) {
+                for (int value = 0; value < 4; value++) {
+                    long board = PackedBoard.setTile(0, first % PackedBoard.SIZE, first / PackedBoard.SIZE, 1 + (value & 1));
+                    boards[count++] = PackedBoard.setTile(board, second % PackedBoard.SIZE, second / PackedBoard.SIZE, 1 + (value >> 1));
+                }
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Test that a table hit is a move a live search would play on the same
+     * board, for boards that are not in canonical orientation and a
+     * heuristic that reads one axis only.
+     */
+    @Test
+    public void testLookupMatchesSearch() throws Exception {
+        System.out.println("lookupMatchesSearch");
+        GameSimulation simulation = new GameSimulation(new Heuristic[]{new MonotonicityInRows(1)});
+        simulation.setMaxDepth(1);
+        Map<Long, Direction> decisions = OpeningTableGenerator.generate(simulation, 1,
+                new GamePipeline(executor, 4));
+        long[] keys = new long[decisions.size()];
+        int index = 0;
+        for (long key : decisions.keySet()) {
+            keys[index++] = key;
+        }
+        Arrays.sort(keys);
+        Direction[] directions = new Direction[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            directions[i] = decisions.get(keys[i]);
+        }
+        OpeningTable.write(file, simulation.getConfigurationFingerprint(), 1, keys, directions);
+        OpeningTable table = OpeningTable.map(file);
+
+        GameController controller = new GameController();
+        int checked = 0;
+        for (long key : getStartingBoards()) {
+            if (BoardSymmetry.canonicalForm(key) == key) {
+                continue;
+            }
+            GameBoard board = new GameBoard(PackedBoard.unpack(key));
+            board.setPreviousMove(Direction.values()[0]);
+            SingleThreadSearch searcher = simulation.createSearcher(controller);
+            AIDecider decider = simulation.getDeciderFactory().createDecider(
+                    simulation.getHeuristics(), new Random(1));
+            simulation.decide(board, 0, searcher, decider);
+            // ties are broken at random, so any of the best moves will do
+            long[][] sums = searcher.getLastDirectionSums();
+            int legalMoves = controller.getLegalMoves(board);
+            long best = Long.MIN_VALUE;
+            for (Direction direction : Direction.values()) {
+                if ((legalMoves & (1 << direction.ordinal())) != 0) {
+                    best = Math.max(best, sums[direction.ordinal()][0]);
+                }
+            }
+            Direction result = table.lookup(board);
+            assertTrue((legalMoves & (1 << result.ordinal())) != 0);
+            assertEquals(best, sums[result.ordinal()][0]);
+            checked++;
+        }
+        assertTrue(checked > 0);
+    }
+}
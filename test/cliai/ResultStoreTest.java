@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import aiheuristics.HeuristicList;
+import gamemodel.GameBoard;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ResultStoreTest {
+
+    private File file;
+    private String configurationHash;
+
+    public ResultStoreTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("resultStore", ".bin");
+        file.delete();
+        configurationHash = createSimulation(3).getConfigurationHash();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static GameSimulation createSimulation(int maxDepth) {
+        GameSimulation simulation = new GameSimulation(HeuristicList.getHeuristics());
+        simulation.setMaxDepth(maxDepth);
+        return simulation;
+    }
+
+    private static GameResult createResult(int gameId, long seed, int size) {
+        int[][] grid = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                grid[x][y] = (int) ((seed + 3 * x + y) & 0xF);
+            }
+        }
+        GameBoard board = new GameBoard(grid);
+        board.setScore((int) (seed % 100000));
+        return new GameResult(gameId, seed, board, 1000 + gameId, 5000000L * gameId);
+    }
+
+    private static void assertSameGame(GameResult expected, int gameId, GameResult result) {
+        assertNotNull(result);
+        assertEquals(gameId, result.getGameId());
+        assertEquals(expected.getSeed(), result.getSeed());
+        assertEquals(expected.getScore(), result.getScore());
+        assertEquals(expected.getMoveCount(), result.getMoveCount());
+        assertEquals(expected.getCpuTime(), result.getCpuTime());
+        int[][] expectedGrid = expected.getFinalBoard().getGameGrid();
+        int[][] grid = result.getFinalBoard().getGameGrid();
+        assertEquals(expectedGrid.length, grid.length);
+        for (int x = 0; x < grid.length; x++) {
+            assertArrayEquals(expectedGrid[x], grid[x]);
+        }
+    }
+
+    /**
+     * Test of get and put methods, of class ResultStore.
+     */
+    @Test
+    public void testPutAndGet() throws Exception {
+        System.out.println("putAndGet");
+        GameResult first = createResult(0, 1234567L, 4);
+        GameResult second = createResult(1, -89L, 5);
+        try (ResultStore instance = new ResultStore(file)) {
+            assertNull(instance.get(configurationHash, 0, first.getSeed()));
+            instance.put(configurationHash, first);
+            instance.put(configurationHash, second);
+            instance.put(configurationHash, first);
+            assertEquals(2, instance.getGameCount());
+            // the id is the one asked for, so a sweep can renumber its games
+            assertSameGame(first, 7, instance.get(configurationHash, 7, first.getSeed()));
+            assertSameGame(second, 1, instance.get(configurationHash, 1, second.getSeed()));
+            assertNull(instance.get(configurationHash, 2, 42L));
+            assertEquals(2, instance.getHits());
+            assertEquals(2, instance.getMisses());
+        }
+    }
+
+    /**
+     * Test of the ResultStore constructor, reopening a store.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        System.out.println("reopen");
+        GameResult first = createResult(0, 11L, 4);
+        GameResult second = createResult(1, 12L, 4);
+        try (ResultStore instance = new ResultStore(file)) {
+            instance.put(configurationHash, first);
+        }
+        // a record cut short by a crash
+        try (FileOutputStream output = new FileOutputStream(file, true)) {
+            output.write(new byte[]{1, 2, 3, 4, 5});
+        }
+        try (ResultStore instance = new ResultStore(file)) {
+            assertEquals(1, instance.getGameCount());
+            assertSameGame(first, 0, instance.get(configurationHash, 0, first.getSeed()));
+            instance.put(configurationHash, second);
+        }
+        try (ResultStore instance = new ResultStore(file)) {
+            assertEquals(2, instance.getGameCount());
+            assertSameGame(first, 0, instance.get(configurationHash, 0, first.getSeed()));
+            assertSameGame(second, 1, instance.get(configurationHash, 1, second.getSeed()));
+        }
+    }
+
+    /**
+     * Test of get method, of class ResultStore, after the configuration
+     * changes.
+     */
+    @Test
+    public void testChangedConfiguration() throws Exception {
+        System.out.println("changedConfiguration");
+        String changedHash = createSimulation(4).getConfigurationHash();
+        assertFalse(configurationHash.equals(changedHash));
+        assertEquals(configurationHash, createSimulation(3).getConfigurationHash());
+        GameResult result = createResult(0, 99L, 4);
+        try (ResultStore instance = new ResultStore(file)) {
+            instance.put(configurationHash, result);
+        }
+        try (ResultStore instance = new ResultStore(file)) {
+            assertNull(instance.get(changedHash, 0, result.getSeed()));
+            assertEquals(0, instance.getHits());
+            assertEquals(1, instance.getMisses());
+            assertSameGame(result, 0, instance.get(configurationHash, 0, result.getSeed()));
+            assertEquals(1, instance.getHits());
+            assertEquals(1, instance.getMisses());
+        }
+    }
+
+    /**
+     * Test of the ResultStore constructor with a file that is not a store.
+     */
+    @Test
+    public void testRefusesOtherFile() throws Exception {
+        System.out.println("refusesOtherFile");
+        byte[] content = "gameid,gamescore\n0,2048\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(file.toPath(), content);
+        try {
+            new ResultStore(file).close();
+            fail("opened a file that is not a store");
+        } catch (IOException ex) {
+            // expected
+        }
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Test of the ResultStore constructor with an empty file.
+     */
+    @Test
+    public void testStartsInEmptyFile() throws Exception {
+        System.out.println("startsInEmptyFile");
+        assertTrue(file.createNewFile());
+        GameResult result = createResult(0, 5L, 4);
+        try (ResultStore instance = new ResultStore(file)) {
+            instance.put(configurationHash, result);
+        }
+        try (ResultStore instance = new ResultStore(file)) {
+            assertSameGame(result, 0, instance.get(configurationHash, 0, result.getSeed()));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import gamemodel.GameBoard;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class ResultsWriterTest {
+
+    private static final int ROW_GROUP_SIZE = 7;
+
+    private File file;
+    private Random random;
+
+    public ResultsWriterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("results", ".bin");
+        random = new Random(43);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    // boards of 4 by 4 and 5 by 5, a few with tiles too big for a nibble
+    private GameResult createResult(int gameId) {
+        int size = gameId % 5 == 0 ? 5 : 4;
+        int[][] grid = new int[size][size];
+        for (int[] column : grid) {
+            for (int y = 0; y < size; y++) {
+                column[y] = random.nextInt(gameId % 9 == 0 ? 18 : 12);
+            }
+        }
+        GameBoard board = new GameBoard(grid);
+        board.setScore(random.nextInt(200000));
+        return new GameResult(gameId, random.nextLong(), board, random.nextInt(5000),
+                Math.abs(random.nextLong() % 1000000000L));
+    }
+
+    private static long getValue(GameResult result, long configId, ResultColumn column) {
+        switch (column) {
+            case CONFIG_ID:
+                return configId;
+            case GAME_ID:
+                return result.getGameId();
+            case SEED:
+                return result.getSeed();
+            case SCORE:
+                return result.getScore();
+            case MAX_TILE:
+                return result.getHighestTile();
+            case MOVES:
+                return result.getMoveCount();
+            case CPU_TIME:
+                return result.getCpuTime();
+            default:
+                throw new IllegalArgumentException(column.name());
+        }
+    }
+
+    private static long getConfigId(int gameId) {
+        return gameId % 3 == 0 ? 0x1234_5678_9ABCL : -42;
+    }
+
+    /**
+     * Test of the ResultsWriter and ResultsReader classes: rows written
+     * over several row groups, cut back to the length after a flush and
+     * appended to, read back.
+     */
+    @Test
+    public void testTruncateAppendAndRead() throws Exception {
+        System.out.println("truncateAppendAndRead");
+        List<GameResult> expected = new ArrayList<>();
+        long savedLength;
+        try (ResultsWriter writer = new ResultsWriter(file, 0, ROW_GROUP_SIZE)) {
+            for (int gameId = 0; gameId < 17; gameId++) {
+                GameResult result = createResult(gameId);
+                expected.add(result);
+                writer.add(getConfigId(gameId), result);
+            }
+            writer.flush();
+            savedLength = file.length();
+            // lost when the file is cut back
+            for (int gameId = 17; gameId < 26; gameId++) {
+                writer.add(getConfigId(gameId), createResult(gameId));
+            }
+        }
+        assertTrue(file.length() > savedLength);
+
+        try (ResultsWriter writer = new ResultsWriter(file, savedLength, ROW_GROUP_SIZE)) {
+            for (int gameId = 17; gameId < 40; gameId++) {
+                GameResult result = createResult(gameId);
+                expected.add(result);
+                writer.add(getConfigId(gameId), result);
+            }
+        }
+
+        try (ResultsReader reader = new ResultsReader(file)) {
+            assertEquals(expected.size(), reader.getRowCount());
+            for (ResultColumn column : ResultColumn.values()) {
+                if (column == ResultColumn.BOARD) {
+                    continue;
+                }
+                long[] values = reader.readColumn(column);
+                assertEquals(column.name(), expected.size(), values.length);
+                for (int row = 0; row < values.length; row++) {
+                    GameResult result = expected.get(row);
+                    assertEquals(column.name() + " of row " + row,
+                            getValue(result, getConfigId(result.getGameId()), column), values[row]);
+                }
+            }
+            List<int[][]> grids = reader.readBoards();
+            assertEquals(expected.size(), grids.size());
+            for (int row = 0; row < grids.size(); row++) {
+                int[][] expectedGrid = expected.get(row).getFinalBoard().getGameGrid();
+                assertEquals(expectedGrid.length, grids.get(row).length);
+                for (int x = 0; x < expectedGrid.length; x++) {
+                    assertArrayEquals(expectedGrid[x], grids.get(row)[x]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import gamemodel.GameBoard;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SequentialComparisonTest {
+
+    private SequentialComparison instance;
+
+    public SequentialComparisonTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        instance = new SequentialComparison(2, SequentialComparison.EliminationRule.CONFIDENCE_RACE);
+    }
+
+    @After
+    public void tearDown() {
+        instance = null;
+    }
+
+    private void play(int games) {
+        for (int i = 0; i < games; i++) {
+            instance.record(0, createResult(i, 4000 + (i % 3) * 100));
+            instance.record(1, createResult(i, 1000 + (i % 3) * 100));
+        }
+    }
+
+    private static GameResult createResult(int gameId, int score) {
+        GameBoard board = new GameBoard(4);
+        board.setScore(score);
+        return new GameResult(gameId, gameId, board, 100, 0);
+    }
+
+    /**
+     * Test of eliminate method, of class SequentialComparison.
+     */
+    @Test
+    public void testEliminateWaitsForMinimumGames() {
+        System.out.println("eliminateWaitsForMinimumGames");
+        play(1);
+        assertEquals(0, instance.eliminate().length);
+        play(SequentialComparison.DEFAULT_MINIMUM_GAMES - 2);
+        assertEquals(0, instance.eliminate().length);
+        play(1);
+        assertArrayEquals(new int[]{1}, instance.eliminate());
+        assertTrue(instance.isDecided());
+    }
+
+    /**
+     * Test of setMinimumGames method, of class SequentialComparison.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetMinimumGamesTooFew() {
+        System.out.println("setMinimumGamesTooFew");
+        instance.setMinimumGames(1);
+    }
+}
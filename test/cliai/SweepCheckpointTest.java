@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package cliai;
+
+import java.io.File;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SweepCheckpointTest {
+
+    private File file;
+
+    public SweepCheckpointTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("sweepCheckpoint", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Test of save and load methods, of class SweepCheckpoint.
+     */
+    @Test
+    public void testSaveAndLoad() {
+        System.out.println("saveAndLoad");
+        SweepCheckpoint instance = new SweepCheckpoint(42, 100, 2, new int[]{1, 2, 3});
+        instance.advance(1, 5);
+        instance.getStatistics().add(1200, 10);
+        instance.getStatistics().add(3400, 20);
+        instance.recordBatch(2, 111, 222, 333);
+        instance.save(file);
+
+        SweepCheckpoint result = SweepCheckpoint.load(file);
+        assertNotNull(result);
+        assertEquals(42, result.getSeed());
+        assertEquals(1, result.getComboSizeIndex());
+        assertEquals(5, result.getComboIndex());
+        assertEquals(2, result.getGamesCompleted());
+        assertEquals(111, result.getScoreFileLength());
+        assertEquals(222, result.getBoardFileLength());
+        assertEquals(333, result.getResultsFileLength());
+        assertEquals(2, result.getStatistics().getCount());
+        assertEquals(instance.getStatistics().getMean(), result.getStatistics().getMean(), 0);
+        assertEquals(instance.getStatistics().getSampleVariance(), result.getStatistics().getSampleVariance(), 0);
+        assertEquals(3400, result.getStatistics().getMax());
+    }
+
+    /**
+     * Test of matches method, of class SweepCheckpoint.
+     */
+    @Test
+    public void testMatches() {
+        System.out.println("matches");
+        new SweepCheckpoint(42, 100, 2, new int[]{1, 2, 3}).save(file);
+        SweepCheckpoint result = SweepCheckpoint.load(file);
+        assertTrue(result.matches(100, 2, new int[]{1, 2, 3}));
+        assertFalse(result.matches(200, 2, new int[]{1, 2, 3}));
+        assertFalse(result.matches(100, 3, new int[]{1, 2, 3}));
+        assertFalse(result.matches(100, 2, new int[]{1, 2}));
+    }
+
+    /**
+     * Test of load method, of class SweepCheckpoint.
+     */
+    @Test
+    public void testLoadMissing() {
+        System.out.println("loadMissing");
+        file.delete();
+        assertNull(SweepCheckpoint.load(file));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gamemodel;
+
+import aisearch.RandomBatchPolicy;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class BoardBatchTest {
+
+    public BoardBatchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private BoardBatch play(int size, long seed) {
+        BoardBatch batch = new BoardBatch(size);
+        RandomBatchPolicy policy = new RandomBatchPolicy(seed);
+        byte[] decisions = new byte[size];
+        batch.start(seed);
+        while (batch.computeMoves() > 0) {
+            policy.chooseMoves(batch, decisions);
+            batch.applyMoves(decisions);
+        }
+        return batch;
+    }
+
+    /**
+     * Test that the afterstates of a batch are the moves the controller makes.
+     */
+    @Test
+    public void testComputeMoves() {
+        BoardBatch batch = new BoardBatch(64);
+        RandomBatchPolicy policy = new RandomBatchPolicy(7);
+        byte[] decisions = new byte[batch.getCapacity()];
+        GameController controller = new GameController();
+        batch.start(7);
+        for (int step = 0; step < 50 && batch.computeMoves() > 0; step++) {
+            for (int i = 0; i < batch.getRunningCount(); i++) {
+                int game = batch.getRunningGame(i);
+                long board = batch.getBoard(game);
+                for (Direction direction : Direction.values()) {
+                    GameBoard expected = controller.moveGrid(new GameBoard(PackedBoard.unpack(board)), direction);
+                    assertEquals(expected.isMoved(), (batch.getLegalMoves(game) & (1 << direction.ordinal())) != 0);
+                    assertEquals(PackedBoard.pack(expected), batch.getAfterState(game, direction));
+                    assertEquals(expected.getScore(), batch.getScoreDelta(game, direction));
+                }
+            }
+            policy.chooseMoves(batch, decisions);
+            batch.applyMoves(decisions);
+        }
+    }
+
+    /**
+     * Test that every game is played until no move is left.
+     */
+    @Test
+    public void testGamesEnd() {
+        BoardBatch batch = play(200, 2048);
+        GameController controller = new GameController();
+        assertEquals(0, batch.getRunningCount());
+        for (int game = 0; game < batch.getCapacity(); game++) {
+            assertTrue(batch.getMoveCount(game) > 0);
+            assertTrue(controller.isGameOver(new GameBoard(PackedBoard.unpack(batch.getBoard(game)))));
+        }
+    }
+
+    /**
+     * Test that a game starts the same whatever the size of its batch.
+     */
+    @Test
+    public void testStartIndependentOfBatchSize() {
+        BoardBatch small = new BoardBatch(4);
+        BoardBatch large = new BoardBatch(16);
+        small.start(11);
+        large.start(11);
+        for (int game = 0; game < small.getCapacity(); game++) {
+            assertEquals(small.getBoard(game), large.getBoard(game));
+            assertEquals(2, 16 - PackedBoard.countEmpty(small.getBoard(game)));
+        }
+    }
+
+    /**
+     * Test that neighbouring games do not draw from shifted copies of the
+     * same random stream.
+     */
+    @Test
+    public void testGameStreamsIndependent() {
+        BoardBatch batch = new BoardBatch(16);
+        batch.start(42);
+        long[][] draws = new long[batch.getCapacity()][3];
+        for (int game = 0; game < batch.getCapacity(); game++) {
+            for (int i = 0; i < draws[game].length; i++) {
+                draws[game][i] = batch.nextRandom(game);
+            }
+        }
+        for (int game = 0; game + 1 < batch.getCapacity(); game++) {
+            assertTrue(draws[game][1] != draws[game + 1][0]);
+            assertTrue(draws[game][2] != draws[game + 1][1]);
+            assertTrue(draws[game][0] != draws[game + 1][0]);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gamemodel;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class BoardSymmetryTest {
+
+    private Random random;
+
+    public BoardSymmetryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(2048);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private int[][] randomGrid() {
+        int[][] grid = new int[PackedBoard.SIZE][PackedBoard.SIZE];
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid.length; y++) {
+                grid[x][y] = random.nextInt(3) == 0 ? 0 : random.nextInt(PackedBoard.MAX_EXPONENT + 1);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Test of apply method, of class BoardSymmetry, on packed boards.
+     */
+    @Test
+    public void testApplyPacked() {
+        System.out.println("applyPacked");
+        for (int i = 0; i < 100; i++) {
+            int[][] grid = randomGrid();
+            long board = PackedBoard.pack(grid);
+            assertArrayEquals(grid, PackedBoard.unpack(board));
+            for (BoardSymmetry symmetry : BoardSymmetry.values()) {
+                assertEquals(symmetry.toString(), PackedBoard.pack(symmetry.apply(grid)), symmetry.apply(board));
+                assertEquals(symmetry.toString(), board, symmetry.inverse().apply(symmetry.apply(board)));
+            }
+        }
+    }
+
+    /**
+     * Test of apply method, of class BoardSymmetry, on directions: moving a
+     * board and then transforming it is the same as transforming it and then
+     * making the mapped move.
+     */
+    @Test
+    public void testApplyDirection() {
+        System.out.println("applyDirection");
+        GameController controller = new GameController();
+        for (int i = 0; i < 100; i++) {
+            int[][] grid = randomGrid();
+            for (BoardSymmetry symmetry : BoardSymmetry.values()) {
+                for (Direction direction : Direction.values()) {
+                    GameBoard moved = controller.moveGrid(new GameBoard(new GameBoard(grid)), direction);
+                    GameBoard imageMoved = controller.moveGrid(new GameBoard(symmetry.apply(grid)),
+                            symmetry.apply(direction));
+                    assertArrayEquals(symmetry + " " + direction,
+                            symmetry.apply(moved.getGameGrid()), imageMoved.getGameGrid());
+                    assertEquals(moved.getScore(), imageMoved.getScore());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of canonicalForm method, of class BoardSymmetry.
+     */
+    @Test
+    public void testCanonicalForm() {
+        System.out.println("canonicalForm");
+        for (int i = 0; i < 100; i++) {
+            long board = PackedBoard.pack(randomGrid());
+            long expResult = BoardSymmetry.canonicalForm(board);
+            for (BoardSymmetry symmetry : BoardSymmetry.values()) {
+                assertEquals(expResult, BoardSymmetry.canonicalForm(symmetry.apply(board)));
+            }
+        }
+    }
+
+    /**
+     * Test of countEmpty method, of class PackedBoard.
+     */
+    @Test
+    public void testCountEmpty() {
+        System.out.println("countEmpty");
+        for (int i = 0; i < 100; i++) {
+            int[][] grid = randomGrid();
+            int expResult = 0;
+            for (int[] column : grid) {
+                for (int value : column) {
+                    if (value == 0) {
+                        expResult++;
+                    }
+                }
+            }
+            assertEquals(expResult, PackedBoard.countEmpty(PackedBoard.pack(grid)));
+        }
+    }
+}
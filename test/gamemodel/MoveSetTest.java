@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gamemodel;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class MoveSetTest {
+
+    private Random random;
+    private GameController controller;
+    private GameController swarController;
+
+    public MoveSetTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(2048);
+        controller = new GameController();
+        swarController = new GameController();
+        swarController.setMoveEngine(MoveEngine.SWAR);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private int[][] randomGrid(int size, int maxExponent) {
+        int[][] grid = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                grid[x][y] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(maxExponent);
+            }
+        }
+        return grid;
+    }
+
+    // rows are given top to bottom, as the board is drawn
+    private int[][] gridOf(int[]... rows) {
+        int size = rows.length;
+        int[][] grid = new int[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                grid[x][y] = rows[y][x];
+            }
+        }
+        return grid;
+    }
+
+    // checks computeAllMoves and getLegalMoves of both engines against one
+    // moveGrid per direction
+    private void assertMatchesMoveGrid(int[][] grid) {
+        GameBoard board = new GameBoard(grid);
+        board.setScore(100);
+        int expectedMask = 0;
+        MoveSet moves = controller.computeAllMoves(board);
+        MoveSet swarMoves = swarController.computeAllMoves(board);
+        for (Direction direction : Direction.values()) {
+            GameBoard expected = controller.moveGrid(new GameBoard(board), direction);
+            if (expected.isMoved()) {
+                expectedMask |= 1 << direction.ordinal();
+            }
+            for (MoveSet result : new MoveSet[]{moves, swarMoves}) {
+                assertArrayEquals(direction.toString(), expected.getGameGrid(), result.getGrid(direction));
+                assertEquals(expected.getScore() - board.getScore(), result.getScoreDelta(direction));
+                assertEquals(expected.getNumberOfMerges(), result.getMergeCount(direction));
+                assertEquals(expected.isMoved(), result.isLegal(direction));
+
+                GameBoard afterState = result.createAfterstate(board, direction);
+                assertArrayEquals(expected.getGameGrid(), afterState.getGameGrid());
+                assertEquals(expected.getScore(), afterState.getScore());
+                assertEquals(expected.isMoved(), afterState.isMoved());
+                assertEquals(direction, afterState.getPreviousMove());
+            }
+        }
+        assertEquals(expectedMask, moves.getLegalMoves());
+        assertEquals(expectedMask, swarMoves.getLegalMoves());
+        assertEquals(expectedMask, controller.getLegalMoves(board));
+        assertEquals(expectedMask == 0, controller.isGameOver(board));
+        // the board itself is left alone
+        assertArrayEquals(grid, board.getGameGrid());
+    }
+
+    /**
+     * Test of computeAllMoves and getLegalMoves methods, of class
+     * GameController, on random boards.
+     */
+    @Test
+    public void testRandomBoards() {
+        System.out.println("randomBoards");
+        for (int i = 0; i < 1000; i++) {
+            // small exponents give many merges
+            assertMatchesMoveGrid(randomGrid(PackedBoard.SIZE, i % 2 == 0 ? 3 : 15));
+        }
+    }
+
+    /**
+     * Boards of other sizes take the same path through the grid.
+     */
+    @Test
+    public void testOtherSizes() {
+        System.out.println("otherSizes");
+        for (int size = 2; size <= 6; size++) {
+            for (int i = 0; i < 200; i++) {
+                assertMatchesMoveGrid(randomGrid(size, 4));
+            }
+        }
+    }
+
+    /**
+     * A full board with no equal neighbours has no legal move.
+     */
+    @Test
+    public void testNoLegalMove() {
+        System.out.println("noLegalMove");
+        int[][] grid = gridOf(
+                new int[]{1, 2, 1, 2},
+                new int[]{2, 1, 2, 1},
+                new int[]{1, 2, 1, 2},
+                new int[]{2, 1, 2, 1});
+        assertMatchesMoveGrid(grid);
+        assertFalse(controller.computeAllMoves(new GameBoard(grid)).hasLegalMove());
+        assertEquals(0, controller.getLegalMoves(new GameBoard(grid)));
+    }
+
+    /**
+     * A full board where one pair merges can only move along that pair.
+     */
+    @Test
+    public void testFullBoard() {
+        System.out.println("fullBoard");
+        int[][] grid = gridOf(
+                new int[]{1, 1, 2, 3},
+                new int[]{2, 3, 4, 5},
+                new int[]{3, 4, 5, 6},
+                new int[]{4, 5, 6, 7});
+        assertMatchesMoveGrid(grid);
+        MoveSet moves = controller.computeAllMoves(new GameBoard(grid));
+        assertEquals((1 << Direction.LEFT.ordinal()) | (1 << Direction.RIGHT.ordinal()),
+                moves.getLegalMoves());
+        assertEquals(1, moves.getMergeCount(Direction.LEFT));
+
+        int[][] empty = new int[PackedBoard.SIZE][PackedBoard.SIZE];
+        assertMatchesMoveGrid(empty);
+        assertEquals(0, controller.getLegalMoves(new GameBoard(empty)));
+    }
+
+    /**
+     * A tile merges at most once a move, so chains of equal tiles merge in
+     * pairs from the side the board moves towards.
+     */
+    @Test
+    public void testMergeChains() {
+        System.out.println("mergeChains");
+        int[][] grid = gridOf(
+                new int[]{1, 1, 1, 1},
+                new int[]{1, 1, 2, 0},
+                new int[]{2, 1, 1, 0},
+                new int[]{2, 2, 2, 0});
+        assertMatchesMoveGrid(grid);
+        MoveSet moves = controller.computeAllMoves(new GameBoard(grid));
+        assertArrayEquals(gridOf(
+                new int[]{2, 2, 0, 0},
+                new int[]{2, 2, 0, 0},
+                new int[]{2, 2, 0, 0},
+                new int[]{3, 2, 0, 0}), moves.getGrid(Direction.LEFT));
+        assertArrayEquals(gridOf(
+                new int[]{0, 0, 2, 2},
+                new int[]{0, 0, 2, 2},
+                new int[]{0, 0, 2, 2},
+                new int[]{0, 0, 2, 3}), moves.getGrid(Direction.RIGHT));
+        assertEquals(5, moves.getMergeCount(Direction.LEFT));
+
+        // the same chains down the columns
+        int[][] columns = new int[PackedBoard.SIZE][];
+        for (int x = 0; x < columns.length; x++) {
+            columns[x] = new int[PackedBoard.SIZE];
+            for (int y = 0; y < columns.length; y++) {
+                columns[x][y] = grid[y][x];
+            }
+        }
+        assertMatchesMoveGrid(columns);
+    }
+}
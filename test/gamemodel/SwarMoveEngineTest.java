@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Lucas Burdell <lucasburdell@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package gamemodel;
+
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Lucas Burdell <lucasburdell@gmail.com>
+ */
+public class SwarMoveEngineTest {
+
+    private Random random;
+    private GameController gridController;
+    private GameController swarController;
+
+    public SwarMoveEngineTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(2048);
+        gridController = new GameController();
+        swarController = new GameController();
+        swarController.setMoveEngine(MoveEngine.SWAR);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private int[][] randomGrid(int maxExponent) {
+        return randomGrid(PackedBoard.SIZE, maxExponent);
+    }
+
+    private int[][] randomGrid(int size, int maxExponent) {
+        int[][] grid = new int[size][size];
+        for (int x = 0; x < grid.length; x++) {
+            for (int y = 0; y < grid.length; y++) {
+                grid[x][y] = random.nextInt(3) == 0 ? 0 : random.nextInt(maxExponent + 1);
+            }
+        }
+        return grid;
+    }
+
+    private void assertSameMove(int[][] grid) {
+        for (Direction direction : Direction.values()) {
+            GameBoard expected = gridController.moveGrid(new GameBoard(new GameBoard(grid)), direction);
+            GameBoard result = swarController.moveGrid(new GameBoard(new GameBoard(grid)), direction);
+            assertArrayEquals(direction.toString(), expected.getGameGrid(), result.getGameGrid());
+            assertEquals(expected.getScore(), result.getScore());
+            assertEquals(expected.getNumberOfMerges(), result.getNumberOfMerges());
+            assertEquals(expected.isMoved(), result.isMoved());
+        }
+    }
+
+    private void assertSameAllMoves(int[][] grid) {
+        MoveSet expected = gridController.computeAllMoves(new GameBoard(grid));
+        MoveSet result = swarController.computeAllMoves(new GameBoard(grid));
+        assertEquals(expected.getLegalMoves(), result.getLegalMoves());
+        for (Direction direction : Direction.values()) {
+            assertArrayEquals(expected.getGrid(direction), result.getGrid(direction));
+            assertEquals(expected.getScoreDelta(direction), result.getScoreDelta(direction));
+            assertEquals(expected.getMergeCount(direction), result.getMergeCount(direction));
+        }
+    }
+
+    /**
+     * Test of move method, of class SwarMoveEngine, against the grid moves.
+     */
+    @Test
+    public void testMove() {
+        System.out.println("move");
+        for (int i = 0; i < 1000; i++) {
+            // small exponents give many merges
+            assertSameMove(randomGrid(i % 2 == 0 ? 3 : PackedBoard.MAX_EXPONENT));
+        }
+    }
+
+    /**
+     * Merges of two 32768 tiles overflow a nibble and have to fall back to
+     * the grid.
+     */
+    @Test
+    public void testOverflow() {
+        System.out.println("overflow");
+        int[][] grid = new int[PackedBoard.SIZE][PackedBoard.SIZE];
+        grid[0][0] = PackedBoard.MAX_EXPONENT;
+        grid[1][0] = PackedBoard.MAX_EXPONENT;
+        SwarMoveEngine engine = new SwarMoveEngine();
+        engine.move(PackedBoard.pack(grid), Direction.LEFT);
+        assertTrue(engine.isOverflow());
+        assertSameMove(grid);
+    }
+
+    /**
+     * Test of computeAllMoves method, of class GameController, with the SWAR
+     * engine.
+     */
+    @Test
+    public void testComputeAllMoves() {
+        System.out.println("computeAllMoves");
+        for (int i = 0; i < 1000; i++) {
+            assertSameAllMoves(randomGrid(i % 2 == 0 ? 3 : PackedBoard.MAX_EXPONENT));
+        }
+    }
+
+    /**
+     * Boards of other sizes are moved through PackedGrid lanes.
+     */
+    @Test
+    public void testOtherSizes() {
+        System.out.println("otherSizes");
+        for (int size = 2; size <= 8; size++) {
+            for (int i = 0; i < 200; i++) {
+                int[][] grid = randomGrid(size, i % 2 == 0 ? 3 : PackedBoard.MAX_EXPONENT);
+                assertSameMove(grid);
+                assertSameAllMoves(grid);
+            }
+        }
+    }
+}